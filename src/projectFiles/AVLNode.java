@@ -2,7 +2,8 @@ package projectFiles;
 
 /**
  * AVL Tree Node class for self-balancing Binary Search Tree implementation.
- * Each node contains a key for ordering, data for the stored value, and height for balancing.
+ * Each node contains a key for ordering, data for the stored value, height for balancing,
+ * and the size of its subtree for order-statistic queries (rank/select).
  * @param <K> The type of key (must be Comparable)
  * @param <V> The type of value/data stored
  */
@@ -12,6 +13,11 @@ public class AVLNode<K extends Comparable<K>, V> {
     AVLNode<K, V> left;
     AVLNode<K, V> right;
     int height;
+    int size;
+    // Only allocated in trees with aggregators: own[i] is this node's lifted value,
+    // aggregates[i] the combined value of its whole subtree, for the tree's i-th Aggregator
+    double[] own;
+    double[] aggregates;
 
     public AVLNode(K key, V data) {
         this.key = key;
@@ -19,5 +25,6 @@ public class AVLNode<K extends Comparable<K>, V> {
         this.left = null;
         this.right = null;
         this.height = 1; // New node is initially at height 1
+        this.size = 1;   // A new node is a subtree of one
     }
 }
@@ -0,0 +1,73 @@
+package projectFiles;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Monoid aggregate that an AVLTree maintains for every subtree (e.g. total revenue, total stock).
+ * Each stored value is lifted to a double, and subtree values are combined with an associative
+ * operation whose neutral element is identity(). Because the tree keeps the combined value of each
+ * subtree up to date through rotations, range aggregates take O(log n) without visiting the range.
+ * @param <V> The type of value/data stored in the tree
+ */
+public interface Aggregator<V> {
+
+    /**
+     * Neutral element: combine(identity(), x) == x
+     */
+    double identity();
+
+    /**
+     * Contribution of a single stored value
+     */
+    double lift(V value);
+
+    /**
+     * Associative combine of two partial aggregates
+     */
+    double combine(double a, double b);
+
+    /**
+     * Sum of f(value) over the values
+     */
+    static <V> Aggregator<V> sum(final ToDoubleFunction<V> f) {
+        return new Aggregator<V>() {
+            public double identity() { return 0; }
+            public double lift(V value) { return f.applyAsDouble(value); }
+            public double combine(double a, double b) { return a + b; }
+        };
+    }
+
+    /**
+     * Minimum of f(value); +infinity when there are no values
+     */
+    static <V> Aggregator<V> min(final ToDoubleFunction<V> f) {
+        return new Aggregator<V>() {
+            public double identity() { return Double.POSITIVE_INFINITY; }
+            public double lift(V value) { return f.applyAsDouble(value); }
+            public double combine(double a, double b) { return Math.min(a, b); }
+        };
+    }
+
+    /**
+     * Maximum of f(value); -infinity when there are no values
+     */
+    static <V> Aggregator<V> max(final ToDoubleFunction<V> f) {
+        return new Aggregator<V>() {
+            public double identity() { return Double.NEGATIVE_INFINITY; }
+            public double lift(V value) { return f.applyAsDouble(value); }
+            public double combine(double a, double b) { return Math.max(a, b); }
+        };
+    }
+
+    /**
+     * Number of stored values (one per key). For trees that keep a list per key,
+     * use sum(list -> list.size()) to count the listed entities instead.
+     */
+    static <V> Aggregator<V> count() {
+        return new Aggregator<V>() {
+            public double identity() { return 0; }
+            public double lift(V value) { return 1; }
+            public double combine(double a, double b) { return a + b; }
+        };
+    }
+}
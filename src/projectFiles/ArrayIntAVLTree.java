@@ -0,0 +1,696 @@
+package projectFiles;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * AVL Tree for primitive int keys whose nodes live in parallel arrays instead of objects - used for the
+ * per-customer secondary indexes (Order.orderTreeByCustomer, Review.reviewTreeByCustomerId).
+ * Same operations and complexities as IntAVLTree. A node is a slot index into the key, value, left, right,
+ * height and size columns, with slot 0 acting as the null node. The columns double when full, and slots
+ * freed by delete are chained through left[] into a free list that insert reuses first.
+ * A slot costs 24 bytes of columns instead of a 40-byte IntAVLTree node object. buildFromSorted lays the
+ * slots out in key order, so a full scan reads the columns front to back; slots filled by insert follow
+ * insertion order instead.
+ * Only for mutable single-version trees: the ID indexes keep old versions alive for their readers
+ * (PersistentIntAVLTree), so they cannot hand a slot back when its key is deleted.
+ * @param <V> The type of value/data stored
+ */
+public class ArrayIntAVLTree<V> implements Iterable<V> {
+
+    // Slot 0 is the null node: height 0, size 0, never allocated
+    private static final int NIL = 0;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int[] left;
+    private int[] right;
+    private int[] height;
+    private int[] sizes;
+
+    private int root;
+    private int size;
+    // Next never-used slot; slots below it are either live or on the free list
+    private int nextSlot;
+    // Head of the free list of deleted slots, chained through left[]
+    private int freeHead;
+    // Incremented on every structural change so iterators can fail fast
+    private int modCount;
+    // Reusable root-to-node path for insert/delete
+    private int[] pathBuffer;
+
+    public ArrayIntAVLTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a tree with room for initialCapacity nodes before the columns grow
+     */
+    public ArrayIntAVLTree(int initialCapacity) {
+        allocateColumns(initialCapacity);
+    }
+
+    /**
+     * Replace the columns with empty ones holding capacity slots after the null slot
+     */
+    private void allocateColumns(int capacity) {
+        int slots = Math.max(capacity, 1) + 1;
+        keys = new int[slots];
+        values = new Object[slots];
+        left = new int[slots];
+        right = new int[slots];
+        height = new int[slots];
+        sizes = new int[slots];
+        root = NIL;
+        size = 0;
+        nextSlot = 1;
+        freeHead = NIL;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int node) {
+        return (V) values[node];
+    }
+
+    /**
+     * Take a slot from the free list, or the next unused slot (doubling the columns if full) - O(1) amortized
+     */
+    private int allocate(int key, V data) {
+        int node;
+        if (freeHead != NIL) {
+            node = freeHead;
+            freeHead = left[node];
+        } else {
+            if (nextSlot == keys.length) {
+                int capacity = keys.length * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                height = Arrays.copyOf(height, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+            }
+            node = nextSlot++;
+        }
+        keys[node] = key;
+        values[node] = data;
+        left[node] = NIL;
+        right[node] = NIL;
+        height[node] = 1;
+        sizes[node] = 1;
+        return node;
+    }
+
+    /**
+     * Return a slot to the free list; the value is cleared so it can be garbage collected
+     */
+    private void release(int node) {
+        values[node] = null;
+        right[node] = NIL;
+        height[node] = 0;
+        sizes[node] = 0;
+        left[node] = freeHead;
+        freeHead = node;
+    }
+
+    private int getBalance(int node) {
+        return (node == NIL) ? 0 : height[left[node]] - height[right[node]];
+    }
+
+    /**
+     * Update the height and subtree size of a node based on its children
+     */
+    private void updateHeight(int node) {
+        height[node] = 1 + Math.max(height[left[node]], height[right[node]]);
+        sizes[node] = 1 + sizes[left[node]] + sizes[right[node]];
+    }
+
+    private int rightRotate(int y) {
+        int x = left[y];
+        left[y] = right[x];
+        right[x] = y;
+        updateHeight(y);
+        updateHeight(x);
+        return x;
+    }
+
+    private int leftRotate(int x) {
+        int y = right[x];
+        right[x] = left[y];
+        left[y] = x;
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+
+    /**
+     * Rebalance a node whose children are balanced and whose height is up to date
+     */
+    private int rebalance(int node) {
+        int balance = getBalance(node);
+        if (balance > 1) {
+            if (getBalance(left[node]) < 0) {
+                left[node] = leftRotate(left[node]);   // Left Right Case
+            }
+            return rightRotate(node);                   // Left Left Case
+        }
+        if (balance < -1) {
+            if (getBalance(right[node]) > 0) {
+                right[node] = rightRotate(right[node]); // Right Left Case
+            }
+            return leftRotate(node);                    // Right Right Case
+        }
+        return node;
+    }
+
+    private int[] pathBuffer() {
+        int needed = height[root] + 1;
+        if (pathBuffer == null || pathBuffer.length < needed) {
+            pathBuffer = new int[Math.max(needed, 16)];
+        }
+        return pathBuffer;
+    }
+
+    private void replaceChild(int parent, int old, int replacement) {
+        if (parent == NIL) {
+            root = replacement;
+        } else if (left[parent] == old) {
+            left[parent] = replacement;
+        } else {
+            right[parent] = replacement;
+        }
+    }
+
+    private void rebalancePath(int[] path, int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            int node = path[i];
+            updateHeight(node);
+            int balanced = rebalance(node);
+            if (balanced != node) {
+                replaceChild(i > 0 ? path[i - 1] : NIL, node, balanced);
+            }
+        }
+    }
+
+    /**
+     * Insert a key-value pair (replacing the data of an existing key) - O(log n)
+     */
+    public void insert(int key, V data) {
+        int[] path = pathBuffer();
+        int depth = 0;
+        int node = root;
+        int parent = NIL;
+
+        while (node != NIL) {
+            if (key == keys[node]) {
+                values[node] = data;
+                return;
+            }
+            path[depth++] = node;
+            parent = node;
+            node = (key < keys[node]) ? left[node] : right[node];
+        }
+
+        int newNode = allocate(key, data);
+        size++;
+        modCount++;
+        if (parent == NIL) {
+            root = newNode;
+            return;
+        }
+        if (key < keys[parent]) {
+            left[parent] = newNode;
+        } else {
+            right[parent] = newNode;
+        }
+        rebalancePath(path, depth);
+    }
+
+    /**
+     * Replace the contents with count entries whose keys are strictly increasing - O(n)
+     * Entry i goes to slot i + 1, so the slots are in key order, and each subtree root is the
+     * middle entry of its range, so the tree is perfectly balanced.
+     * Throws IllegalArgumentException if the keys are not sorted.
+     */
+    public void buildFromSorted(int[] sortedKeys, V[] sortedValues, int count) {
+        for (int i = 1; i < count; i++) {
+            if (sortedKeys[i - 1] >= sortedKeys[i]) {
+                throw new IllegalArgumentException("Keys must be strictly increasing (index " + i + ")");
+            }
+        }
+        allocateColumns(count);
+        for (int i = 0; i < count; i++) {
+            keys[i + 1] = sortedKeys[i];
+            values[i + 1] = sortedValues[i];
+        }
+        root = buildRange(0, count - 1);
+        size = count;
+        nextSlot = count + 1;
+        modCount++;
+    }
+
+    private int buildRange(int lo, int hi) {
+        if (lo > hi) return NIL;
+        int mid = (lo + hi) >>> 1;
+        int node = mid + 1;
+        left[node] = buildRange(lo, mid - 1);
+        right[node] = buildRange(mid + 1, hi);
+        updateHeight(node);
+        return node;
+    }
+
+    /**
+     * Search for a value by key - O(log n), no allocation
+     */
+    public V search(int key) {
+        int node = findNode(key);
+        return (node == NIL) ? null : value(node);
+    }
+
+    /**
+     * Check if a key exists in the tree - O(log n)
+     */
+    public boolean contains(int key) {
+        return findNode(key) != NIL;
+    }
+
+    private int findNode(int key) {
+        int node = root;
+        while (node != NIL) {
+            int k = keys[node];
+            if (key < k) {
+                node = left[node];
+            } else if (key > k) {
+                node = right[node];
+            } else {
+                return node;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Delete a node by key - O(log n); the freed slot is reused by a later insert
+     */
+    public void delete(int key) {
+        int[] path = pathBuffer();
+        int depth = 0;
+        int node = root;
+
+        while (node != NIL && keys[node] != key) {
+            path[depth++] = node;
+            node = (key < keys[node]) ? left[node] : right[node];
+        }
+        if (node == NIL) return;
+
+        size--;
+        modCount++;
+
+        if (left[node] != NIL && right[node] != NIL) {
+            // Two children: copy the in-order successor here, then unlink the successor
+            path[depth++] = node;
+            int successor = right[node];
+            while (left[successor] != NIL) {
+                path[depth++] = successor;
+                successor = left[successor];
+            }
+            keys[node] = keys[successor];
+            values[node] = values[successor];
+            replaceChild(path[depth - 1], successor, right[successor]);
+            release(successor);
+        } else {
+            int child = (left[node] != NIL) ? left[node] : right[node];
+            replaceChild(depth > 0 ? path[depth - 1] : NIL, node, child);
+            release(node);
+        }
+
+        rebalancePath(path, depth);
+    }
+
+    /**
+     * Update the value for an existing key - O(log n)
+     * Returns true if key existed and was updated, false otherwise
+     */
+    public boolean update(int key, V newData) {
+        int node = findNode(key);
+        if (node == NIL) return false;
+        values[node] = newData;
+        return true;
+    }
+
+    /**
+     * In-order traversal - returns elements sorted by key - O(n)
+     */
+    public LinkedList<V> inOrderTraversal() {
+        LinkedList<V> result = new LinkedList<V>();
+        for (V value : this) {
+            result.append(value);
+        }
+        return result;
+    }
+
+    /**
+     * Reverse in-order traversal - returns elements in descending key order - O(n)
+     */
+    public LinkedList<V> reverseInOrderTraversal() {
+        LinkedList<V> result = new LinkedList<V>();
+        Iterator<V> it = descendingIterator();
+        while (it.hasNext()) {
+            result.append(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Range query - all values with minKey <= key <= maxKey - O(log n + k)
+     */
+    public LinkedList<V> rangeQuery(int minKey, int maxKey) {
+        LinkedList<V> result = new LinkedList<V>();
+        Iterator<V> it = rangeIterator(minKey, maxKey);
+        while (it.hasNext()) {
+            result.append(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Get minimum value
+     */
+    public V getMin() {
+        if (root == NIL) return null;
+        int current = root;
+        while (left[current] != NIL) {
+            current = left[current];
+        }
+        return value(current);
+    }
+
+    /**
+     * Get maximum value
+     */
+    public V getMax() {
+        if (root == NIL) return null;
+        int current = root;
+        while (right[current] != NIL) {
+            current = right[current];
+        }
+        return value(current);
+    }
+
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of node slots currently allocated in the columns (live nodes plus free slots)
+     */
+    public int capacity() {
+        return keys.length - 1;
+    }
+
+    /**
+     * Rank of a key - the number of keys strictly less than key - O(log n)
+     */
+    public int rank(int key) {
+        int rank = 0;
+        int current = root;
+        while (current != NIL) {
+            if (key <= keys[current]) {
+                current = left[current];
+            } else {
+                rank += sizes[left[current]] + 1;
+                current = right[current];
+            }
+        }
+        return rank;
+    }
+
+    private int selectNode(int index) {
+        if (index < 0 || index >= size) return NIL;
+        int current = root;
+        while (current != NIL) {
+            int leftSize = sizes[left[current]];
+            if (index < leftSize) {
+                current = left[current];
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                current = right[current];
+            } else {
+                return current;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Value with the index-th smallest key (0-based), or null if out of range - O(log n)
+     */
+    public V select(int index) {
+        int node = selectNode(index);
+        return (node == NIL) ? null : value(node);
+    }
+
+    /**
+     * The index-th smallest key (0-based) - O(log n)
+     * Throws NoSuchElementException if index is outside [0, size())
+     */
+    public int selectKey(int index) {
+        int node = selectNode(index);
+        if (node == NIL) throw new NoSuchElementException("No key at index " + index);
+        return keys[node];
+    }
+
+    /**
+     * Number of keys between minKey and maxKey (inclusive) - O(log n)
+     */
+    public int countInRange(int minKey, int maxKey) {
+        if (minKey > maxKey) return 0;
+        int upper = (maxKey == Integer.MAX_VALUE) ? size : rank(maxKey + 1);
+        return upper - rank(minKey);
+    }
+
+    /**
+     * Up to count values starting at the index-th smallest key, ascending - O(log n + count)
+     */
+    public LinkedList<V> selectRange(int index, int count) {
+        LinkedList<V> result = new LinkedList<V>();
+        if (index < 0 || index >= size || count <= 0) return result;
+        Iterator<V> it = rangeIterator(selectKey(index), Integer.MAX_VALUE);
+        for (int i = 0; i < count && it.hasNext(); i++) {
+            result.append(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Verify ordering, heights, balance factors and subtree sizes, and that every slot handed out
+     * is either live or on the free list - O(capacity)
+     * Throws IllegalStateException describing the first violation found
+     */
+    void checkInvariants() {
+        if (sizes[NIL] != 0 || height[NIL] != 0) {
+            throw new IllegalStateException("null slot has size " + sizes[NIL] + ", height " + height[NIL]);
+        }
+        if (sizes[root] != size) {
+            throw new IllegalStateException("size " + size + " but root subtree holds " + sizes[root]);
+        }
+        checkSubtree(root, Integer.MIN_VALUE, Integer.MAX_VALUE, true, true);
+        int free = 0;
+        for (int node = freeHead; node != NIL; node = left[node]) {
+            if (values[node] != null || height[node] != 0) {
+                throw new IllegalStateException("free slot " + node + " still holds a node");
+            }
+            if (++free > nextSlot) {
+                throw new IllegalStateException("free list has a cycle");
+            }
+        }
+        if (size + free != nextSlot - 1) {
+            throw new IllegalStateException(size + " live and " + free + " free slots, but " + (nextSlot - 1) + " handed out");
+        }
+    }
+
+    private void checkSubtree(int node, int low, int high, boolean lowOpen, boolean highOpen) {
+        if (node == NIL) return;
+        int key = keys[node];
+        if ((!lowOpen && key <= low) || (!highOpen && key >= high)) {
+            throw new IllegalStateException("key " + key + " out of order");
+        }
+        checkSubtree(left[node], low, key, lowOpen, false);
+        checkSubtree(right[node], key, high, false, highOpen);
+        if (height[node] != 1 + Math.max(height[left[node]], height[right[node]])) {
+            throw new IllegalStateException("wrong height at key " + key);
+        }
+        if (Math.abs(getBalance(node)) > 1) {
+            throw new IllegalStateException("unbalanced at key " + key);
+        }
+        if (sizes[node] != 1 + sizes[left[node]] + sizes[right[node]]) {
+            throw new IllegalStateException("wrong subtree size at key " + key);
+        }
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new InOrderIterator(NIL, root, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+    }
+
+    public Iterator<V> descendingIterator() {
+        return new InOrderIterator(NIL, root, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+    }
+
+    /**
+     * Lazy in-order iterator over keys in [minKey, maxKey] - O(log n) to position, O(1) amortized per step
+     */
+    public Iterator<V> rangeIterator(int minKey, int maxKey) {
+        return new InOrderIterator(NIL, root, minKey, maxKey, false);
+    }
+
+    public Iterator<V> rangeIterator(int minKey, int maxKey, boolean descending) {
+        return new InOrderIterator(NIL, root, minKey, maxKey, descending);
+    }
+
+    @Override
+    public Spliterator<V> spliterator() {
+        return new InOrderSpliterator(NIL, root, size);
+    }
+
+    public Stream<V> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<V> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Stack-based walk of an optional first node followed by a subtree, keys in [minKey, maxKey].
+     * Same scheme as AVLTree's iterator, with slot indexes on the stack.
+     */
+    private class InOrderIterator implements Iterator<V> {
+        private final int minKey;
+        private final int maxKey;
+        private final boolean descending;
+        // Full scans skip the key column entirely
+        private final boolean bounded;
+        private int first;
+        private final int[] stack;
+        private int top;
+        private final int expectedModCount = modCount;
+
+        InOrderIterator(int first, int subtree, int minKey, int maxKey, boolean descending) {
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+            this.descending = descending;
+            this.bounded = minKey != Integer.MIN_VALUE || maxKey != Integer.MAX_VALUE;
+            this.stack = new int[height[subtree] + 1];
+            if (first != NIL && keys[first] >= minKey && keys[first] <= maxKey) {
+                this.first = first;
+            }
+            pushEdge(subtree);
+        }
+
+        private void pushEdge(int node) {
+            while (node != NIL) {
+                if (!bounded) {
+                    stack[top++] = node;
+                    node = descending ? right[node] : left[node];
+                } else if (!descending) {
+                    if (keys[node] < minKey) {
+                        node = right[node];
+                    } else {
+                        stack[top++] = node;
+                        node = left[node];
+                    }
+                } else {
+                    if (keys[node] > maxKey) {
+                        node = left[node];
+                    } else {
+                        stack[top++] = node;
+                        node = right[node];
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (first != NIL) return true;
+            if (top == 0) return false;
+            if (!bounded) return true;
+            return descending ? keys[stack[top - 1]] >= minKey : keys[stack[top - 1]] <= maxKey;
+        }
+
+        @Override
+        public V next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            if (first != NIL) {
+                V data = value(first);
+                first = NIL;
+                return data;
+            }
+            int node = stack[--top];
+            pushEdge(descending ? left[node] : right[node]);
+            return value(node);
+        }
+    }
+
+    /**
+     * Spliterator over "first node, then subtree", split along subtrees with exact sizes
+     */
+    private class InOrderSpliterator implements Spliterator<V> {
+        private int first;
+        private int subtree;
+        private long remaining;
+        private InOrderIterator iterator;
+
+        InOrderSpliterator(int first, int subtree, long remaining) {
+            this.first = first;
+            this.subtree = subtree;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            if (iterator != null || subtree == NIL || left[subtree] == NIL) return null;
+            long prefixSize = (first != NIL ? 1 : 0) + sizes[left[subtree]];
+            InOrderSpliterator prefix = new InOrderSpliterator(first, left[subtree], prefixSize);
+            first = subtree;
+            subtree = right[subtree];
+            remaining -= prefixSize;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super V> action) {
+            if (iterator == null) {
+                iterator = new InOrderIterator(first, subtree, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+            }
+            if (!iterator.hasNext()) return false;
+            action.accept(iterator.next());
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
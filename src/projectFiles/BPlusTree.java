@@ -0,0 +1,560 @@
+package projectFiles;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * B+ Tree implementation - a high-fanout alternative to AVLTree for range-heavy indexes.
+ * Every entry lives in a leaf; internal nodes only hold separator keys. Leaves are linked,
+ * so a range scan finds its first leaf in O(log_B n) and then walks whole arrays of entries
+ * instead of chasing one node per entry.
+ * Same insert/search/delete/rangeQuery contract as AVLTree (an existing key is updated on insert).
+ * @param <K> The type of key (must be Comparable)
+ * @param <V> The type of value/data stored
+ */
+public class BPlusTree<K extends Comparable<K>, V> implements Iterable<V> {
+
+    private static final int DEFAULT_ORDER = 64;
+
+    /**
+     * Common part of leaves and internal nodes: count sorted keys
+     */
+    private abstract static class Node {
+        Object[] keys;
+        int count;
+    }
+
+    private static final class Leaf extends Node {
+        Object[] values;
+        Leaf next;
+        Leaf prev;
+
+        Leaf(int order) {
+            keys = new Object[order + 1];
+            values = new Object[order + 1];
+        }
+    }
+
+    /**
+     * Child i holds the keys k with keys[i - 1] <= k < keys[i]
+     */
+    private static final class Internal extends Node {
+        Node[] children;
+
+        Internal(int order) {
+            keys = new Object[order + 1];
+            children = new Node[order + 2];
+        }
+    }
+
+    // Maximum keys per node; nodes other than the root keep at least order / 2
+    private final int order;
+    private final int minKeys;
+    private Node root;
+    private int size;
+    // Incremented on every structural change so iterators can fail fast
+    private int modCount;
+
+    // Set by insertInto when a node splits: the key to push up to the parent
+    private Object splitKey;
+    // Set by insertInto when the key already existed
+    private boolean replaced;
+
+    public BPlusTree() {
+        this(DEFAULT_ORDER);
+    }
+
+    /**
+     * Create a tree whose nodes hold at most order keys (at least 4)
+     */
+    public BPlusTree(int order) {
+        if (order < 4) throw new IllegalArgumentException("order must be at least 4");
+        this.order = order;
+        this.minKeys = order / 2;
+        this.root = new Leaf(order);
+        this.size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(K key, Object nodeKey) {
+        return key.compareTo((K) nodeKey);
+    }
+
+    /**
+     * First index whose key is >= key (count if none) - binary search, O(log order)
+     */
+    private int lowerBound(Node node, K key) {
+        int lo = 0;
+        int hi = node.count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(key, node.keys[mid]) > 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Index of the child of an internal node that may hold key
+     */
+    private int childIndex(Internal node, K key) {
+        int lo = 0;
+        int hi = node.count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(key, node.keys[mid]) >= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private Leaf findLeaf(K key) {
+        Node node = root;
+        while (node instanceof Internal) {
+            Internal internal = (Internal) node;
+            node = internal.children[childIndex(internal, key)];
+        }
+        return (Leaf) node;
+    }
+
+    private Leaf firstLeaf() {
+        Node node = root;
+        while (node instanceof Internal) {
+            node = ((Internal) node).children[0];
+        }
+        return (Leaf) node;
+    }
+
+    private Leaf lastLeaf() {
+        Node node = root;
+        while (node instanceof Internal) {
+            Internal internal = (Internal) node;
+            node = internal.children[internal.count];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Insert a key-value pair (replacing the data of an existing key) - O(log n)
+     */
+    public void insert(K key, V data) {
+        replaced = false;
+        Node sibling = insertInto(root, key, data);
+        if (sibling != null) {
+            Internal newRoot = new Internal(order);
+            newRoot.keys[0] = splitKey;
+            newRoot.children[0] = root;
+            newRoot.children[1] = sibling;
+            newRoot.count = 1;
+            root = newRoot;
+        }
+        splitKey = null;
+        if (!replaced) {
+            size++;
+            modCount++;
+        }
+    }
+
+    /**
+     * Insert below node; returns the new right sibling if node split (its separator in splitKey), else null
+     */
+    private Node insertInto(Node node, K key, V data) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int pos = lowerBound(leaf, key);
+            if (pos < leaf.count && compare(key, leaf.keys[pos]) == 0) {
+                leaf.values[pos] = data;
+                replaced = true;
+                return null;
+            }
+            System.arraycopy(leaf.keys, pos, leaf.keys, pos + 1, leaf.count - pos);
+            System.arraycopy(leaf.values, pos, leaf.values, pos + 1, leaf.count - pos);
+            leaf.keys[pos] = key;
+            leaf.values[pos] = data;
+            leaf.count++;
+            return (leaf.count > order) ? splitLeaf(leaf) : null;
+        }
+
+        Internal internal = (Internal) node;
+        int i = childIndex(internal, key);
+        Node sibling = insertInto(internal.children[i], key, data);
+        if (sibling == null) return null;
+
+        System.arraycopy(internal.keys, i, internal.keys, i + 1, internal.count - i);
+        System.arraycopy(internal.children, i + 1, internal.children, i + 2, internal.count - i);
+        internal.keys[i] = splitKey;
+        internal.children[i + 1] = sibling;
+        internal.count++;
+        return (internal.count > order) ? splitInternal(internal) : null;
+    }
+
+    private Leaf splitLeaf(Leaf leaf) {
+        Leaf right = new Leaf(order);
+        int keep = leaf.count / 2;
+        right.count = leaf.count - keep;
+        System.arraycopy(leaf.keys, keep, right.keys, 0, right.count);
+        System.arraycopy(leaf.values, keep, right.values, 0, right.count);
+        clear(leaf.keys, keep, leaf.count);
+        clear(leaf.values, keep, leaf.count);
+        leaf.count = keep;
+
+        right.next = leaf.next;
+        right.prev = leaf;
+        if (leaf.next != null) leaf.next.prev = right;
+        leaf.next = right;
+        splitKey = right.keys[0];
+        return right;
+    }
+
+    private Internal splitInternal(Internal node) {
+        Internal right = new Internal(order);
+        int mid = node.count / 2;
+        splitKey = node.keys[mid];
+        right.count = node.count - mid - 1;
+        System.arraycopy(node.keys, mid + 1, right.keys, 0, right.count);
+        System.arraycopy(node.children, mid + 1, right.children, 0, right.count + 1);
+        clear(node.keys, mid, node.count);
+        clear(node.children, mid + 1, node.count + 1);
+        node.count = mid;
+        return right;
+    }
+
+    private static void clear(Object[] array, int from, int to) {
+        for (int i = from; i < to; i++) {
+            array[i] = null;
+        }
+    }
+
+    /**
+     * Search for a value by key - O(log n)
+     */
+    @SuppressWarnings("unchecked")
+    public V search(K key) {
+        Leaf leaf = findLeaf(key);
+        int pos = lowerBound(leaf, key);
+        if (pos < leaf.count && compare(key, leaf.keys[pos]) == 0) {
+            return (V) leaf.values[pos];
+        }
+        return null;
+    }
+
+    /**
+     * Check if a key exists in the tree - O(log n)
+     */
+    public boolean contains(K key) {
+        Leaf leaf = findLeaf(key);
+        int pos = lowerBound(leaf, key);
+        return pos < leaf.count && compare(key, leaf.keys[pos]) == 0;
+    }
+
+    /**
+     * Update the value for an existing key - O(log n)
+     * Returns true if key existed and was updated, false otherwise
+     */
+    public boolean update(K key, V newData) {
+        Leaf leaf = findLeaf(key);
+        int pos = lowerBound(leaf, key);
+        if (pos < leaf.count && compare(key, leaf.keys[pos]) == 0) {
+            leaf.values[pos] = newData;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Delete a key - O(log n); underfull nodes borrow from or merge with a sibling
+     */
+    public void delete(K key) {
+        if (!deleteFrom(root, key)) return;
+        size--;
+        modCount++;
+        if (root instanceof Internal && root.count == 0) {
+            root = ((Internal) root).children[0];
+        }
+    }
+
+    private boolean deleteFrom(Node node, K key) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int pos = lowerBound(leaf, key);
+            if (pos == leaf.count || compare(key, leaf.keys[pos]) != 0) return false;
+            System.arraycopy(leaf.keys, pos + 1, leaf.keys, pos, leaf.count - pos - 1);
+            System.arraycopy(leaf.values, pos + 1, leaf.values, pos, leaf.count - pos - 1);
+            leaf.count--;
+            leaf.keys[leaf.count] = null;
+            leaf.values[leaf.count] = null;
+            return true;
+        }
+
+        Internal internal = (Internal) node;
+        int i = childIndex(internal, key);
+        if (!deleteFrom(internal.children[i], key)) return false;
+        if (internal.children[i].count < minKeys) {
+            fixUnderflow(internal, i);
+        }
+        return true;
+    }
+
+    /**
+     * Restore the minimum fill of parent.children[i] from a neighbour, merging when neither can spare a key
+     */
+    private void fixUnderflow(Internal parent, int i) {
+        Node child = parent.children[i];
+        Node left = (i > 0) ? parent.children[i - 1] : null;
+        Node right = (i < parent.count) ? parent.children[i + 1] : null;
+
+        if (left != null && left.count > minKeys) {
+            borrowFromLeft(parent, i, left, child);
+        } else if (right != null && right.count > minKeys) {
+            borrowFromRight(parent, i, child, right);
+        } else if (left != null) {
+            merge(parent, i - 1, left, child);
+        } else {
+            merge(parent, i, child, right);
+        }
+    }
+
+    private void borrowFromLeft(Internal parent, int i, Node left, Node child) {
+        System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+        if (child instanceof Leaf) {
+            Leaf leaf = (Leaf) child;
+            Leaf donor = (Leaf) left;
+            System.arraycopy(leaf.values, 0, leaf.values, 1, leaf.count);
+            leaf.keys[0] = donor.keys[donor.count - 1];
+            leaf.values[0] = donor.values[donor.count - 1];
+            donor.values[donor.count - 1] = null;
+            parent.keys[i - 1] = leaf.keys[0];
+        } else {
+            Internal node = (Internal) child;
+            Internal donor = (Internal) left;
+            System.arraycopy(node.children, 0, node.children, 1, node.count + 1);
+            node.keys[0] = parent.keys[i - 1];
+            node.children[0] = donor.children[donor.count];
+            donor.children[donor.count] = null;
+            parent.keys[i - 1] = donor.keys[donor.count - 1];
+        }
+        left.keys[left.count - 1] = null;
+        left.count--;
+        child.count++;
+    }
+
+    private void borrowFromRight(Internal parent, int i, Node child, Node right) {
+        if (child instanceof Leaf) {
+            Leaf leaf = (Leaf) child;
+            Leaf donor = (Leaf) right;
+            leaf.keys[leaf.count] = donor.keys[0];
+            leaf.values[leaf.count] = donor.values[0];
+            System.arraycopy(donor.values, 1, donor.values, 0, donor.count - 1);
+            donor.values[donor.count - 1] = null;
+            System.arraycopy(donor.keys, 1, donor.keys, 0, donor.count - 1);
+            parent.keys[i] = donor.keys[0];
+        } else {
+            Internal node = (Internal) child;
+            Internal donor = (Internal) right;
+            node.keys[node.count] = parent.keys[i];
+            node.children[node.count + 1] = donor.children[0];
+            parent.keys[i] = donor.keys[0];
+            System.arraycopy(donor.keys, 1, donor.keys, 0, donor.count - 1);
+            System.arraycopy(donor.children, 1, donor.children, 0, donor.count);
+            donor.children[donor.count] = null;
+        }
+        right.keys[right.count - 1] = null;
+        right.count--;
+        child.count++;
+    }
+
+    /**
+     * Merge parent.children[sep + 1] (right) into parent.children[sep] (left) and drop separator sep
+     */
+    private void merge(Internal parent, int sep, Node left, Node right) {
+        if (left instanceof Leaf) {
+            Leaf target = (Leaf) left;
+            Leaf source = (Leaf) right;
+            System.arraycopy(source.keys, 0, target.keys, target.count, source.count);
+            System.arraycopy(source.values, 0, target.values, target.count, source.count);
+            target.count += source.count;
+            target.next = source.next;
+            if (source.next != null) source.next.prev = target;
+        } else {
+            Internal target = (Internal) left;
+            Internal source = (Internal) right;
+            target.keys[target.count] = parent.keys[sep];
+            System.arraycopy(source.keys, 0, target.keys, target.count + 1, source.count);
+            System.arraycopy(source.children, 0, target.children, target.count + 1, source.count + 1);
+            target.count += source.count + 1;
+        }
+
+        System.arraycopy(parent.keys, sep + 1, parent.keys, sep, parent.count - sep - 1);
+        System.arraycopy(parent.children, sep + 2, parent.children, sep + 1, parent.count - sep - 1);
+        parent.count--;
+        parent.keys[parent.count] = null;
+        parent.children[parent.count + 1] = null;
+    }
+
+    /**
+     * In-order traversal - returns elements sorted by key - O(n), walking the leaf chain
+     */
+    public LinkedList<V> inOrderTraversal() {
+        LinkedList<V> result = new LinkedList<V>();
+        for (V value : this) {
+            result.append(value);
+        }
+        return result;
+    }
+
+    /**
+     * Range query - all values with minKey <= key <= maxKey - O(log n + k)
+     */
+    public LinkedList<V> rangeQuery(K minKey, K maxKey) {
+        LinkedList<V> result = new LinkedList<V>();
+        Iterator<V> it = rangeIterator(minKey, maxKey);
+        while (it.hasNext()) {
+            result.append(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Get minimum value
+     */
+    @SuppressWarnings("unchecked")
+    public V getMin() {
+        Leaf leaf = firstLeaf();
+        return (leaf.count == 0) ? null : (V) leaf.values[0];
+    }
+
+    /**
+     * Get maximum value
+     */
+    @SuppressWarnings("unchecked")
+    public V getMax() {
+        Leaf leaf = lastLeaf();
+        return (leaf.count == 0) ? null : (V) leaf.values[leaf.count - 1];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of levels (1 for a single leaf)
+     */
+    public int height() {
+        int levels = 1;
+        Node node = root;
+        while (node instanceof Internal) {
+            node = ((Internal) node).children[0];
+            levels++;
+        }
+        return levels;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new LeafIterator(firstLeaf(), 0, null);
+    }
+
+    /**
+     * Lazy iterator over keys in [minKey, maxKey] along the leaf chain - O(log n) to position, O(1) per step.
+     * A null bound means unbounded on that side.
+     */
+    public Iterator<V> rangeIterator(K minKey, K maxKey) {
+        if (minKey == null) return new LeafIterator(firstLeaf(), 0, maxKey);
+        Leaf leaf = findLeaf(minKey);
+        return new LeafIterator(leaf, lowerBound(leaf, minKey), maxKey);
+    }
+
+    /**
+     * Verify sorted keys, separator bounds, node fill, uniform leaf depth and the leaf chain - O(n)
+     * Throws IllegalStateException describing the first violation found
+     */
+    void checkInvariants() {
+        int leafDepth = checkNode(root, null, null, 1, -1);
+        int counted = 0;
+        Leaf previous = null;
+        for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            if (leaf.prev != previous) throw new IllegalStateException("broken prev link");
+            counted += leaf.count;
+            previous = leaf;
+        }
+        if (counted != size) {
+            throw new IllegalStateException("leaf chain holds " + counted + " entries, size is " + size);
+        }
+        if (leafDepth < 1) throw new IllegalStateException("no leaves");
+    }
+
+    @SuppressWarnings("unchecked")
+    private int checkNode(Node node, Object low, Object high, int depth, int leafDepth) {
+        if (node != root && node.count < minKeys) throw new IllegalStateException("underfull node");
+        if (node.count > order) throw new IllegalStateException("overfull node");
+        for (int i = 0; i < node.count; i++) {
+            K key = (K) node.keys[i];
+            if (i > 0 && key.compareTo((K) node.keys[i - 1]) <= 0) throw new IllegalStateException("keys out of order");
+            if (low != null && key.compareTo((K) low) < 0) throw new IllegalStateException("key below separator");
+            if (high != null && key.compareTo((K) high) >= 0) throw new IllegalStateException("key above separator");
+        }
+        if (node instanceof Leaf) {
+            if (leafDepth != -1 && depth != leafDepth) throw new IllegalStateException("leaves at different depths");
+            return depth;
+        }
+        Internal internal = (Internal) node;
+        for (int i = 0; i <= internal.count; i++) {
+            Object childLow = (i == 0) ? low : internal.keys[i - 1];
+            Object childHigh = (i == internal.count) ? high : internal.keys[i];
+            leafDepth = checkNode(internal.children[i], childLow, childHigh, depth + 1, leafDepth);
+        }
+        return leafDepth;
+    }
+
+    /**
+     * Walks the linked leaves from a starting position until a key exceeds maxKey (null = no limit)
+     */
+    private class LeafIterator implements Iterator<V> {
+        private Leaf leaf;
+        private int index;
+        private final K maxKey;
+        private final int expectedModCount = modCount;
+
+        LeafIterator(Leaf leaf, int index, K maxKey) {
+            this.leaf = leaf;
+            this.index = index;
+            this.maxKey = maxKey;
+            skipExhaustedLeaves();
+        }
+
+        private void skipExhaustedLeaves() {
+            while (leaf != null && index >= leaf.count) {
+                leaf = leaf.next;
+                index = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null && (maxKey == null || compare(maxKey, leaf.keys[index]) >= 0);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            V value = (V) leaf.values[index++];
+            skipExhaustedLeaves();
+            return value;
+        }
+    }
+}
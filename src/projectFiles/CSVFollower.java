@@ -0,0 +1,113 @@
+package projectFiles;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Phase II: Follows a CSV file that is only ever appended to (orders.csv, reviews.csv), adding the new rows
+ * to the existing trees instead of reloading the whole file.
+ * The follower remembers the byte offset it has consumed. poll() checks the file size, maps only the bytes
+ * after that offset, and parses them with the same parser and messages as MappedCSVReader. Only complete
+ * records are taken: a last line without its line break yet (or with an open quote) is left for the next poll.
+ * Each new row goes through the incremental adds, so orderTreeByDate and productTreeByReviewCount are
+ * updated in O(log n) per row. Polls must come from the thread that makes the other changes.
+ * A follower starts at the offset the loaded data ends at (what MappedCSVReader read, or what a snapshot
+ * recorded), not at the file's size when it is created, so rows appended in between are not skipped.
+ * Started at 0, it skips the header line like the loader does.
+ */
+public class CSVFollower {
+
+    private final String path;
+    private final MappedCSVReader.LineParser parser;
+    private final Consumer<Object> sink;
+    private long offset;
+    // The next complete record is the header (only when following from the start of the file)
+    private boolean header;
+
+    private CSVFollower(String path, MappedCSVReader.LineParser parser, Consumer<Object> sink, long offset) {
+        this.path = path;
+        this.parser = parser;
+        this.sink = sink;
+        this.offset = offset;
+        this.header = offset == 0;
+    }
+
+    /**
+     * Follow an orders file from offset (the rows before it are already loaded)
+     */
+    public static CSVFollower orders(String path, long offset) {
+        return new CSVFollower(path, MappedCSVReader::parseOrder, o -> Order.addOrder((Order) o), offset);
+    }
+
+    /**
+     * Follow a reviews file from offset (the rows before it are already loaded)
+     */
+    public static CSVFollower reviews(String path, long offset) {
+        return new CSVFollower(path, MappedCSVReader::parseReview, r -> MappedCSVReader.addReview((Review) r), offset);
+    }
+
+    private static long currentSize(String path) {
+        return new java.io.File(path).length();
+    }
+
+    /**
+     * Add the complete records appended since the last poll - O(1) if the file has not grown,
+     * else O(new bytes) parse + O(log n) per new row.
+     * Returns the number of entities added. A file that shrank was replaced; it is followed from its new end.
+     */
+    public int poll() {
+        long size = currentSize(path);
+        if (size == offset) return 0;
+        if (size < offset) {
+            System.out.println("Warning: " + path + " shrank; following it from its new end.");
+            offset = size;
+            return 0;
+        }
+
+        java.util.List<Object> items = new java.util.ArrayList<>();
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size <= offset) return 0;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size - offset, Integer.MAX_VALUE));
+            CSVTokenizer row = new CSVTokenizer(buffer, true);
+            int limit = buffer.limit();
+            int pos = 0;
+            while (pos < limit) {
+                int next = row.next(pos, limit);
+                if (!row.isComplete()) break;
+                if (header) {
+                    header = false;
+                } else if (!row.isBlank()) {
+                    parser.parse(row, items);
+                }
+                pos = next;
+            }
+            offset += pos;
+        } catch (IOException e) {
+            System.out.println("Error following " + path + ": " + e.getMessage());
+            return 0;
+        }
+
+        int added = 0;
+        for (Object item : items) {
+            if (item instanceof String) {
+                System.out.println(item);
+            } else {
+                sink.accept(item);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Bytes of the file consumed so far
+     */
+    public long offset() {
+        return offset;
+    }
+}
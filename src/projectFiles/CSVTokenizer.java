@@ -0,0 +1,286 @@
+package projectFiles;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Phase II: Reusable CSV record tokenizer over a ByteBuffer (heap-wrapped or memory-mapped).
+ * next() splits one record into a single reusable byte buffer and exposes field i as the offsets
+ * bytes[fieldStart(i), fieldEnd(i)), so tokenizing allocates nothing once the buffers have grown to
+ * the longest record. Numeric fields are parsed in place; Strings are made only by stringField/text.
+ *
+ * Quoting mode follows RFC 4180: a quoted field may contain commas, line breaks and "" (one literal
+ * quote), and records end at CRLF, LF or CR outside quotes. Like the original line parser it is
+ * lenient about quotes in the middle of a field, which open and close quoted text there.
+ * Plain mode splits on every comma and drops trailing empty fields, like String.split(",").
+ */
+public class CSVTokenizer {
+
+    // Text fields are decoded like FileReader does (platform charset; must be ASCII-compatible)
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ByteBuffer source;
+    private final boolean quoting;
+    private byte[] bytes = new byte[256];
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int fields;
+    private int recordStart, recordEnd;
+    private boolean blank;
+    private boolean complete;
+
+    public CSVTokenizer(ByteBuffer source, boolean quoting) {
+        this.source = source;
+        this.quoting = quoting;
+    }
+
+    /**
+     * Tokenize the record starting at pos (reading no further than limit) - O(record length)
+     * Returns the start of the next record.
+     */
+    public int next(int pos, int limit) {
+        int length = 0;
+        int fieldStart = 0;
+        boolean inQuotes = false;
+        fields = 0;
+        blank = true;
+        recordStart = pos;
+        int i = pos;
+        for (; i < limit; i++) {
+            byte b = source.get(i);
+            if (inQuotes) {
+                if (b == '"') {
+                    if (i + 1 < limit && source.get(i + 1) == '"') {
+                        i++;
+                    } else {
+                        inQuotes = false;
+                        continue;
+                    }
+                }
+            } else {
+                if (b == '\n' || b == '\r') break;
+                if (b == '"' && quoting) {
+                    inQuotes = true;
+                    blank = false;
+                    continue;
+                }
+                if (b == ',') {
+                    addField(fieldStart, length);
+                    fieldStart = length + 1;
+                }
+            }
+            if ((b & 0xff) > ' ') blank = false;
+            if (length == bytes.length) bytes = java.util.Arrays.copyOf(bytes, length * 2);
+            bytes[length++] = b;
+        }
+        addField(fieldStart, length);
+        if (!quoting) {
+            // String.split drops trailing empty fields
+            while (fields > 0 && starts[fields - 1] == ends[fields - 1]) fields--;
+        }
+        recordEnd = i;
+        complete = i < limit;
+        if (i < limit && source.get(i) == '\r' && i + 1 < limit && source.get(i + 1) == '\n') return i + 2;
+        return i < limit ? i + 1 : limit;
+    }
+
+    private void addField(int start, int end) {
+        if (fields == starts.length) {
+            starts = java.util.Arrays.copyOf(starts, fields * 2);
+            ends = java.util.Arrays.copyOf(ends, fields * 2);
+        }
+        starts[fields] = start;
+        ends[fields] = end;
+        fields++;
+    }
+
+    /**
+     * Start of the first record at or after pos, given whether pos lies inside quotes - O(distance)
+     * Records start right after a '\n' that is outside quotes; returns limit if there is none.
+     * Every '"' flips the quote state ("" flips it twice), so inQuotes at pos is the parity of the
+     * quote count before it (see countQuotes).
+     */
+    static int recordStartAfter(ByteBuffer buffer, int pos, int limit, boolean inQuotes, boolean quoting) {
+        for (int i = pos; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '"' && quoting) {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    static int countQuotes(ByteBuffer buffer, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '"') count++;
+        }
+        return count;
+    }
+
+    /**
+     * True if the record holds only blanks, like line.trim().isEmpty()
+     */
+    public boolean isBlank() {
+        return blank;
+    }
+
+    /**
+     * True if the record ended with a line break; false if it ran into limit (e.g. a line still being written)
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int fieldCount() {
+        return fields;
+    }
+
+    public int fieldStart(int field) {
+        return starts[field];
+    }
+
+    public int fieldEnd(int field) {
+        return ends[field];
+    }
+
+    /**
+     * Field contents of the current record, quotes removed; valid until the next call to next()
+     */
+    public byte[] buffer() {
+        return bytes;
+    }
+
+    public int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) return i;
+        }
+        return -1;
+    }
+
+    public int trimmedStart(int field) {
+        int s = starts[field];
+        int e = ends[field];
+        while (s < e && (bytes[s] & 0xff) <= ' ') s++;
+        return s;
+    }
+
+    public int trimmedEnd(int field) {
+        int s = starts[field];
+        int e = ends[field];
+        while (e > s && (bytes[e - 1] & 0xff) <= ' ') e--;
+        return e;
+    }
+
+    public int intField(int field) {
+        return parseInt(starts[field], ends[field]);
+    }
+
+    public double doubleField(int field) {
+        return parseDouble(starts[field], ends[field]);
+    }
+
+    /**
+     * Trimmed field text
+     */
+    public String stringField(int field) {
+        int s = trimmedStart(field);
+        return text(s, trimmedEnd(field));
+    }
+
+    /**
+     * Trimmed field text with all later fields appended, each after a ','
+     * (field itself loses its trailing blanks first, later fields keep theirs)
+     */
+    public String joinedField(int field) {
+        int s = trimmedStart(field);
+        int e = trimmedEnd(field);
+        StringBuilder joined = new StringBuilder(text(s, e));
+        for (int f = field + 1; f < fields; f++) {
+            joined.append(',').append(text(starts[f], ends[f]));
+        }
+        return joined.toString().trim();
+    }
+
+    public String text(int from, int to) {
+        return new String(bytes, from, to - from, CHARSET);
+    }
+
+    /**
+     * The raw record, quotes included, for error messages
+     */
+    public String line() {
+        byte[] raw = new byte[recordEnd - recordStart];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = source.get(recordStart + i);
+        }
+        return new String(raw, CHARSET);
+    }
+
+    /**
+     * Integer.parseInt of the trimmed bytes[from, to); anything but plain ASCII digits
+     * (or an overflow) goes to Integer.parseInt itself, which decides or throws
+     */
+    public int parseInt(int from, int to) {
+        while (from < to && (bytes[from] & 0xff) <= ' ') from++;
+        while (to > from && (bytes[to - 1] & 0xff) <= ' ') to--;
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        if (i == to || to - i > 10) return Integer.parseInt(text(from, to));
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) return Integer.parseInt(text(from, to));
+            value = value * 10 + digit;
+        }
+        if (negative) value = -value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) return Integer.parseInt(text(from, to));
+        return (int) value;
+    }
+
+    /**
+     * Double.parseDouble of the trimmed bytes[from, to).
+     * Plain decimals with a mantissa below 2^53 and at most 22 fraction digits are exact as
+     * mantissa / 10^digits (one correctly rounded division); everything else (exponents,
+     * long mantissas, NaN, errors) goes to Double.parseDouble itself
+     */
+    public double parseDouble(int from, int to) {
+        while (from < to && (bytes[from] & 0xff) <= ' ') from++;
+        while (to > from && (bytes[to - 1] & 0xff) <= ' ') to--;
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < to; i++) {
+            byte b = bytes[i];
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) return Double.parseDouble(text(from, to));
+            mantissa = mantissa * 10 + digit;
+            if (mantissa >= 1L << 53) return Double.parseDouble(text(from, to));
+            digits++;
+            if (fractionDigits >= 0) fractionDigits++;
+        }
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) return Double.parseDouble(text(from, to));
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,208 @@
+package projectFiles;
+
+import java.util.Iterator;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe int-keyed AVL Tree for the entity ID indexes, built on PersistentIntAVLTree.
+ * The current version is published through a volatile field. Ordered reads (rank, range queries,
+ * traversals) take no lock at all - they work on whichever version they read, which never changes.
+ * Mutations are serialized by a writer lock; each one path-copies O(log n) nodes and publishes
+ * the new version, so a long report running on a snapshot never blocks a writer.
+ * Exact-key lookups (search, contains) go to an IntHashIndex kept in step with the tree by the
+ * same writers - O(1), read optimistically and retried under the read lock only if a write overlapped.
+ * Backs the four entity ID indexes (Product.productTree, Customer.customerTreeById, Order.orderTree,
+ * Review.reviewTree). Entity writers also hold EntityLock, which serializes the rest of each mutation;
+ * searchById still reads these trees without it.
+ * Values must be non-null.
+ * @param <V> The type of value/data stored
+ */
+public class ConcurrentIntAVLTree<V> implements Iterable<V> {
+
+    private volatile PersistentIntAVLTree<V> current = PersistentIntAVLTree.empty();
+    private final IntHashIndex<V> ids = new IntHashIndex<V>();
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * O(1) frozen view of the tree; later writes are not visible in it
+     */
+    public PersistentIntAVLTree<V> snapshot() {
+        return current;
+    }
+
+    /**
+     * Insert a key-value pair (replacing the data of an existing key) - O(log n), serialized
+     */
+    public void insert(int key, V data) {
+        long stamp = lock.writeLock();
+        try {
+            ids.put(key, data);
+            current = current.insert(key, data);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Delete a node by key - O(log n), serialized
+     */
+    public void delete(int key) {
+        long stamp = lock.writeLock();
+        try {
+            if (ids.remove(key) != null) {
+                current = current.delete(key);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Update the value for an existing key - O(log n), serialized
+     */
+    public boolean update(int key, V newData) {
+        long stamp = lock.writeLock();
+        try {
+            if (!ids.containsKey(key)) return false;
+            ids.put(key, newData);
+            current = current.insert(key, newData);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Insert only if the key is absent - O(log n), serialized
+     * Returns false if the key already existed (the existing data is kept)
+     */
+    public boolean insertIfAbsent(int key, V data) {
+        long stamp = lock.writeLock();
+        try {
+            if (ids.containsKey(key)) return false;
+            ids.put(key, data);
+            current = current.insert(key, data);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replace the contents with strictly increasing keys - O(n), serialized
+     */
+    public void buildFromSorted(int[] sortedKeys, V[] sortedValues, int count) {
+        PersistentIntAVLTree<V> built = PersistentIntAVLTree.fromSorted(sortedKeys, sortedValues, count);
+        long stamp = lock.writeLock();
+        try {
+            ids.clear(count);
+            for (int i = 0; i < count; i++) {
+                ids.put(sortedKeys[i], sortedValues[i]);
+            }
+            current = built;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Search for a value by key - O(1) expected, hash index
+     * Optimistic read; if a writer overlapped, the lookup is repeated under the read lock
+     */
+    public V search(int key) {
+        long stamp = lock.tryOptimisticRead();
+        V value = ids.get(key);
+        if (lock.validate(stamp)) return value;
+
+        stamp = lock.readLock();
+        try {
+            return ids.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean contains(int key) {
+        return search(key) != null;
+    }
+
+    public boolean isEmpty() {
+        return current.isEmpty();
+    }
+
+    public int size() {
+        return current.size();
+    }
+
+    public V getMin() {
+        return current.getMin();
+    }
+
+    public V getMax() {
+        return current.getMax();
+    }
+
+    public int rank(int key) {
+        return current.rank(key);
+    }
+
+    public V select(int index) {
+        return current.select(index);
+    }
+
+    public int countInRange(int minKey, int maxKey) {
+        return current.countInRange(minKey, maxKey);
+    }
+
+    /**
+     * Sorted copy of all values - O(n), lock-free
+     */
+    public LinkedList<V> inOrderTraversal() {
+        return current.inOrderTraversal();
+    }
+
+    public LinkedList<V> reverseInOrderTraversal() {
+        return current.reverseInOrderTraversal();
+    }
+
+    /**
+     * Copy of the values with minKey <= key <= maxKey - O(log n + k), lock-free
+     */
+    public LinkedList<V> rangeQuery(int minKey, int maxKey) {
+        return current.rangeQuery(minKey, maxKey);
+    }
+
+    /**
+     * Copy of up to count values starting at rank index - O(log n + count), lock-free
+     * Runs on one version, so the page is consistent even while writers are active
+     */
+    public LinkedList<V> selectRange(int index, int count) {
+        return current.selectRange(index, count);
+    }
+
+    /**
+     * Lazy iterator over the current version - O(1) to start; later writes are not visible
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return current.iterator();
+    }
+
+    /**
+     * Verify the AVL invariants of the current version, and that the hash index matches it - O(n)
+     */
+    void checkInvariants() {
+        long stamp = lock.readLock();
+        try {
+            current.checkInvariants();
+            if (ids.size() != current.size()) {
+                throw new IllegalStateException("hash index holds " + ids.size() + " keys, tree holds " + current.size());
+            }
+            for (V value : current) {
+                if (value == null) throw new IllegalStateException("null value in tree");
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
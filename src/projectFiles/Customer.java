@@ -1,5 +1,7 @@
 package projectFiles;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Locale;
 
 /**
@@ -16,7 +18,7 @@ public class Customer {
     static AVLTree<String, Customer> customerTreeByName = new AVLTree<String, Customer>();
     
     // Phase II: AVL Tree keyed by customer ID for efficient ID lookups - O(log n) operations
-    static AVLTree<Integer, Customer> customerTreeById = new AVLTree<Integer, Customer>();
+    static ConcurrentIntAVLTree<Customer> customerTreeById = new ConcurrentIntAVLTree<Customer>();
     
     // Phase I: LinkedList maintained for compatibility
     static LinkedList<Customer> customers = new LinkedList<Customer>();
@@ -37,35 +39,90 @@ public class Customer {
      * Phase II: Add customer using AVL Tree - O(log n) time complexity
      */
     public static boolean addCustomer(Customer c) {
-        // Check for duplicate customer ID using AVL search - O(log n)
-        if (searchById(c.customerId) != null) {
-            System.out.println("Error: Customer ID " + c.customerId + " already exists. Cannot add duplicate customer.");
-            return false;
+        EntityLock.lock();
+        try {
+            // Checked before logging, so a rejected add never becomes a log record - O(1) expected
+            if (customerTreeById.contains(c.customerId)) {
+                System.out.println("Error: Customer ID " + c.customerId + " already exists. Cannot add duplicate customer.");
+                return false;
+            }
+            WriteAheadLog.logAddCustomer(c);
+            customerTreeById.insert(c.customerId, c);
+            indexCustomer(c);
+            return true;
+        } finally {
+            EntityLock.unlock();
         }
-        
-        // Insert into AVL Trees - O(log n) each
+    }
+
+    /**
+     * Phase II: Add a batch of customers, in batch order.
+     * When the ID tree is empty it is built in O(n) with buildFromSorted: an ID-sorted batch is used
+     * as is, anything else is stable-sorted by ID first. A non-empty tree falls back to addCustomer per row.
+     * Returns the customers skipped because their ID was already taken (the first occurrence wins).
+     */
+    public static LinkedList<Customer> addCustomers(Customer[] batch, int count) {
+        EntityLock.lock();
+        try {
+            LinkedList<Customer> skipped = new LinkedList<Customer>();
+            if (!customerTreeById.isEmpty()) {
+                for (int i = 0; i < count; i++) {
+                    if (!addCustomer(batch[i])) skipped.append(batch[i]);
+                }
+                return skipped;
+            }
+
+            Customer[] byId = Arrays.copyOf(batch, count);
+            boolean sorted = true;
+            for (int i = 1; i < count && sorted; i++) {
+                sorted = byId[i - 1].customerId <= byId[i].customerId;
+            }
+            if (!sorted) {
+                Arrays.sort(byId, Comparator.comparingInt((Customer c) -> c.customerId));
+            }
+
+            // Equal IDs are now adjacent, first occurrence first
+            int[] ids = new int[count];
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique > 0 && ids[unique - 1] == byId[i].customerId) continue;
+                ids[unique] = byId[i].customerId;
+                byId[unique++] = byId[i];
+            }
+            customerTreeById.buildFromSorted(ids, byId, unique);
+
+            for (int i = 0; i < count; i++) {
+                Customer c = batch[i];
+                if (customerTreeById.search(c.customerId) != c) {
+                    System.out.println("Error: Customer ID " + c.customerId + " already exists. Cannot add duplicate customer.");
+                    skipped.append(c);
+                    continue;
+                }
+                indexCustomer(c);
+            }
+            return skipped;
+        } finally {
+            EntityLock.unlock();
+        }
+    }
+
+    /**
+     * Add a customer that is already in customerTreeById to the name tree and the list
+     */
+    private static void indexCustomer(Customer c) {
+        // Insert into name tree - O(log n)
         // Use Locale.ROOT for consistent case-insensitive comparison
-        customerTreeById.insert(c.customerId, c);
         customerTreeByName.insert(c.name.toLowerCase(Locale.ROOT), c);
         
         // Also maintain LinkedList for backward compatibility
-        if (customers.empty()) {
-            customers.insert(c);
-        } else {
-            customers.findFirst();
-            while (!customers.last()) {
-                customers.findNext();
-            }
-            customers.insert(c);
-        }
-        return true;
+        customers.append(c);
     }
 
     /**
-     * Phase II: Search customer by ID using AVL Tree - O(log n) time complexity
+     * Phase II: Search customer by ID using the hash ID index - O(1) expected time complexity
      */
     public static Customer searchById(int id) {
-        // Use AVL Tree for O(log n) search
+        // Answered by the IntHashIndex kept beside the ID tree, not by a tree descent
         return customerTreeById.search(id);
     }
     
@@ -99,13 +156,15 @@ public class Customer {
      * Phase II: Print all customers (unsorted - using LinkedList)
      */
     public static void printAll() {
-        if (customerTreeById.isEmpty()) {
+        // Report on an O(1) snapshot: consistent output, and writers are never blocked
+        PersistentIntAVLTree<Customer> snapshot = customerTreeById.snapshot();
+        if (snapshot.isEmpty()) {
             System.out.println("No customers available.");
             return;
         }
 
         // Use in-order traversal for output
-        LinkedList<Customer> allCustomers = customerTreeById.inOrderTraversal();
+        LinkedList<Customer> allCustomers = snapshot.inOrderTraversal();
         allCustomers.findFirst();
         while (allCustomers.retrieve() != null) {
             System.out.println(allCustomers.retrieve());
@@ -139,25 +198,31 @@ public class Customer {
      * Phase II: Update customer using AVL Tree - O(log n) for search
      */
     public static void updateCustomer(int id, String newName, String newEmail) {
-        Customer c = searchById(id); // O(log n)
-        if (c != null) {
-            // Need to update the name tree if name changed
-            String oldNameKey = c.name.toLowerCase(Locale.ROOT);
-            String newNameKey = newName.toLowerCase(Locale.ROOT);
-            
-            if (!oldNameKey.equals(newNameKey)) {
-                // Remove from name tree and re-insert with new key
-                customerTreeByName.delete(oldNameKey);
-                c.name = newName;
-                c.email = newEmail;
-                customerTreeByName.insert(newNameKey, c);
+        EntityLock.lock();
+        try {
+            Customer c = searchById(id); // O(1)
+            if (c != null) {
+                WriteAheadLog.logUpdateCustomer(id, newName, newEmail);
+                // Need to update the name tree if name changed
+                String oldNameKey = c.name.toLowerCase(Locale.ROOT);
+                String newNameKey = newName.toLowerCase(Locale.ROOT);
+                
+                if (!oldNameKey.equals(newNameKey)) {
+                    // Remove from name tree and re-insert with new key
+                    customerTreeByName.delete(oldNameKey);
+                    c.name = newName;
+                    c.email = newEmail;
+                    customerTreeByName.insert(newNameKey, c);
+                } else {
+                    c.name = newName;
+                    c.email = newEmail;
+                }
+                System.out.println("Customer updated successfully.");
             } else {
-                c.name = newName;
-                c.email = newEmail;
+                System.out.println("Customer not found.");
             }
-            System.out.println("Customer updated successfully.");
-        } else {
-            System.out.println("Customer not found.");
+        } finally {
+            EntityLock.unlock();
         }
     }
 
@@ -165,58 +230,56 @@ public class Customer {
      * Phase II: Place an order - uses AVL trees for efficient lookups
      */
     public static void placeOrder(int customerId, int productId, int quantity, String orderDate) {
-        // Validate customer exists - O(log n)
-        Customer customer = searchById(customerId);
-        if (customer == null) {
-            System.out.println("Customer not found.");
-            return;
-        }
+        EntityLock.lock();
+        try {
+            // Validate customer exists - O(log n)
+            Customer customer = searchById(customerId);
+            if (customer == null) {
+                System.out.println("Customer not found.");
+                return;
+            }
 
-        // Validate product exists - O(log n)
-        Product product = Product.searchById(productId);
-        if (product == null) {
-            System.out.println("Product not found.");
-            return;
-        }
+            // Validate product exists - O(log n)
+            Product product = Product.searchById(productId);
+            if (product == null) {
+                System.out.println("Product not found.");
+                return;
+            }
 
-        // Check stock availability
-        if (product.stock < quantity) {
-            System.out.println("Insufficient stock. Available: " + product.stock + ", Requested: " + quantity);
-            return;
-        }
+            // Check stock availability
+            if (product.stock < quantity) {
+                System.out.println("Insufficient stock. Available: " + product.stock + ", Requested: " + quantity);
+                return;
+            }
+            WriteAheadLog.logPlaceOrder(customerId, productId, quantity, orderDate);
 
-        // Generate new order ID using AVL tree
-        int newOrderId = Order.getNextOrderId();
+            // Generate new order ID using AVL tree
+            int newOrderId = Order.getNextOrderId();
 
-        // Create list of products (add product quantity times)
-        LinkedList<Product> productList = new LinkedList<Product>();
-        for (int i = 0; i < quantity; i++) {
-            if (productList.empty()) {
-                productList.insert(product);
-            } else {
-                productList.findFirst();
-                while (!productList.last()) {
-                    productList.findNext();
-                }
-                productList.insert(product);
+            // Create list of products (add product quantity times)
+            LinkedList<Product> productList = new LinkedList<Product>();
+            for (int i = 0; i < quantity; i++) {
+                productList.append(product);
             }
-        }
 
-        // Calculate total price
-        double totalPrice = product.price * quantity;
+            // Calculate total price
+            double totalPrice = product.price * quantity;
 
-        // Create and add the order with status "pending"
-        Order newOrder = new Order(newOrderId, customer, productList, totalPrice, orderDate, "pending");
-        Order.addOrder(newOrder);
+            // Create and add the order with status "pending"
+            Order newOrder = new Order(newOrderId, customer, productList, totalPrice, orderDate, "pending");
+            Order.addOrder(newOrder);
 
-        // Update product stock
-        product.stock -= quantity;
+            // Update product stock (keeps the price index stock aggregate current)
+            product.adjustStock(-quantity);
 
-        System.out.println("Order placed successfully. Order ID: " + newOrderId);
+            System.out.println("Order placed successfully. Order ID: " + newOrderId);
+        } finally {
+            EntityLock.unlock();
+        }
     }
 
     /**
-     * Phase II: View order history - uses AVL trees for efficient retrieval
+     * Phase II: View order history - O(log C + k) from the per-customer order index
      */
     public static void viewOrderHistory(int customerId) {
         // Validate customer exists - O(log n)
@@ -248,47 +311,53 @@ public class Customer {
      * Phase II: Add review to product - uses AVL trees for efficient lookups
      */
     public static void addReviewToProduct(int customerId, int productId, double rating, String comment) {
-        // Validate customer exists - O(log n)
-        Customer customer = searchById(customerId);
-        if (customer == null) {
-            System.out.println("Customer not found.");
-            return;
-        }
+        EntityLock.lock();
+        try {
+            // Validate customer exists - O(log n)
+            Customer customer = searchById(customerId);
+            if (customer == null) {
+                System.out.println("Customer not found.");
+                return;
+            }
 
-        // Validate product exists - O(log n)
-        Product product = Product.searchById(productId);
-        if (product == null) {
-            System.out.println("Product not found.");
-            return;
-        }
+            // Validate product exists - O(log n)
+            Product product = Product.searchById(productId);
+            if (product == null) {
+                System.out.println("Product not found.");
+                return;
+            }
 
-        // Validate rating
-        if (rating < 1 || rating > 5) {
-            System.out.println("Invalid rating. Rating must be between 1 and 5.");
-            return;
-        }
+            // Validate rating
+            if (rating < 1 || rating > 5) {
+                System.out.println("Invalid rating. Rating must be between 1 and 5.");
+                return;
+            }
+            WriteAheadLog.logAddReview(customerId, productId, rating, comment);
 
-        // Get old review count before adding the new review
-        int oldCount = product.getReviewCount();
+            // Get old review count before adding the new review
+            int oldCount = product.getReviewCount();
 
-        // Generate new review ID
-        int newReviewId = Review.getNextReviewId();
+            // Generate new review ID
+            int newReviewId = Review.getNextReviewId();
 
-        // Create and add review
-        Review newReview = new Review(newReviewId, product, customer, comment, rating);
-        Review.addReview(newReview);
-        product.addReview(newReview);
+            // Create and add review
+            Review newReview = new Review(newReviewId, product, customer, comment, rating);
+            Review.addReview(newReview);
+            product.addReview(newReview);
 
-        // Update the product's position in the review count tree
-        int newCount = product.getReviewCount();
-        Product.updateProductReviewCount(productId, oldCount, newCount);
+            // Update the product's position in the review count tree
+            int newCount = product.getReviewCount();
+            Product.updateProductReviewCount(productId, oldCount, newCount);
 
-        System.out.println("Review added successfully. Review ID: " + newReviewId);
+            System.out.println("Review added successfully. Review ID: " + newReviewId);
+        } finally {
+            EntityLock.unlock();
+        }
     }
 
 
     /**
-     * Phase II: Print customer reviews - uses AVL trees
+     * Phase II: Print customer reviews - O(log C + k) from the per-customer review index
      */
     public static void printCustomerReviews(int customerId) {
         // Validate customer exists - O(log n)
@@ -0,0 +1,326 @@
+package projectFiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Phase II: Binary snapshot of all four entity sets, so a restart does not re-parse the CSV files.
+ *
+ * Layout (big-endian, strings as int byte length + UTF-8, -1 for null):
+ *   long magic, int version
+ *   followed   int k, then k x long (bytes of each followed CSV file whose rows the snapshot holds)
+ *   products   int n, int listed, then n x (int id, string name, double price, int stock)
+ *   customers  int n, int listed, then n x (int id, string name, string email)
+ *   orders     int n, then n x (int id, int customer, double total, string date, string status, int k, k x int product)
+ *   reviews    int n, then n x (int id, int product, int customer, double rating, string comment)
+ *   review count index  int buckets, then per bucket (int count, int k, k x int product)
+ *   long CRC32 of everything above
+ *
+ * Entities are written in the order of the backward-compatible lists, which is the order they were added.
+ * Cross-references are positions in the product and customer tables rather than raw IDs: a removed
+ * product can still be referenced by old orders and reviews while its ID is reused, so those tables
+ * end with the referenced entities that are no longer listed (positions listed..n-1).
+ * load reads and checks the whole file (version, checksum, every reference) before touching any tree,
+ * then rebuilds the ID trees with the batch adds (buildFromSorted on the ID-sorted runs) and restores the
+ * review count tree directly instead of moving each product once per review. Other buckets come back in list order.
+ * The checksum doubles as the snapshot's identity: WriteAheadLog records which snapshot its changes apply to.
+ * The followed offsets are where CSVFollowers of the append-only files (orders.csv, reviews.csv) resume
+ * after the snapshot is loaded, so rows appended since it was written are added instead of lost.
+ * save and the rebuild in load hold EntityLock, so a snapshot never catches a mutation half done.
+ */
+public class DataSnapshot {
+
+    private static final long MAGIC = 0x4353433231325350L; // "CSC212SP"
+    static final int VERSION = 2;
+
+    /**
+     * Write the current data to path, with the bytes of each followed CSV file it holds - O(P + C + M*L + R)
+     * The file is written next to path and renamed over it, so a crash never leaves a torn snapshot.
+     * Returns the snapshot's checksum.
+     */
+    public static long save(String path, long[] followed) throws IOException {
+        EntityLock.lock();
+        try {
+            // Number every product and customer: listed ones first, then any only reachable through references
+            java.util.List<Product> productTable = new java.util.ArrayList<>();
+            java.util.Map<Product, Integer> productIndex = new java.util.IdentityHashMap<>();
+            java.util.List<Customer> customerTable = new java.util.ArrayList<>();
+            java.util.Map<Customer, Integer> customerIndex = new java.util.IdentityHashMap<>();
+            for (Product p : Product.products) number(p, productTable, productIndex);
+            for (Customer c : Customer.customers) number(c, customerTable, customerIndex);
+            int listedProducts = productTable.size();
+            int listedCustomers = customerTable.size();
+            for (Order o : Order.orders) {
+                number(o.customer, customerTable, customerIndex);
+                for (Product p : o.products) number(p, productTable, productIndex);
+            }
+            for (Review r : Review.allReviews) {
+                number(r.product, productTable, productIndex);
+                number(r.customer, customerTable, customerIndex);
+            }
+
+            File target = new File(path);
+            File temp = new File(path + ".tmp");
+            CRC32 crc = new CRC32();
+            try (FileOutputStream file = new FileOutputStream(temp)) {
+                BufferedOutputStream buffered = new BufferedOutputStream(file, 1 << 16);
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+                out.writeLong(MAGIC);
+                out.writeInt(VERSION);
+
+                out.writeInt(followed.length);
+                for (long offset : followed) {
+                    out.writeLong(offset);
+                }
+
+                out.writeInt(productTable.size());
+                out.writeInt(listedProducts);
+                for (Product p : productTable) {
+                    out.writeInt(p.productId);
+                    writeString(out, p.name);
+                    out.writeDouble(p.price);
+                    out.writeInt(p.stock);
+                }
+
+                out.writeInt(customerTable.size());
+                out.writeInt(listedCustomers);
+                for (Customer c : customerTable) {
+                    out.writeInt(c.customerId);
+                    writeString(out, c.name);
+                    writeString(out, c.email);
+                }
+
+                out.writeInt(Order.orders.size());
+                for (Order o : Order.orders) {
+                    out.writeInt(o.orderId);
+                    out.writeInt(customerIndex.get(o.customer));
+                    out.writeDouble(o.totalPrice);
+                    writeString(out, o.orderDate);
+                    writeString(out, o.status);
+                    out.writeInt(o.products.size());
+                    for (Product p : o.products) {
+                        out.writeInt(productIndex.get(p));
+                    }
+                }
+
+                out.writeInt(Review.allReviews.size());
+                for (Review r : Review.allReviews) {
+                    out.writeInt(r.reviewId);
+                    out.writeInt(productIndex.get(r.product));
+                    out.writeInt(customerIndex.get(r.customer));
+                    out.writeDouble(r.rating);
+                    writeString(out, r.comment);
+                }
+
+                AVLTree<Integer, LinkedList<Product>> byCount = Product.productTreeByReviewCount;
+                out.writeInt(byCount.size());
+                for (int i = 0; i < byCount.size(); i++) {
+                    LinkedList<Product> bucket = byCount.select(i);
+                    out.writeInt(byCount.selectKey(i));
+                    out.writeInt(bucket.size());
+                    for (Product p : bucket) {
+                        out.writeInt(productIndex.get(p));
+                    }
+                }
+
+                out.flush();
+                new DataOutputStream(buffered).writeLong(crc.getValue());
+                buffered.flush();
+                file.getFD().sync();
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return crc.getValue();
+        } finally {
+            EntityLock.unlock();
+        }
+    }
+
+    private static <T> void number(T entity, java.util.List<T> table, java.util.Map<T, Integer> index) {
+        if (!index.containsKey(entity)) {
+            index.put(entity, table.size());
+            table.add(entity);
+        }
+    }
+
+    /**
+     * Fill the (empty) trees with the contents of the snapshot at path - O(P + C + M*(log M + L) + R log P)
+     * and the followed CSV offsets it holds into followed, which must have room for exactly that many.
+     * Throws IOException, leaving every tree untouched, if the file is missing, from another version,
+     * truncated, fails its checksum, or holds a reference out of range. Returns the snapshot's checksum.
+     */
+    public static long load(String path, long[] followed) throws IOException {
+        if (!Product.productTree.isEmpty() || !Customer.customerTreeById.isEmpty()
+                || !Order.orderTree.isEmpty() || !Review.reviewTree.isEmpty()) {
+            throw new IllegalStateException("DataSnapshot.load needs empty trees");
+        }
+
+        CRC32 crc = new CRC32();
+        long[] offsets;
+        Product[] products;
+        int listedProducts;
+        Customer[] customers;
+        int listedCustomers;
+        Order[] orders;
+        Review[] reviews;
+        Integer[] counts;
+        LinkedList<Product>[] buckets;
+        long checksum;
+        // No count or string can be longer than the file; checked before allocating, as the checksum comes last
+        long limit = new File(path).length();
+        try (BufferedInputStream buffered = new BufferedInputStream(new FileInputStream(path), 1 << 16)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(buffered, crc));
+            if (in.readLong() != MAGIC) throw new IOException(path + " is not a snapshot file");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException(path + " has snapshot version " + version + ", expected " + VERSION);
+
+            offsets = new long[readCount(in, limit)];
+            if (offsets.length != followed.length) {
+                throw new IOException(path + " follows " + offsets.length + " CSV files, expected " + followed.length);
+            }
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readLong();
+                if (offsets[i] < 0) throw new IOException("bad CSV offset " + offsets[i] + " in snapshot");
+            }
+
+            products = new Product[readCount(in, limit)];
+            listedProducts = readIndex(in, products.length + 1);
+            for (int i = 0; i < products.length; i++) {
+                products[i] = new Product(in.readInt(), readString(in, limit), in.readDouble(), in.readInt());
+            }
+
+            customers = new Customer[readCount(in, limit)];
+            listedCustomers = readIndex(in, customers.length + 1);
+            for (int i = 0; i < customers.length; i++) {
+                customers[i] = new Customer(in.readInt(), readString(in, limit), readString(in, limit));
+            }
+
+            orders = new Order[readCount(in, limit)];
+            for (int i = 0; i < orders.length; i++) {
+                int orderId = in.readInt();
+                Customer customer = customers[readIndex(in, customers.length)];
+                double totalPrice = in.readDouble();
+                String orderDate = readString(in, limit);
+                String status = readString(in, limit);
+                LinkedList<Product> items = new LinkedList<Product>();
+                for (int k = readCount(in, limit); k > 0; k--) {
+                    items.append(products[readIndex(in, products.length)]);
+                }
+                orders[i] = new Order(orderId, customer, items, totalPrice, orderDate, status);
+            }
+
+            reviews = new Review[readCount(in, limit)];
+            for (int i = 0; i < reviews.length; i++) {
+                int reviewId = in.readInt();
+                Product product = products[readIndex(in, products.length)];
+                Customer customer = customers[readIndex(in, customers.length)];
+                double rating = in.readDouble();
+                reviews[i] = new Review(reviewId, product, customer, readString(in, limit), rating);
+            }
+
+            counts = new Integer[readCount(in, limit)];
+            @SuppressWarnings("unchecked")
+            LinkedList<Product>[] saved = (LinkedList<Product>[]) new LinkedList<?>[counts.length];
+            buckets = saved;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = in.readInt();
+                if (i > 0 && counts[i] <= counts[i - 1]) throw new IOException(path + " has unsorted review count buckets");
+                buckets[i] = new LinkedList<Product>();
+                for (int k = readCount(in, limit); k > 0; k--) {
+                    buckets[i].append(products[readIndex(in, products.length)]);
+                }
+            }
+
+            checksum = crc.getValue();
+            if (new DataInputStream(buffered).readLong() != checksum) throw new IOException(path + " failed its checksum");
+            if (buffered.read() != -1) throw new IOException(path + " has trailing data");
+        } catch (EOFException e) {
+            throw new IOException(path + " is truncated", e);
+        }
+
+        // Everything checked out; rebuild the trees
+        System.arraycopy(offsets, 0, followed, 0, offsets.length);
+        EntityLock.lock();
+        try {
+            Product.addProducts(products, listedProducts);
+            Customer.addCustomers(customers, listedCustomers);
+            Order.addOrders(orders, orders.length);
+            Review.addReviews(reviews, reviews.length);
+            for (Review r : reviews) {
+                r.product.appendReview(r);
+            }
+            Product.restoreReviewCountIndex(counts, buckets, counts.length);
+            Product.rebuildRatingIndex();
+        } finally {
+            EntityLock.unlock();
+        }
+        return checksum;
+    }
+
+    /**
+     * The checksum stored at the end of the snapshot at path, without reading or checking the rest - O(1)
+     * Lets a caller find the write-ahead log that belongs to the snapshot before deciding to load it.
+     */
+    public static long checksum(String path) throws IOException {
+        try (java.io.RandomAccessFile file = new java.io.RandomAccessFile(path, "r")) {
+            if (file.length() < 8 + 4 + 8) throw new IOException(path + " is truncated");
+            file.seek(file.length() - 8);
+            return file.readLong();
+        }
+    }
+
+    /**
+     * True if the snapshot exists and is at least as new as every source file
+     */
+    public static boolean isFresh(String path, String... sources) {
+        File snapshot = new File(path);
+        if (!snapshot.isFile()) return false;
+        for (String source : sources) {
+            if (new File(source).lastModified() > snapshot.lastModified()) return false;
+        }
+        return true;
+    }
+
+    private static int readIndex(DataInputStream in, int size) throws IOException {
+        int index = in.readInt();
+        if (index < 0 || index >= size) throw new IOException("reference " + index + " out of range in snapshot");
+        return index;
+    }
+
+    private static int readCount(DataInputStream in, long limit) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > limit) throw new IOException("bad count " + count + " in snapshot");
+        return count;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long limit) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        if (length > limit) throw new IOException("bad string length " + length + " in snapshot");
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
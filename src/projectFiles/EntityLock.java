@@ -0,0 +1,41 @@
+package projectFiles;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Phase II: The one writer lock of the entity data.
+ * Every public mutation holds it while it runs: addProduct(s), updateProduct, removeProduct, adjustStock,
+ * addCustomer(s), updateCustomer, placeOrder, addReviewToProduct, addOrder(s), updateOrderStatus, cancelOrder,
+ * addReview(s), editReview, and DataSnapshot save and load. Writers from any number of threads therefore
+ * change the secondary indexes, stock, rating sums, ID counters, lists and the write-ahead log one at a time,
+ * and the log holds their records in the order they were applied.
+ * searchById does not take it; the ID indexes are ConcurrentIntAVLTrees with their own lock-free reads.
+ * Queries on the secondary indexes and lists do not take it either: a thread that runs them while other
+ * threads write holds the lock around the query.
+ * Reentrant, because mutations call each other (placeOrder adds an order and adjusts stock).
+ */
+final class EntityLock {
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private EntityLock() {
+    }
+
+    static void lock() {
+        LOCK.lock();
+    }
+
+    /**
+     * Release one hold; after the outermost one, wait for the fsync of this thread's log records
+     * outside the lock, so other writers can join that group meanwhile
+     */
+    static void unlock() {
+        boolean outermost = LOCK.getHoldCount() == 1;
+        LOCK.unlock();
+        if (outermost) WriteAheadLog.awaitPending();
+    }
+
+    static boolean isHeldByCurrentThread() {
+        return LOCK.isHeldByCurrentThread();
+    }
+}
@@ -0,0 +1,600 @@
+package projectFiles;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * AVL Tree specialized for primitive int keys - used for the entity ID indexes.
+ * Same operations and complexities as AVLTree, but each node stores its key as an int:
+ * no boxed Integer per node, no Integer allocation per lookup, and comparisons are plain
+ * int comparisons instead of compareTo calls. The ID indexes themselves are ConcurrentIntAVLTree;
+ * this mutable tree holds the per-customer and per-rating secondary indexes.
+ * @param <V> The type of value/data stored
+ */
+public class IntAVLTree<V> implements Iterable<V> {
+
+    /**
+     * Tree node with a primitive key, height for balancing and subtree size for rank/select
+     */
+    static class Node<V> {
+        int key;
+        V data;
+        Node<V> left;
+        Node<V> right;
+        int height;
+        int size;
+
+        Node(int key, V data) {
+            this.key = key;
+            this.data = data;
+            this.height = 1;
+            this.size = 1;
+        }
+    }
+
+    private Node<V> root;
+    private int size;
+    // Incremented on every structural change so iterators can fail fast
+    private int modCount;
+    // Reusable root-to-node path for insert/delete
+    private Node<V>[] pathBuffer;
+
+    public IntAVLTree() {
+        root = null;
+        size = 0;
+    }
+
+    private int height(Node<V> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    private int subtreeSize(Node<V> node) {
+        return (node == null) ? 0 : node.size;
+    }
+
+    private int getBalance(Node<V> node) {
+        return (node == null) ? 0 : height(node.left) - height(node.right);
+    }
+
+    /**
+     * Update the height and subtree size of a node based on its children
+     */
+    private void updateHeight(Node<V> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.size = 1 + subtreeSize(node.left) + subtreeSize(node.right);
+    }
+
+    private Node<V> rightRotate(Node<V> y) {
+        Node<V> x = y.left;
+        y.left = x.right;
+        x.right = y;
+        updateHeight(y);
+        updateHeight(x);
+        return x;
+    }
+
+    private Node<V> leftRotate(Node<V> x) {
+        Node<V> y = x.right;
+        x.right = y.left;
+        y.left = x;
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+
+    /**
+     * Rebalance a node whose children are balanced and whose height is up to date
+     */
+    private Node<V> rebalance(Node<V> node) {
+        int balance = getBalance(node);
+        if (balance > 1) {
+            if (getBalance(node.left) < 0) {
+                node.left = leftRotate(node.left);   // Left Right Case
+            }
+            return rightRotate(node);                 // Left Left Case
+        }
+        if (balance < -1) {
+            if (getBalance(node.right) > 0) {
+                node.right = rightRotate(node.right); // Right Left Case
+            }
+            return leftRotate(node);                  // Right Right Case
+        }
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<V>[] pathBuffer() {
+        int needed = height(root) + 1;
+        if (pathBuffer == null || pathBuffer.length < needed) {
+            pathBuffer = (Node<V>[]) new Node<?>[Math.max(needed, 16)];
+        }
+        return pathBuffer;
+    }
+
+    private void replaceChild(Node<V> parent, Node<V> old, Node<V> replacement) {
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == old) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+    }
+
+    private void rebalancePath(Node<V>[] path, int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<V> node = path[i];
+            updateHeight(node);
+            Node<V> balanced = rebalance(node);
+            if (balanced != node) {
+                replaceChild(i > 0 ? path[i - 1] : null, node, balanced);
+            }
+            path[i] = null;
+        }
+    }
+
+    /**
+     * Insert a key-value pair (replacing the data of an existing key) - O(log n)
+     */
+    public void insert(int key, V data) {
+        Node<V>[] path = pathBuffer();
+        int depth = 0;
+        Node<V> node = root;
+        Node<V> parent = null;
+
+        while (node != null) {
+            if (key == node.key) {
+                node.data = data;
+                for (int i = 0; i < depth; i++) path[i] = null;
+                return;
+            }
+            path[depth++] = node;
+            parent = node;
+            node = (key < node.key) ? node.left : node.right;
+        }
+
+        Node<V> newNode = new Node<V>(key, data);
+        size++;
+        modCount++;
+        if (parent == null) {
+            root = newNode;
+            return;
+        }
+        if (key < parent.key) {
+            parent.left = newNode;
+        } else {
+            parent.right = newNode;
+        }
+        rebalancePath(path, depth);
+    }
+
+    /**
+     * Replace the contents with count entries whose keys are strictly increasing - O(n)
+     * Each subtree root is the middle entry of its range, so the tree is perfectly balanced.
+     * Throws IllegalArgumentException if the keys are not sorted.
+     */
+    public void buildFromSorted(int[] sortedKeys, V[] sortedValues, int count) {
+        for (int i = 1; i < count; i++) {
+            if (sortedKeys[i - 1] >= sortedKeys[i]) {
+                throw new IllegalArgumentException("Keys must be strictly increasing (index " + i + ")");
+            }
+        }
+        root = buildRange(sortedKeys, sortedValues, 0, count - 1);
+        size = count;
+        modCount++;
+    }
+
+    private Node<V> buildRange(int[] sortedKeys, V[] sortedValues, int lo, int hi) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        Node<V> node = new Node<V>(sortedKeys[mid], sortedValues[mid]);
+        node.left = buildRange(sortedKeys, sortedValues, lo, mid - 1);
+        node.right = buildRange(sortedKeys, sortedValues, mid + 1, hi);
+        updateHeight(node);
+        return node;
+    }
+
+    /**
+     * Search for a value by key - O(log n), no allocation
+     */
+    public V search(int key) {
+        Node<V> node = findNode(key);
+        return (node == null) ? null : node.data;
+    }
+
+    /**
+     * Check if a key exists in the tree - O(log n)
+     */
+    public boolean contains(int key) {
+        return findNode(key) != null;
+    }
+
+    private Node<V> findNode(int key) {
+        Node<V> node = root;
+        while (node != null) {
+            if (key < node.key) {
+                node = node.left;
+            } else if (key > node.key) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Delete a node by key - O(log n)
+     */
+    public void delete(int key) {
+        Node<V>[] path = pathBuffer();
+        int depth = 0;
+        Node<V> node = root;
+
+        while (node != null && node.key != key) {
+            path[depth++] = node;
+            node = (key < node.key) ? node.left : node.right;
+        }
+        if (node == null) {
+            for (int i = 0; i < depth; i++) path[i] = null;
+            return;
+        }
+
+        size--;
+        modCount++;
+
+        if (node.left != null && node.right != null) {
+            // Two children: copy the in-order successor here, then unlink the successor
+            path[depth++] = node;
+            Node<V> successor = node.right;
+            while (successor.left != null) {
+                path[depth++] = successor;
+                successor = successor.left;
+            }
+            node.key = successor.key;
+            node.data = successor.data;
+            replaceChild(path[depth - 1], successor, successor.right);
+        } else {
+            Node<V> child = (node.left != null) ? node.left : node.right;
+            replaceChild(depth > 0 ? path[depth - 1] : null, node, child);
+        }
+
+        rebalancePath(path, depth);
+    }
+
+    /**
+     * Update the value for an existing key - O(log n)
+     * Returns true if key existed and was updated, false otherwise
+     */
+    public boolean update(int key, V newData) {
+        Node<V> node = findNode(key);
+        if (node == null) return false;
+        node.data = newData;
+        return true;
+    }
+
+    /**
+     * In-order traversal - returns elements sorted by key - O(n)
+     */
+    public LinkedList<V> inOrderTraversal() {
+        LinkedList<V> result = new LinkedList<V>();
+        for (V value : this) {
+            result.append(value);
+        }
+        return result;
+    }
+
+    /**
+     * Reverse in-order traversal - returns elements in descending key order - O(n)
+     */
+    public LinkedList<V> reverseInOrderTraversal() {
+        LinkedList<V> result = new LinkedList<V>();
+        Iterator<V> it = descendingIterator();
+        while (it.hasNext()) {
+            result.append(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Range query - all values with minKey <= key <= maxKey - O(log n + k)
+     */
+    public LinkedList<V> rangeQuery(int minKey, int maxKey) {
+        LinkedList<V> result = new LinkedList<V>();
+        Iterator<V> it = rangeIterator(minKey, maxKey);
+        while (it.hasNext()) {
+            result.append(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Get minimum value
+     */
+    public V getMin() {
+        if (root == null) return null;
+        Node<V> current = root;
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current.data;
+    }
+
+    /**
+     * Get maximum value
+     */
+    public V getMax() {
+        if (root == null) return null;
+        Node<V> current = root;
+        while (current.right != null) {
+            current = current.right;
+        }
+        return current.data;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Rank of a key - the number of keys strictly less than key - O(log n)
+     */
+    public int rank(int key) {
+        int rank = 0;
+        Node<V> current = root;
+        while (current != null) {
+            if (key <= current.key) {
+                current = current.left;
+            } else {
+                rank += subtreeSize(current.left) + 1;
+                current = current.right;
+            }
+        }
+        return rank;
+    }
+
+    private Node<V> selectNode(int index) {
+        if (index < 0 || index >= size) return null;
+        Node<V> current = root;
+        while (current != null) {
+            int leftSize = subtreeSize(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                current = current.right;
+            } else {
+                return current;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Value with the index-th smallest key (0-based), or null if out of range - O(log n)
+     */
+    public V select(int index) {
+        Node<V> node = selectNode(index);
+        return (node == null) ? null : node.data;
+    }
+
+    /**
+     * The index-th smallest key (0-based) - O(log n)
+     * Throws NoSuchElementException if index is outside [0, size())
+     */
+    public int selectKey(int index) {
+        Node<V> node = selectNode(index);
+        if (node == null) throw new NoSuchElementException("No key at index " + index);
+        return node.key;
+    }
+
+    /**
+     * Number of keys between minKey and maxKey (inclusive) - O(log n)
+     */
+    public int countInRange(int minKey, int maxKey) {
+        if (minKey > maxKey) return 0;
+        int upper = (maxKey == Integer.MAX_VALUE) ? size : rank(maxKey + 1);
+        return upper - rank(minKey);
+    }
+
+    /**
+     * Up to count values starting at the index-th smallest key, ascending - O(log n + count)
+     */
+    public LinkedList<V> selectRange(int index, int count) {
+        LinkedList<V> result = new LinkedList<V>();
+        if (index < 0 || index >= size || count <= 0) return result;
+        Iterator<V> it = rangeIterator(selectKey(index), Integer.MAX_VALUE);
+        for (int i = 0; i < count && it.hasNext(); i++) {
+            result.append(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Verify ordering, heights, balance factors and subtree sizes - O(n)
+     * Throws IllegalStateException describing the first violation found
+     */
+    void checkInvariants() {
+        if (subtreeSize(root) != size) {
+            throw new IllegalStateException("size " + size + " but root subtree holds " + subtreeSize(root));
+        }
+        checkSubtree(root, Integer.MIN_VALUE, Integer.MAX_VALUE, true, true);
+    }
+
+    private void checkSubtree(Node<V> node, int low, int high, boolean lowOpen, boolean highOpen) {
+        if (node == null) return;
+        int key = node.key;
+        if ((!lowOpen && key <= low) || (!highOpen && key >= high)) {
+            throw new IllegalStateException("key " + key + " out of order");
+        }
+        checkSubtree(node.left, low, key, lowOpen, false);
+        checkSubtree(node.right, key, high, false, highOpen);
+        if (node.height != 1 + Math.max(height(node.left), height(node.right))) {
+            throw new IllegalStateException("wrong height at key " + key);
+        }
+        if (Math.abs(getBalance(node)) > 1) {
+            throw new IllegalStateException("unbalanced at key " + key);
+        }
+        if (node.size != 1 + subtreeSize(node.left) + subtreeSize(node.right)) {
+            throw new IllegalStateException("wrong subtree size at key " + key);
+        }
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new InOrderIterator(null, root, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+    }
+
+    public Iterator<V> descendingIterator() {
+        return new InOrderIterator(null, root, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+    }
+
+    /**
+     * Lazy in-order iterator over keys in [minKey, maxKey] - O(log n) to position, O(1) amortized per step
+     */
+    public Iterator<V> rangeIterator(int minKey, int maxKey) {
+        return new InOrderIterator(null, root, minKey, maxKey, false);
+    }
+
+    public Iterator<V> rangeIterator(int minKey, int maxKey, boolean descending) {
+        return new InOrderIterator(null, root, minKey, maxKey, descending);
+    }
+
+    @Override
+    public Spliterator<V> spliterator() {
+        return new InOrderSpliterator(null, root, size);
+    }
+
+    public Stream<V> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<V> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Stack-based walk of an optional first node followed by a subtree, keys in [minKey, maxKey].
+     * Same scheme as AVLTree's iterator.
+     */
+    private class InOrderIterator implements Iterator<V> {
+        private final int minKey;
+        private final int maxKey;
+        private final boolean descending;
+        private Node<V> first;
+        private final Node<V>[] stack;
+        private int top;
+        private final int expectedModCount = modCount;
+
+        @SuppressWarnings("unchecked")
+        InOrderIterator(Node<V> first, Node<V> subtree, int minKey, int maxKey, boolean descending) {
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+            this.descending = descending;
+            this.stack = (Node<V>[]) new Node<?>[height(subtree) + 1];
+            if (first != null && first.key >= minKey && first.key <= maxKey) {
+                this.first = first;
+            }
+            pushEdge(subtree);
+        }
+
+        private void pushEdge(Node<V> node) {
+            while (node != null) {
+                if (!descending) {
+                    if (node.key < minKey) {
+                        node = node.right;
+                    } else {
+                        stack[top++] = node;
+                        node = node.left;
+                    }
+                } else {
+                    if (node.key > maxKey) {
+                        node = node.left;
+                    } else {
+                        stack[top++] = node;
+                        node = node.right;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (first != null) return true;
+            if (top == 0) return false;
+            return descending ? stack[top - 1].key >= minKey : stack[top - 1].key <= maxKey;
+        }
+
+        @Override
+        public V next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            if (first != null) {
+                V data = first.data;
+                first = null;
+                return data;
+            }
+            Node<V> node = stack[--top];
+            pushEdge(descending ? node.left : node.right);
+            return node.data;
+        }
+    }
+
+    /**
+     * Spliterator over "first node, then subtree", split along subtrees with exact sizes
+     */
+    private class InOrderSpliterator implements Spliterator<V> {
+        private Node<V> first;
+        private Node<V> subtree;
+        private long remaining;
+        private InOrderIterator iterator;
+
+        InOrderSpliterator(Node<V> first, Node<V> subtree, long remaining) {
+            this.first = first;
+            this.subtree = subtree;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            if (iterator != null || subtree == null || subtree.left == null) return null;
+            long prefixSize = (first != null ? 1 : 0) + subtreeSize(subtree.left);
+            InOrderSpliterator prefix = new InOrderSpliterator(first, subtree.left, prefixSize);
+            first = subtree;
+            subtree = subtree.right;
+            remaining -= prefixSize;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super V> action) {
+            if (iterator == null) {
+                iterator = new InOrderIterator(first, subtree, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+            }
+            if (!iterator.hasNext()) return false;
+            action.accept(iterator.next());
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+}
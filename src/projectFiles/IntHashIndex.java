@@ -0,0 +1,185 @@
+package projectFiles;
+
+/**
+ * Open-addressing hash index from primitive int keys to values - O(1) expected per operation.
+ * Keys and values sit in two parallel arrays probed linearly from a Fibonacci hash of the key,
+ * so a lookup is a multiply, a shift and usually one or two array reads, with no boxing and no
+ * per-entry objects. Deletion shifts later entries of the probe run back instead of leaving
+ * tombstones, so lookups never slow down after many removals. Unordered: use an AVL tree for
+ * sorted traversal and ranges. Values must be non-null (null marks an empty slot).
+ * @param <V> The type of value/data stored
+ */
+public class IntHashIndex<V> {
+
+    private static final int MIN_CAPACITY = 16;
+    // 2^32 / golden ratio: spreads consecutive IDs over the table
+    private static final int GOLDEN = 0x9E3779B9;
+
+    private int[] keys;
+    private Object[] values;
+    private int shift;
+    private int size;
+
+    public IntHashIndex() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * Create an index that holds expectedSize entries without resizing
+     */
+    public IntHashIndex(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Power of two keeping the load factor at or below 1/2
+     */
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2L * expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private int slot(int key) {
+        return (key * GOLDEN) >>> shift;
+    }
+
+    /**
+     * Value stored for key, or null - O(1) expected
+     * Reads the arrays into locals and probes at most once around the table, so a caller that
+     * validates afterwards (see ConcurrentIntAVLTree) may run it optimistically during a write.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int[] k = keys;
+        Object[] v = values;
+        if (k.length != v.length) return null;
+        int mask = k.length - 1;
+        int i = (key * GOLDEN) >>> (32 - Integer.numberOfTrailingZeros(k.length));
+        for (int probes = 0; probes < k.length; probes++) {
+            Object value = v[i];
+            if (value == null) return null;
+            if (k[i] == key) return (V) value;
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Map key to value, returning the previous value or null - O(1) expected (amortized over resizes)
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) throw new NullPointerException("IntHashIndex values must be non-null");
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if (2 * size > keys.length) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Remove key, returning its value or null - O(1) expected
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V removed = (V) values[i];
+                closeGap(i);
+                size--;
+                return removed;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Backward-shift deletion: pull later entries of the probe run into the gap at index gap
+     * whenever their home slot does not lie cyclically between the gap and their current slot
+     */
+    private void closeGap(int gap) {
+        int mask = keys.length - 1;
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) break;
+            int home = slot(keys[i]);
+            // Entry at i may move to gap unless home is in (gap, i] cyclically
+            boolean stays = (gap <= i) ? (gap < home && home <= i) : (gap < home || home <= i);
+            if (!stays) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] == null) continue;
+            int i = slot(oldKeys[j]);
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    /**
+     * Remove every entry and shrink back to a table sized for expectedSize entries
+     */
+    public void clear(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Number of slots in the table
+     */
+    public int capacity() {
+        return keys.length;
+    }
+}
@@ -1,12 +1,26 @@
 package projectFiles;
 
-public class LinkedList<T> implements List<T> {
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class LinkedList<T> implements List<T>, Iterable<T> {
 
     private Node<T> head;
+    private Node<T> tail;
     private Node<T> current;
+    private int size;
+    // Incremented on every structural change so iterators can fail fast
+    private int modCount;
 
     public LinkedList() {
-        head = current = null;
+        head = tail = current = null;
+        size = 0;
     }
 
     @Override
@@ -47,13 +61,35 @@ public class LinkedList<T> implements List<T> {
     public void insert(T e) {
         Node<T> newNode = new Node<T>(e);
         if (head == null) {
-            head = newNode;
+            head = tail = newNode;
             current = head;
         } else {
             newNode.next = current.next;
             current.next = newNode;
+            if (current == tail)
+                tail = newNode;
             current = newNode;
         }
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Adds e after the last element - O(1) using the tail reference.
+     * current is left where it was, unless the list was empty.
+     */
+    @Override
+    public void append(T e) {
+        Node<T> newNode = new Node<T>(e);
+        if (head == null) {
+            head = tail = newNode;
+            current = head;
+        } else {
+            tail.next = newNode;
+            tail = newNode;
+        }
+        size++;
+        modCount++;
     }
 
     @Override
@@ -63,7 +99,11 @@ public class LinkedList<T> implements List<T> {
 
         if (current == head) {
             head = head.next;
+            if (head == null)
+                tail = null;
             current = head;
+            size--;
+            modCount++;
         } else {
             Node<T> prev = head;
             while (prev.next != current && prev.next != null)
@@ -71,6 +111,10 @@ public class LinkedList<T> implements List<T> {
 
             if (prev.next == current) {
                 prev.next = current.next;
+                if (current == tail)
+                    tail = prev;
+                size--;
+                modCount++;
 
                 if (current.next != null)
                     current = current.next;
@@ -80,7 +124,164 @@ public class LinkedList<T> implements List<T> {
         }
     }
 
+    /**
+     * Number of elements - O(1), maintained by insert/append/remove
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
     public Node<T> getHead() {
         return head;
     }
+
+    /**
+     * Independent iterator - does not touch the shared current cursor,
+     * so any number of readers can walk the list at the same time.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new NodeIterator();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new NodeSpliterator(head, size);
+    }
+
+    /**
+     * Sequential stream over the elements in list order
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Parallel stream - the spliterator hands out array batches of the list to worker threads
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Lazily chains the elements of a sequence of lists, e.g. the per-key lists
+     * produced by AVLTree.rangeIterator() on a secondary index. No list is copied.
+     */
+    public static <T> Iterator<T> concat(final Iterator<LinkedList<T>> lists) {
+        return new Iterator<T>() {
+            private Iterator<T> inner = null;
+
+            @Override
+            public boolean hasNext() {
+                while (inner == null || !inner.hasNext()) {
+                    if (!lists.hasNext())
+                        return false;
+                    LinkedList<T> next = lists.next();
+                    inner = (next == null) ? null : next.iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return inner.next();
+            }
+        };
+    }
+
+    private class NodeIterator implements Iterator<T> {
+        private Node<T> next = head;
+        private final int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next == null)
+                throw new NoSuchElementException();
+            T data = next.data;
+            next = next.next;
+            return data;
+        }
+    }
+
+    /**
+     * Spliterator over a run of nodes. A singly linked list cannot be split in the
+     * middle without walking it, so trySplit copies a batch of elements from the front
+     * into an array (growing the batch on each split) and keeps the rest for itself.
+     */
+    private class NodeSpliterator implements Spliterator<T> {
+        private static final int BATCH_UNIT = 1 << 10;
+        private static final int MAX_BATCH = 1 << 25;
+
+        private Node<T> next;
+        private int remaining;
+        private int batch;
+        private final int expectedModCount = modCount;
+
+        NodeSpliterator(Node<T> first, int remaining) {
+            this.next = first;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next == null)
+                return false;
+            T data = next.data;
+            next = next.next;
+            remaining--;
+            action.accept(data);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Node<T> node = next;
+            next = null;
+            remaining = 0;
+            while (node != null) {
+                action.accept(node.data);
+                node = node.next;
+            }
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (next == null || remaining <= 1)
+                return null;
+            int n = Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), remaining);
+            Object[] items = new Object[n];
+            int j = 0;
+            while (j < n && next != null) {
+                items[j++] = next.data;
+                next = next.next;
+            }
+            batch = j;
+            remaining -= j;
+            return Spliterators.spliterator(items, 0, j, Spliterator.ORDERED);
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
 }
\ No newline at end of file
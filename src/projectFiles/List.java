@@ -9,4 +9,6 @@ public interface List<T> {
     void update(T e);
     void insert(T e);
     void remove();
+    void append(T e);
+    int size();
 }
\ No newline at end of file
@@ -0,0 +1,354 @@
+package projectFiles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Phase II: Parallel CSV loader with the same messages and resulting objects as SimpleCSVReader.
+ * The file is memory-mapped and cut into record-aligned chunks, which are parsed on the common fork-join pool.
+ * Each chunk runs one CSVTokenizer, which parses ints and doubles straight from the bytes, so the only
+ * Strings created are the text fields the entities keep. Parsed rows are then applied on the calling
+ * thread in file order (tree inserts, duplicate checks, warnings), so the result does not depend on how
+ * the chunks were scheduled. Orders and reviews are read as RFC 4180 (quoted line breaks and "" escapes
+ * are kept, where SimpleCSVReader.parseCSVLine splits the line and drops every quote); products and
+ * customers split on every comma, as before.
+ * loadOrders and loadReviews return the number of bytes they read, which is where a CSVFollower of the
+ * same file has to start so that no row appended after the load is missed or added twice.
+ */
+public class MappedCSVReader {
+
+    private static final int MIN_CHUNK = 1 << 20;
+    private static final int MAX_CHUNK = 1 << 28;
+
+    /**
+     * Parses one tokenized line, adding an entity and/or warning Strings to out in file order
+     */
+    interface LineParser {
+        void parse(CSVTokenizer row, java.util.List<Object> out);
+    }
+
+    public static void loadProducts(String filePath) {
+        java.util.List<Product> batch = readProducts(filePath);
+        for (Product p : Product.addProducts(batch.toArray(new Product[0]), batch.size())) {
+            System.out.println("Warning: Skipping duplicate product ID " + p.productId + " in CSV file.");
+        }
+    }
+
+    /**
+     * Parse products.csv without adding anything - O(P / threads) parse + O(P) merge
+     */
+    static java.util.List<Product> readProducts(String filePath) {
+        java.util.List<Product> batch = new java.util.ArrayList<>();
+        try {
+            MappedCSVReader.<Product>read(filePath, false, (row, out) -> {
+                if (row.fieldCount() < 4) return;
+                try {
+                    int id = row.intField(0);
+                    String name = row.stringField(1);
+                    double price = row.doubleField(2);
+                    int stock = row.intField(3);
+                    out.add(new Product(id, name, price, stock));
+                } catch (NumberFormatException e) {
+                    out.add("Error parsing product line: " + row.line());
+                }
+            }, batch::add);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error loading products: " + e.getMessage());
+        }
+        return batch;
+    }
+
+    public static void loadCustomers(String filePath) {
+        try {
+            read(filePath, false, (row, out) -> {
+                if (row.fieldCount() < 3) return;
+                try {
+                    int id = row.intField(0);
+                    String name = row.stringField(1);
+                    String email = row.stringField(2);
+                    out.add(new Customer(id, name, email));
+                } catch (NumberFormatException e) {
+                    out.add("Error parsing customer line: " + row.line());
+                }
+            }, (Customer c) -> {
+                if (!Customer.addCustomer(c)) {
+                    System.out.println("Warning: Skipping duplicate customer ID " + c.customerId + " in CSV file.");
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error loading customers: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load orders.csv - returns the bytes read (0 if the file could not be read)
+     */
+    public static long loadOrders(String filePath) {
+        java.util.List<Order> batch = new java.util.ArrayList<>();
+        long consumed = readOrders(filePath, batch);
+        Order.addOrders(batch.toArray(new Order[0]), batch.size());
+        return consumed;
+    }
+
+    /**
+     * Parse orders.csv and resolve customers/products without adding anything - O(M*(1 + L) / threads) parse
+     * Customer.searchById and Product.searchById are safe to call from the pool threads
+     */
+    static java.util.List<Order> readOrders(String filePath) {
+        java.util.List<Order> batch = new java.util.ArrayList<>();
+        readOrders(filePath, batch);
+        return batch;
+    }
+
+    private static long readOrders(String filePath, java.util.List<Order> batch) {
+        try {
+            return MappedCSVReader.<Order>read(filePath, true, MappedCSVReader::parseOrder, batch::add);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error loading orders: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    static void parseOrder(CSVTokenizer row, java.util.List<Object> out) {
+        if (row.fieldCount() < 6) return;
+        try {
+            int orderId = row.intField(0);
+            int customerId = row.intField(1);
+            double totalPrice = row.doubleField(3);
+            String orderDate = row.stringField(4);
+            String status = row.stringField(5).toLowerCase();
+            // Handle "cancelled" vs "canceled" (both are valid)
+            if (status.equals("cancelled")) {
+                status = "canceled";
+            }
+
+            Customer c = Customer.searchById(customerId);
+            if (c == null) {
+                out.add("Customer not found for order: " + orderId);
+                return;
+            }
+
+            // productIds are ';'-separated, split like String.split: trailing empty IDs are dropped
+            LinkedList<Product> productList = new LinkedList<Product>();
+            byte[] bytes = row.buffer();
+            int from = row.trimmedStart(2);
+            int to = row.trimmedEnd(2);
+            int limit = to;
+            boolean separated = row.indexOf((byte) ';', from, to) >= 0;
+            if (separated) {
+                while (limit > from && bytes[limit - 1] == ';') limit--;
+            }
+            if (!separated || limit > from) {
+                int idStart = from;
+                for (int i = from; i <= limit; i++) {
+                    if (i < limit && bytes[i] != ';') continue;
+                    try {
+                        int productId = row.parseInt(idStart, i);
+                        Product p = Product.searchById(productId);
+                        if (p != null) {
+                            productList.append(p);
+                        } else {
+                            out.add("Product not found for order: " + orderId + ", productId: " + productId);
+                        }
+                    } catch (NumberFormatException e) {
+                        out.add("Error parsing product ID: " + row.text(idStart, i));
+                    }
+                    idStart = i + 1;
+                }
+            }
+
+            if (!productList.empty()) {
+                out.add(new Order(orderId, c, productList, totalPrice, orderDate, status));
+            }
+        } catch (NumberFormatException e) {
+            out.add("Error parsing order line: " + row.line());
+        }
+    }
+
+    /**
+     * Load reviews.csv - returns the bytes read (0 if the file could not be read)
+     */
+    public static long loadReviews(String filePath) {
+        try {
+            return read(filePath, true, MappedCSVReader::parseReview, MappedCSVReader::addReview);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error loading reviews: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Add a parsed review to the review trees, its product, and the review count tree - O(log R + log P)
+     */
+    static void addReview(Review review) {
+        EntityLock.lock();
+        try {
+            Product p = review.product;
+            // Get old review count before adding the new review
+            int oldCount = p.getReviewCount();
+            Review.addReview(review);
+            p.addReview(review);
+            // Update the product's position in the review count tree
+            Product.updateProductReviewCount(p.productId, oldCount, p.getReviewCount());
+        } finally {
+            EntityLock.unlock();
+        }
+    }
+
+    static void parseReview(CSVTokenizer row, java.util.List<Object> out) {
+        if (row.fieldCount() < 5) return;
+        try {
+            int reviewId = row.intField(0);
+            int productId = row.intField(1);
+            int customerId = row.intField(2);
+            double rating = row.doubleField(3);
+            // Unquoted commas split the comment; rejoin them the way SimpleCSVReader does
+            String comment = row.fieldCount() == 5 ? row.stringField(4) : row.joinedField(4);
+
+            Product p = Product.searchById(productId);
+            Customer c = Customer.searchById(customerId);
+            if (p != null && c != null) {
+                out.add(new Review(reviewId, p, c, comment, rating));
+            } else {
+                if (p == null) out.add("Product not found for review: " + productId);
+                if (c == null) out.add("Customer not found for review: " + customerId);
+            }
+        } catch (NumberFormatException e) {
+            out.add("Error parsing review line: " + row.line());
+        }
+    }
+
+    /**
+     * Map the file, parse its chunks in parallel, then print the warnings and hand the entities
+     * to sink in file order on the calling thread. The first record (header) is skipped.
+     * quoted: RFC 4180 fields (see CSVTokenizer); otherwise fields follow String.split(",")
+     * Returns the file size when it was mapped: bytes appended after that are not read.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> long read(String filePath, boolean quoted, LineParser parser, Consumer<T> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = chunkBounds(channel, size, quoted);
+            java.util.List<Object>[] results = (java.util.List<Object>[]) new java.util.List<?>[bounds.length - 1];
+            forEachChunk(results.length, chunk -> {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, bounds[chunk], bounds[chunk + 1] - bounds[chunk]);
+                results[chunk] = parseChunk(buffer, chunk == 0, quoted, parser);
+            });
+            for (java.util.List<Object> items : results) {
+                for (Object item : items) {
+                    if (item instanceof String) {
+                        System.out.println(item);
+                    } else {
+                        sink.accept((T) item);
+                    }
+                }
+            }
+            return size;
+        }
+    }
+
+    private static java.util.List<Object> parseChunk(MappedByteBuffer buffer, boolean first, boolean quoted, LineParser parser) {
+        java.util.List<Object> items = new java.util.ArrayList<>();
+        CSVTokenizer row = new CSVTokenizer(buffer, quoted);
+        int limit = buffer.limit();
+        int pos = 0;
+        boolean header = first;
+        while (pos < limit) {
+            pos = row.next(pos, limit);
+            if (header) {
+                header = false;
+            } else if (!row.isBlank()) {
+                parser.parse(row, items);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Chunk start offsets plus the file size. Chunks aim for a few per pool thread, between 1 MB
+     * and 256 MB each, and every chunk but the first starts at a record start, i.e. right after a
+     * '\n' outside quotes. Whether a block boundary lies inside quotes is the parity of the quotes
+     * before it, so with quoting on, the quotes of each block are counted first (in parallel).
+     * Chunks can come out empty when one record spans whole blocks.
+     */
+    private static long[] chunkBounds(FileChannel channel, long size, boolean quoted) throws IOException {
+        long target = size / (4L * ForkJoinPool.getCommonPoolParallelism()) + 1;
+        target = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, target));
+        int blocks = (int) ((size + target - 1) / target);
+        long[] blockStarts = new long[blocks + 1];
+        for (int i = 0; i < blocks; i++) {
+            blockStarts[i] = i * target;
+        }
+        blockStarts[blocks] = size;
+
+        int[] quotes = new int[blocks];
+        if (quoted) {
+            forEachChunk(blocks, block -> {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, blockStarts[block], blockStarts[block + 1] - blockStarts[block]);
+                quotes[block] = CSVTokenizer.countQuotes(buffer, 0, buffer.limit());
+            });
+        }
+
+        long[] bounds = new long[blocks + 1];
+        bounds[blocks] = size;
+        int quotesBefore = 0;
+        for (int i = 1; i < blocks; i++) {
+            quotesBefore += quotes[i - 1];
+            long from = Math.max(blockStarts[i], bounds[i - 1]);
+            // Mapping is lazy, so only the bytes up to the record start are actually read
+            MappedByteBuffer rest = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(size - from, Integer.MAX_VALUE));
+            boolean inQuotes = from == blockStarts[i] && (quotesBefore & 1) == 1;
+            bounds[i] = from + CSVTokenizer.recordStartAfter(rest, 0, rest.limit(), inQuotes, quoted);
+        }
+        return bounds;
+    }
+
+    private interface ChunkJob {
+        void run(int chunk) throws IOException;
+    }
+
+    /**
+     * Run job for chunks 0..count-1 on the common fork-join pool and wait for all of them
+     */
+    private static void forEachChunk(int count, ChunkJob job) {
+        if (count > 0) {
+            ForkJoinPool.commonPool().invoke(new ChunkTask(job, 0, count));
+        }
+    }
+
+    /**
+     * Runs chunks [lo, hi), splitting the range in half until one chunk is left
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ChunkJob job;
+        private final int lo, hi;
+
+        ChunkTask(ChunkJob job, int lo, int hi) {
+            this.job = job;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ChunkTask(job, lo, mid), new ChunkTask(job, mid, hi));
+                return;
+            }
+            try {
+                job.run(lo);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package projectFiles;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
 /**
  * Order class - Phase II implementation with AVL Tree storage
  * Orders are stored in AVL Tree keyed by orderId for O(log n) operations.
@@ -14,11 +18,22 @@ public class Order {
     String status;  // pending, shipped, delivered, canceled
 
     // Phase II: AVL Tree keyed by orderId for O(log n) operations
-    static AVLTree<Integer, Order> orderTree = new AVLTree<Integer, Order>();
+    static ConcurrentIntAVLTree<Order> orderTree = new ConcurrentIntAVLTree<Order>();
     
+    // Phase II: Aggregates maintained per subtree of orderTreeByDate (each node holds one date's orders)
+    // Revenue counts every order that is not canceled
+    static final Aggregator<LinkedList<Order>> REVENUE_BY_DATE = Aggregator.sum(Order::revenue);
+    static final Aggregator<LinkedList<Order>> COUNT_BY_DATE = Aggregator.sum(LinkedList::size);
+
     // Phase II: AVL Tree keyed by orderDate for date range queries
     // Note: Since multiple orders can have same date, we store LinkedList<Order>
-    static AVLTree<String, LinkedList<Order>> orderTreeByDate = new AVLTree<String, LinkedList<Order>>();
+    static AVLTree<String, LinkedList<Order>> orderTreeByDate =
+            new AVLTree<String, LinkedList<Order>>(REVENUE_BY_DATE, COUNT_BY_DATE);
+    
+    // Phase II: Each customer's current orders keyed by orderId (customerId -> orderId -> order)
+    // Holds exactly the orders in orderTree, so order history needs no scan of all orders
+    // The outer tree keeps its nodes in arrays; the small per-customer trees stay object-backed
+    static ArrayIntAVLTree<IntAVLTree<Order>> orderTreeByCustomer = new ArrayIntAVLTree<IntAVLTree<Order>>();
     
     // Phase I: LinkedList maintained for compatibility
     static LinkedList<Order> orders = new LinkedList<Order>();
@@ -44,14 +59,12 @@ public class Order {
         if (products.empty()) {
             sb.append("(no products)");
         } else {
-            products.findFirst();
+            // Independent iterator: printing an order must not move the products cursor
             boolean first = true;
-            while (products.retrieve() != null) {
+            for (Product p : products) {
                 if (!first) sb.append(", ");
-                sb.append(products.retrieve().name);
+                sb.append(p.name);
                 first = false;
-                if (products.last()) break;
-                products.findNext();
             }
         }
         
@@ -61,6 +74,19 @@ public class Order {
         return sb.toString();
     }
 
+    /**
+     * Revenue of a list of orders, skipping canceled ones (lift function for REVENUE_BY_DATE)
+     */
+    private static double revenue(LinkedList<Order> list) {
+        double total = 0;
+        for (Order o : list) {
+            if (!o.status.equals("canceled")) {
+                total += o.totalPrice;
+            }
+        }
+        return total;
+    }
+
     /**
      * Phase II: Get the next available order ID
      */
@@ -72,14 +98,88 @@ public class Order {
      * Phase II: Add order using AVL Tree - O(log n) time complexity
      */
     public static void addOrder(Order o) {
+        EntityLock.lock();
+        try {
+            // An order with the same ID is replaced in orderTree, so it leaves its customer's index too
+            Order replaced = orderTree.search(o.orderId);
+            // Insert into AVL Tree by orderId - O(log n)
+            orderTree.insert(o.orderId, o);
+            if (replaced != null) {
+                unindexCustomerOrder(replaced);
+            }
+            indexCustomerOrder(o);
+            indexOrder(o, true);
+        } finally {
+            EntityLock.unlock();
+        }
+    }
+
+    /**
+     * Phase II: Add a batch of orders read from a file, in file order.
+     * When the ID tree is empty it is built in O(n) with buildFromSorted: an ID-sorted batch is used
+     * as is, anything else is stable-sorted by ID first. A non-empty tree falls back to addOrder per row.
+     * As with addOrder, a repeated ID keeps the last order in the ID tree.
+     */
+    public static void addOrders(Order[] batch, int count) {
+        EntityLock.lock();
+        try {
+            if (!orderTree.isEmpty()) {
+                for (int i = 0; i < count; i++) {
+                    addOrder(batch[i]);
+                }
+                return;
+            }
+
+            Order[] byId = Arrays.copyOf(batch, count);
+            boolean sorted = true;
+            for (int i = 1; i < count && sorted; i++) {
+                sorted = byId[i - 1].orderId <= byId[i].orderId;
+            }
+            if (!sorted) {
+                Arrays.sort(byId, Comparator.comparingInt((Order o) -> o.orderId));
+            }
+
+            // Equal IDs are now adjacent in file order; the later one replaces the earlier
+            int[] ids = new int[count];
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique > 0 && ids[unique - 1] == byId[i].orderId) {
+                    byId[unique - 1] = byId[i];
+                    continue;
+                }
+                ids[unique] = byId[i].orderId;
+                byId[unique++] = byId[i];
+            }
+            orderTree.buildFromSorted(ids, byId, unique);
+            for (int i = 0; i < unique; i++) {
+                indexCustomerOrder(byId[i]);
+            }
+
+            // Refresh each date's aggregates once at the end, not once per order (O(bucket) each time)
+            java.util.Set<String> grownDates = new java.util.HashSet<>();
+            for (int i = 0; i < count; i++) {
+                if (indexOrder(batch[i], false)) {
+                    grownDates.add(batch[i].orderDate);
+                }
+            }
+            for (String date : grownDates) {
+                orderTreeByDate.refresh(date);
+            }
+        } finally {
+            EntityLock.unlock();
+        }
+    }
+
+    /**
+     * Add an order that is already in orderTree to the date tree and the list, and track maxOrderId
+     * Returns true if it joined an existing date, whose aggregates are refreshed only if refresh is set
+     */
+    private static boolean indexOrder(Order o, boolean refresh) {
         // Update maxOrderId if necessary
         if (o.orderId > maxOrderId) {
             maxOrderId = o.orderId;
         }
         
-        // Insert into AVL Tree by orderId - O(log n)
-        orderTree.insert(o.orderId, o);
-        
         // Insert into date tree for date range queries
         LinkedList<Order> ordersOnDate = orderTreeByDate.search(o.orderDate);
         if (ordersOnDate == null) {
@@ -87,41 +187,31 @@ public class Order {
             ordersOnDate.insert(o);
             orderTreeByDate.insert(o.orderDate, ordersOnDate);
         } else {
-            // Add to existing list
-            if (ordersOnDate.empty()) {
-                ordersOnDate.insert(o);
-            } else {
-                ordersOnDate.findFirst();
-                while (!ordersOnDate.last()) {
-                    ordersOnDate.findNext();
-                }
-                ordersOnDate.insert(o);
+            // Add to existing list and refresh that date's aggregates
+            ordersOnDate.append(o);
+            if (refresh) {
+                orderTreeByDate.refresh(o.orderDate);
             }
         }
         
         // Also maintain LinkedList for backward compatibility
-        if (orders.empty()) {
-            orders.insert(o);
-        } else {
-            orders.findFirst();
-            while (!orders.last()) {
-                orders.findNext();
-            }
-            orders.insert(o);
-        }
+        orders.append(o);
+        return ordersOnDate.size() > 1;
     }
 
     /**
      * Phase II: Print all orders using in-order traversal (sorted by ID)
      */
     public static void printAll() {
-        if (orderTree.isEmpty()) {
+        // Report on an O(1) snapshot: consistent output, and writers are never blocked
+        PersistentIntAVLTree<Order> snapshot = orderTree.snapshot();
+        if (snapshot.isEmpty()) {
             System.out.println("No orders available.");
             return;
         }
 
         // Use in-order traversal for sorted output by orderId
-        LinkedList<Order> sortedOrders = orderTree.inOrderTraversal();
+        LinkedList<Order> sortedOrders = snapshot.inOrderTraversal();
         sortedOrders.findFirst();
         while (sortedOrders.retrieve() != null) {
             System.out.println(sortedOrders.retrieve());
@@ -132,30 +222,27 @@ public class Order {
 
     /**
      * Phase II: Print orders between two dates using AVL tree date range
-     * Delegates to getOrdersBetweenDates to avoid code duplication (DRY principle)
+     * Streams from the lazy range cursor shared with getOrdersBetweenDates, so nothing is materialized
      */
     public static void printOrdersBetween(String startDate, String endDate) {
         System.out.println("Orders between " + startDate + " and " + endDate + ":");
-        LinkedList<Order> results = getOrdersBetweenDates(startDate, endDate);
+        Iterator<Order> results = iterateOrdersBetween(startDate, endDate, false);
         
-        if (results.empty()) {
+        if (!results.hasNext()) {
             System.out.println("No orders found in this date range.");
             return;
         }
         
-        results.findFirst();
-        while (results.retrieve() != null) {
-            System.out.println(results.retrieve());
-            if (results.last()) break;
-            results.findNext();
+        while (results.hasNext()) {
+            System.out.println(results.next());
         }
     }
 
     /**
-     * Phase II: Search order by ID using AVL Tree - O(log n) time complexity
+     * Phase II: Search order by ID using the hash ID index - O(1) expected time complexity
      */
     public static Order searchById(int id) {
-        // Use AVL Tree for O(log n) search
+        // Answered by the IntHashIndex kept beside the ID tree, not by a tree descent
         return orderTree.search(id);
     }
     
@@ -179,192 +266,215 @@ public class Order {
     }
 
     /**
-     * Phase II: Update order status using AVL Tree - O(log n) search
+     * Phase II: Update order status - O(1) expected lookup through the hash ID index
      */
     public static void updateOrderStatus(int id, String newStatus) {
-        Order order = searchById(id); // O(log n)
-        if (order != null) {
-            // Validate status
-            if (newStatus.equals("pending") || newStatus.equals("shipped") || 
-                newStatus.equals("delivered") || newStatus.equals("canceled")) {
-                order.status = newStatus;
-                System.out.println("Order status updated successfully to: " + newStatus);
+        EntityLock.lock();
+        try {
+            Order order = searchById(id); // O(1)
+            if (order != null) {
+                // Validate status
+                if (newStatus.equals("pending") || newStatus.equals("shipped") || 
+                    newStatus.equals("delivered") || newStatus.equals("canceled")) {
+                    WriteAheadLog.logUpdateOrderStatus(id, newStatus);
+                    order.status = newStatus;
+                    // Revenue excludes canceled orders, so a status change can move it
+                    orderTreeByDate.refresh(order.orderDate);
+                    System.out.println("Order status updated successfully to: " + newStatus);
+                } else {
+                    System.out.println("Invalid status. Valid statuses are: pending, shipped, delivered, canceled");
+                }
             } else {
-                System.out.println("Invalid status. Valid statuses are: pending, shipped, delivered, canceled");
+                System.out.println("Order not found.");
             }
-        } else {
-            System.out.println("Order not found.");
+        } finally {
+            EntityLock.unlock();
         }
     }
 
     /**
-     * Phase II: Cancel order using AVL Tree - O(log n) search
+     * Phase II: Cancel order - O(1) expected lookup through the hash ID index
      */
     public static void cancelOrder(int id) {
-        Order order = searchById(id); // O(log n)
-        if (order == null) {
-            System.out.println("Order not found.");
-            return;
-        }
+        EntityLock.lock();
+        try {
+            Order order = searchById(id); // O(1)
+            if (order == null) {
+                System.out.println("Order not found.");
+                return;
+            }
 
-        if (order.status.equals("canceled")) {
-            System.out.println("Order is already canceled.");
-            return;
-        }
+            if (order.status.equals("canceled")) {
+                System.out.println("Order is already canceled.");
+                return;
+            }
+            WriteAheadLog.logCancelOrder(id);
 
-        // Restore product stock by counting occurrences of each product
-        if (!order.products.empty()) {
-            // Count occurrences using LinkedList
-            order.products.findFirst();
-            LinkedList<Integer> productIds = new LinkedList<Integer>();
-            LinkedList<Integer> counts = new LinkedList<Integer>();
-            
-            while (order.products.retrieve() != null) {
-                Product p = order.products.retrieve();
-                int productId = p.productId;
+            // Restore product stock by counting occurrences of each product
+            if (!order.products.empty()) {
+                // Count occurrences using LinkedList
+                order.products.findFirst();
+                LinkedList<Integer> productIds = new LinkedList<Integer>();
+                LinkedList<Integer> counts = new LinkedList<Integer>();
                 
-                // Find if productId already exists in our list
-                boolean found = false;
+                while (order.products.retrieve() != null) {
+                    Product p = order.products.retrieve();
+                    int productId = p.productId;
+                    
+                    // Find if productId already exists in our list
+                    boolean found = false;
+                    if (!productIds.empty()) {
+                        productIds.findFirst();
+                        counts.findFirst();
+                        while (productIds.retrieve() != null) {
+                            if (productIds.retrieve() == productId) {
+                                // Increment count
+                                int currentCount = counts.retrieve();
+                                counts.update(currentCount + 1);
+                                found = true;
+                                break;
+                            }
+                            if (productIds.last()) break;
+                            productIds.findNext();
+                            counts.findNext();
+                        }
+                    }
+                    
+                    if (!found) {
+                        // Add new product with count 1
+                        productIds.append(productId);
+                        counts.append(1);
+                    }
+                    
+                    if (order.products.last()) break;
+                    order.products.findNext();
+                }
+
+                // Restore stock for each product using AVL tree search - O(log n) per product
                 if (!productIds.empty()) {
                     productIds.findFirst();
                     counts.findFirst();
                     while (productIds.retrieve() != null) {
-                        if (productIds.retrieve() == productId) {
-                            // Increment count
-                            int currentCount = counts.retrieve();
-                            counts.update(currentCount + 1);
-                            found = true;
-                            break;
+                        int productId = productIds.retrieve();
+                        int count = counts.retrieve();
+                        Product actualProduct = Product.searchById(productId); // O(1)
+                        if (actualProduct != null) {
+                            actualProduct.adjustStock(count);
                         }
                         if (productIds.last()) break;
                         productIds.findNext();
                         counts.findNext();
                     }
                 }
-                
-                if (!found) {
-                    // Add new product with count 1
-                    if (productIds.empty()) {
-                        productIds.insert(productId);
-                        counts.insert(1);
-                    } else {
-                        productIds.findFirst();
-                        while (!productIds.last()) {
-                            productIds.findNext();
-                        }
-                        productIds.insert(productId);
-                        
-                        counts.findFirst();
-                        while (!counts.last()) {
-                            counts.findNext();
-                        }
-                        counts.insert(1);
-                    }
-                }
-                
-                if (order.products.last()) break;
-                order.products.findNext();
             }
 
-            // Restore stock for each product using AVL tree search - O(log n) per product
-            if (!productIds.empty()) {
-                productIds.findFirst();
-                counts.findFirst();
-                while (productIds.retrieve() != null) {
-                    int productId = productIds.retrieve();
-                    int count = counts.retrieve();
-                    Product actualProduct = Product.searchById(productId); // O(log n)
-                    if (actualProduct != null) {
-                        actualProduct.stock += count;
-                    }
-                    if (productIds.last()) break;
-                    productIds.findNext();
-                    counts.findNext();
-                }
-            }
+            // Update order status to canceled
+            order.status = "canceled";
+            orderTreeByDate.refresh(order.orderDate);
+            System.out.println("Order canceled successfully. Product stock has been restored.");
+        } finally {
+            EntityLock.unlock();
+        }
+    }
+
+    /**
+     * Add an order to its customer's index (replacing a same-ID order of that customer) - O(log C + log k)
+     */
+    private static void indexCustomerOrder(Order o) {
+        IntAVLTree<Order> customerOrders = orderTreeByCustomer.search(o.customer.customerId);
+        if (customerOrders == null) {
+            customerOrders = new IntAVLTree<Order>();
+            orderTreeByCustomer.insert(o.customer.customerId, customerOrders);
         }
+        customerOrders.insert(o.orderId, o);
+    }
 
-        // Update order status to canceled
-        order.status = "canceled";
-        System.out.println("Order canceled successfully. Product stock has been restored.");
+    private static void unindexCustomerOrder(Order o) {
+        IntAVLTree<Order> customerOrders = orderTreeByCustomer.search(o.customer.customerId);
+        if (customerOrders != null) {
+            customerOrders.delete(o.orderId);
+            if (customerOrders.isEmpty()) {
+                orderTreeByCustomer.delete(o.customer.customerId);
+            }
+        }
     }
 
     /**
-     * Phase II: Get all orders for a specific customer
+     * Phase II: Get all orders for a specific customer, sorted by ID - O(log C + k)
+     * Read from the per-customer index instead of filtering every order
      */
     public static LinkedList<Order> getOrdersByCustomer(int customerId) {
-        LinkedList<Order> result = new LinkedList<Order>();
-        
-        if (orderTree.isEmpty()) {
-            return result;
+        IntAVLTree<Order> customerOrders = orderTreeByCustomer.search(customerId);
+        if (customerOrders == null) {
+            return new LinkedList<Order>();
         }
+        return customerOrders.inOrderTraversal();
+    }
 
-        // Traverse all orders and filter by customer
-        LinkedList<Order> allOrders = orderTree.inOrderTraversal();
-        allOrders.findFirst();
-        while (allOrders.retrieve() != null) {
-            Order o = allOrders.retrieve();
-            if (o.customer.customerId == customerId) {
-                if (result.empty()) {
-                    result.insert(o);
-                } else {
-                    result.findFirst();
-                    while (!result.last()) {
-                        result.findNext();
-                    }
-                    result.insert(o);
-                }
-            }
-            if (allOrders.last()) break;
-            allOrders.findNext();
+    /**
+     * Phase II: One page of a customer's orders sorted by ID (pageIndex is 0-based) - O(log C + log k + pageSize)
+     */
+    public static LinkedList<Order> getOrdersByCustomerPage(int customerId, int pageIndex, int pageSize) {
+        IntAVLTree<Order> customerOrders = orderTreeByCustomer.search(customerId);
+        if (customerOrders == null) {
+            return new LinkedList<Order>();
         }
-        
-        return result;
+        return customerOrders.selectRange(pageIndex * pageSize, pageSize);
+    }
+
+    /**
+     * Phase II: Number of orders of a customer - O(log C)
+     */
+    public static int countOrdersByCustomer(int customerId) {
+        IntAVLTree<Order> customerOrders = orderTreeByCustomer.search(customerId);
+        return customerOrders == null ? 0 : customerOrders.size();
     }
 
     /**
      * Phase II: Get orders between two dates - returns LinkedList
      */
     public static LinkedList<Order> getOrdersBetweenDates(String startDate, String endDate) {
-        LinkedList<Order> result = new LinkedList<Order>();
-        
-        if (orderTreeByDate.isEmpty()) {
-            return result;
-        }
+        return getOrdersBetweenDates(startDate, endDate, Integer.MAX_VALUE);
+    }
 
-        // Use range query on date tree
-        LinkedList<LinkedList<Order>> dateRangeOrders = orderTreeByDate.rangeQuery(startDate, endDate);
-        
-        if (dateRangeOrders.empty()) {
-            return result;
-        }
+    /**
+     * Phase II: First page of a date range query - at most limit orders, oldest first.
+     * Stops the range cursor as soon as the page is full - O(log n + limit).
+     */
+    public static LinkedList<Order> getOrdersBetweenDates(String startDate, String endDate, int limit) {
+        LinkedList<Order> result = new LinkedList<Order>();
 
-        dateRangeOrders.findFirst();
-        while (dateRangeOrders.retrieve() != null) {
-            LinkedList<Order> ordersOnDate = dateRangeOrders.retrieve();
-            if (!ordersOnDate.empty()) {
-                ordersOnDate.findFirst();
-                while (ordersOnDate.retrieve() != null) {
-                    if (result.empty()) {
-                        result.insert(ordersOnDate.retrieve());
-                    } else {
-                        result.findFirst();
-                        while (!result.last()) {
-                            result.findNext();
-                        }
-                        result.insert(ordersOnDate.retrieve());
-                    }
-                    if (ordersOnDate.last()) break;
-                    ordersOnDate.findNext();
-                }
-            }
-            if (dateRangeOrders.last()) break;
-            dateRangeOrders.findNext();
+        Iterator<Order> it = iterateOrdersBetween(startDate, endDate, false);
+        while (result.size() < limit && it.hasNext()) {
+            result.append(it.next());
         }
-        
         return result;
     }
 
+    /**
+     * Phase II: Lazy date range cursor over the AVL tree keyed by orderDate.
+     * Orders are produced on demand (newest dates first when descending) using
+     * O(log n) memory, so callers can stream or stop early without materializing the range.
+     */
+    public static Iterator<Order> iterateOrdersBetween(String startDate, String endDate, boolean descending) {
+        return LinkedList.concat(orderTreeByDate.rangeIterator(startDate, endDate, descending));
+    }
+
+    /**
+     * Phase II: Total revenue of non-canceled orders between two dates (inclusive) - O(log n)
+     * Read from the per-subtree revenue aggregate, without visiting the orders
+     */
+    public static double getRevenueBetweenDates(String startDate, String endDate) {
+        return orderTreeByDate.rangeAggregate(REVENUE_BY_DATE, startDate, endDate);
+    }
+
+    /**
+     * Phase II: Number of orders between two dates (inclusive) - O(log n)
+     */
+    public static int countOrdersBetweenDates(String startDate, String endDate) {
+        return (int) orderTreeByDate.rangeAggregate(COUNT_BY_DATE, startDate, endDate);
+    }
+
     /**
      * Phase II: Get all orders sorted by ID (using in-order traversal)
      */
@@ -372,6 +482,22 @@ public class Order {
         return orderTree.inOrderTraversal();
     }
 
+    /**
+     * Phase II: One page of orders sorted by ID (pageIndex is 0-based)
+     * select() jumps straight to the first order of the page - O(log n + pageSize)
+     */
+    public static LinkedList<Order> getOrdersPage(int pageIndex, int pageSize) {
+        return orderTree.selectRange(pageIndex * pageSize, pageSize);
+    }
+
+    /**
+     * Phase II: Number of orders with IDs between minId and maxId (inclusive) - O(log n)
+     * Answered from subtree sizes without visiting the orders
+     */
+    public static int countOrdersWithIdBetween(int minId, int maxId) {
+        return orderTree.countInRange(minId, maxId);
+    }
+
     /**
      * Phase II: Get the number of orders - O(1)
      */
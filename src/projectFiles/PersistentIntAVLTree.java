@@ -0,0 +1,421 @@
+package projectFiles;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Persistent (immutable) AVL Tree with primitive int keys.
+ * A tree value never changes: insert and delete copy only the O(log n) nodes on the path
+ * to the key and return a new version that shares every other node with the old one.
+ * Holding a reference to a version is therefore an O(1) snapshot - it can be read, iterated
+ * or traversed from any thread for as long as needed while newer versions are produced.
+ * @param <V> The type of value/data stored
+ */
+public final class PersistentIntAVLTree<V> implements Iterable<V> {
+
+    /**
+     * Immutable tree node; height for balancing and subtree size for rank/select
+     */
+    static final class Node<V> {
+        final int key;
+        final V data;
+        final Node<V> left;
+        final Node<V> right;
+        final int height;
+        final int size;
+
+        Node(int key, V data, Node<V> left, Node<V> right) {
+            this.key = key;
+            this.data = data;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + subtreeSize(left) + subtreeSize(right);
+        }
+    }
+
+    private static final PersistentIntAVLTree<Object> EMPTY = new PersistentIntAVLTree<Object>(null);
+
+    private final Node<V> root;
+
+    private PersistentIntAVLTree(Node<V> root) {
+        this.root = root;
+    }
+
+    /**
+     * The empty tree - O(1)
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntAVLTree<V> empty() {
+        return (PersistentIntAVLTree<V>) EMPTY;
+    }
+
+    /**
+     * Perfectly balanced tree from count entries with strictly increasing keys - O(n)
+     * Throws IllegalArgumentException if the keys are not sorted.
+     */
+    public static <V> PersistentIntAVLTree<V> fromSorted(int[] sortedKeys, V[] sortedValues, int count) {
+        for (int i = 1; i < count; i++) {
+            if (sortedKeys[i - 1] >= sortedKeys[i]) {
+                throw new IllegalArgumentException("Keys must be strictly increasing (index " + i + ")");
+            }
+        }
+        return new PersistentIntAVLTree<V>(buildRange(sortedKeys, sortedValues, 0, count - 1));
+    }
+
+    private static <V> Node<V> buildRange(int[] sortedKeys, V[] sortedValues, int lo, int hi) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        return new Node<V>(sortedKeys[mid], sortedValues[mid],
+                buildRange(sortedKeys, sortedValues, lo, mid - 1),
+                buildRange(sortedKeys, sortedValues, mid + 1, hi));
+    }
+
+    private static int height(Node<?> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    private static int subtreeSize(Node<?> node) {
+        return (node == null) ? 0 : node.size;
+    }
+
+    /**
+     * New node for (key, data) over two balanced subtrees whose heights differ by at most 2,
+     * rotating (by building new nodes) if needed - O(1)
+     */
+    private static <V> Node<V> balance(int key, V data, Node<V> left, Node<V> right) {
+        int balance = height(left) - height(right);
+        if (balance > 1) {
+            if (height(left.left) >= height(left.right)) {
+                // Left Left Case
+                return new Node<V>(left.key, left.data, left.left, new Node<V>(key, data, left.right, right));
+            }
+            // Left Right Case
+            Node<V> pivot = left.right;
+            return new Node<V>(pivot.key, pivot.data,
+                    new Node<V>(left.key, left.data, left.left, pivot.left),
+                    new Node<V>(key, data, pivot.right, right));
+        }
+        if (balance < -1) {
+            if (height(right.right) >= height(right.left)) {
+                // Right Right Case
+                return new Node<V>(right.key, right.data, new Node<V>(key, data, left, right.left), right.right);
+            }
+            // Right Left Case
+            Node<V> pivot = right.left;
+            return new Node<V>(pivot.key, pivot.data,
+                    new Node<V>(key, data, left, pivot.left),
+                    new Node<V>(right.key, right.data, pivot.right, right.right));
+        }
+        return new Node<V>(key, data, left, right);
+    }
+
+    /**
+     * New version with key mapped to data (replacing the data of an existing key) - O(log n)
+     * This version is unchanged.
+     */
+    public PersistentIntAVLTree<V> insert(int key, V data) {
+        return new PersistentIntAVLTree<V>(insert(root, key, data));
+    }
+
+    private static <V> Node<V> insert(Node<V> node, int key, V data) {
+        if (node == null) return new Node<V>(key, data, null, null);
+        if (key < node.key) {
+            return balance(node.key, node.data, insert(node.left, key, data), node.right);
+        }
+        if (key > node.key) {
+            return balance(node.key, node.data, node.left, insert(node.right, key, data));
+        }
+        return new Node<V>(key, data, node.left, node.right);
+    }
+
+    /**
+     * New version without key - O(log n); returns this version if the key is absent
+     */
+    public PersistentIntAVLTree<V> delete(int key) {
+        if (findNode(key) == null) return this;
+        return new PersistentIntAVLTree<V>(delete(root, key));
+    }
+
+    private static <V> Node<V> delete(Node<V> node, int key) {
+        if (key < node.key) {
+            return balance(node.key, node.data, delete(node.left, key), node.right);
+        }
+        if (key > node.key) {
+            return balance(node.key, node.data, node.left, delete(node.right, key));
+        }
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+
+        // Two children: the in-order successor takes this node's place
+        Node<V> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.key, successor.data, node.left, delete(node.right, successor.key));
+    }
+
+    /**
+     * Search for a value by key - O(log n)
+     */
+    public V search(int key) {
+        Node<V> node = findNode(key);
+        return (node == null) ? null : node.data;
+    }
+
+    public boolean contains(int key) {
+        return findNode(key) != null;
+    }
+
+    private Node<V> findNode(int key) {
+        Node<V> node = root;
+        while (node != null) {
+            if (key < node.key) {
+                node = node.left;
+            } else if (key > node.key) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public int size() {
+        return subtreeSize(root);
+    }
+
+    public V getMin() {
+        if (root == null) return null;
+        Node<V> current = root;
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current.data;
+    }
+
+    public V getMax() {
+        if (root == null) return null;
+        Node<V> current = root;
+        while (current.right != null) {
+            current = current.right;
+        }
+        return current.data;
+    }
+
+    /**
+     * Rank of a key - the number of keys strictly less than key - O(log n)
+     */
+    public int rank(int key) {
+        int rank = 0;
+        Node<V> current = root;
+        while (current != null) {
+            if (key <= current.key) {
+                current = current.left;
+            } else {
+                rank += subtreeSize(current.left) + 1;
+                current = current.right;
+            }
+        }
+        return rank;
+    }
+
+    private Node<V> selectNode(int index) {
+        if (index < 0 || index >= size()) return null;
+        Node<V> current = root;
+        while (current != null) {
+            int leftSize = subtreeSize(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                current = current.right;
+            } else {
+                return current;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Value with the index-th smallest key (0-based), or null if out of range - O(log n)
+     */
+    public V select(int index) {
+        Node<V> node = selectNode(index);
+        return (node == null) ? null : node.data;
+    }
+
+    /**
+     * The index-th smallest key (0-based) - O(log n)
+     * Throws NoSuchElementException if index is outside [0, size())
+     */
+    public int selectKey(int index) {
+        Node<V> node = selectNode(index);
+        if (node == null) throw new NoSuchElementException("No key at index " + index);
+        return node.key;
+    }
+
+    /**
+     * Number of keys between minKey and maxKey (inclusive) - O(log n)
+     */
+    public int countInRange(int minKey, int maxKey) {
+        if (minKey > maxKey) return 0;
+        int upper = (maxKey == Integer.MAX_VALUE) ? size() : rank(maxKey + 1);
+        return upper - rank(minKey);
+    }
+
+    /**
+     * In-order traversal - returns elements sorted by key - O(n)
+     */
+    public LinkedList<V> inOrderTraversal() {
+        LinkedList<V> result = new LinkedList<V>();
+        for (V value : this) {
+            result.append(value);
+        }
+        return result;
+    }
+
+    /**
+     * Reverse in-order traversal - returns elements in descending key order - O(n)
+     */
+    public LinkedList<V> reverseInOrderTraversal() {
+        LinkedList<V> result = new LinkedList<V>();
+        Iterator<V> it = descendingIterator();
+        while (it.hasNext()) {
+            result.append(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Range query - all values with minKey <= key <= maxKey - O(log n + k)
+     */
+    public LinkedList<V> rangeQuery(int minKey, int maxKey) {
+        LinkedList<V> result = new LinkedList<V>();
+        Iterator<V> it = rangeIterator(minKey, maxKey);
+        while (it.hasNext()) {
+            result.append(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Up to count values starting at the index-th smallest key, ascending - O(log n + count)
+     */
+    public LinkedList<V> selectRange(int index, int count) {
+        LinkedList<V> result = new LinkedList<V>();
+        if (index < 0 || index >= size() || count <= 0) return result;
+        Iterator<V> it = rangeIterator(selectKey(index), Integer.MAX_VALUE);
+        for (int i = 0; i < count && it.hasNext(); i++) {
+            result.append(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Iterators never fail: the version they walk cannot change
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new InOrderIterator(Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+    }
+
+    public Iterator<V> descendingIterator() {
+        return new InOrderIterator(Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+    }
+
+    /**
+     * Lazy in-order iterator over keys in [minKey, maxKey] - O(log n) to position, O(1) amortized per step
+     */
+    public Iterator<V> rangeIterator(int minKey, int maxKey) {
+        return new InOrderIterator(minKey, maxKey, false);
+    }
+
+    public Iterator<V> rangeIterator(int minKey, int maxKey, boolean descending) {
+        return new InOrderIterator(minKey, maxKey, descending);
+    }
+
+    /**
+     * Verify ordering, heights, balance factors and subtree sizes - O(n)
+     * Throws IllegalStateException describing the first violation found
+     */
+    void checkInvariants() {
+        checkSubtree(root, Integer.MIN_VALUE, Integer.MAX_VALUE, true, true);
+    }
+
+    private void checkSubtree(Node<V> node, int low, int high, boolean lowOpen, boolean highOpen) {
+        if (node == null) return;
+        if ((!lowOpen && node.key <= low) || (!highOpen && node.key >= high)) {
+            throw new IllegalStateException("key " + node.key + " out of order");
+        }
+        checkSubtree(node.left, low, node.key, lowOpen, false);
+        checkSubtree(node.right, node.key, high, false, highOpen);
+        if (Math.abs(height(node.left) - height(node.right)) > 1) {
+            throw new IllegalStateException("unbalanced at key " + node.key);
+        }
+    }
+
+    /**
+     * Stack-based in-order walk of this version, keys in [minKey, maxKey]
+     */
+    private class InOrderIterator implements Iterator<V> {
+        private final int minKey;
+        private final int maxKey;
+        private final boolean descending;
+        private final Object[] stack;
+        private int top;
+
+        InOrderIterator(int minKey, int maxKey, boolean descending) {
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+            this.descending = descending;
+            this.stack = new Object[height(root) + 1];
+            pushEdge(root);
+        }
+
+        private void pushEdge(Node<V> node) {
+            while (node != null) {
+                if (!descending) {
+                    if (node.key < minKey) {
+                        node = node.right;
+                    } else {
+                        stack[top++] = node;
+                        node = node.left;
+                    }
+                } else {
+                    if (node.key > maxKey) {
+                        node = node.left;
+                    } else {
+                        stack[top++] = node;
+                        node = node.right;
+                    }
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<V> peek() {
+            return (Node<V>) stack[top - 1];
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (top == 0) return false;
+            return descending ? peek().key >= minKey : peek().key <= maxKey;
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Node<V> node = peek();
+            stack[--top] = null;
+            pushEdge(descending ? node.left : node.right);
+            return node.data;
+        }
+    }
+}
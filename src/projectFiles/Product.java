@@ -1,5 +1,9 @@
 package projectFiles;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
 /**
  * Product class - Phase II implementation with AVL Tree storage
  * Products are stored in AVL Tree keyed by productId for O(log n) operations.
@@ -11,18 +15,29 @@ public class Product {
     double price;
     int stock;
     LinkedList<Review> reviews;
+    // Phase II: Running sum of the ratings in reviews, so the average is O(1) (the count is reviews.size())
+    double ratingSum;
 
     // Phase II: AVL Tree for O(log n) operations - keyed by productId
-    static AVLTree<Integer, Product> productTree = new AVLTree<Integer, Product>();
+    static ConcurrentIntAVLTree<Product> productTree = new ConcurrentIntAVLTree<Product>();
     
+    // Phase II: Aggregates maintained per subtree of productTreeByPrice (each node holds one price's products)
+    static final Aggregator<LinkedList<Product>> STOCK_BY_PRICE = Aggregator.sum(Product::totalStock);
+    static final Aggregator<LinkedList<Product>> COUNT_BY_PRICE = Aggregator.sum(LinkedList::size);
+
     // Phase II: Secondary AVL Tree keyed by price for O(log n + k) range queries
     // Since multiple products can have the same price, we store a LinkedList of products per price
-    static AVLTree<Double, LinkedList<Product>> productTreeByPrice = new AVLTree<Double, LinkedList<Product>>();
+    static AVLTree<Double, LinkedList<Product>> productTreeByPrice =
+            new AVLTree<Double, LinkedList<Product>>(STOCK_BY_PRICE, COUNT_BY_PRICE);
     
     // Phase II: Secondary AVL Tree keyed by review count for O(log n + k) top reviewed queries
     // Since multiple products can have the same review count, we store a LinkedList of products per count
     static AVLTree<Integer, LinkedList<Product>> productTreeByReviewCount = new AVLTree<Integer, LinkedList<Product>>();
     
+    // Phase II: Secondary AVL Tree keyed by average rating for O(log n + N) top rated queries
+    // Products with the same average are keyed by productId, so moving one to a new average is O(log n)
+    static AVLTree<Double, IntAVLTree<Product>> productTreeByRating = new AVLTree<Double, IntAVLTree<Product>>();
+    
     // Phase I: LinkedList maintained for compatibility and iteration
     static LinkedList<Product> products = new LinkedList<Product>();
 
@@ -34,54 +49,192 @@ public class Product {
         this.reviews = new LinkedList<Review>();
     }
 
+    /**
+     * Add a review to this product, its running rating sum and its place in productTreeByRating - O(log n)
+     */
     public void addReview(Review review) {
-        if (reviews.empty()) {
-            reviews.insert(review);
-        } else {
-            reviews.findFirst();
-            while (!reviews.last()) {
-                reviews.findNext();
-            }
-            reviews.insert(review);
+        EntityLock.lock();
+        try {
+            double oldRating = getAverageRating();
+            appendReview(review);
+            reindexRating(oldRating);
+        } finally {
+            EntityLock.unlock();
         }
     }
 
+    /**
+     * Add a review to this product and its running rating sum only - O(1)
+     * (used by DataSnapshot, which then calls rebuildRatingIndex once)
+     */
+    void appendReview(Review review) {
+        reviews.append(review);
+        ratingSum += review.rating;
+    }
+
+    /**
+     * Apply an edit of one of this product's review ratings to the running sum and productTreeByRating - O(log n)
+     * Called by Review.editReview()
+     */
+    void changeRating(double oldReviewRating, double newReviewRating) {
+        double oldRating = getAverageRating();
+        ratingSum += newReviewRating - oldReviewRating;
+        reindexRating(oldRating);
+    }
+
+    /**
+     * Phase II: Average rating from the running sum - O(1) instead of walking the reviews
+     */
     public double getAverageRating() {
-        if (reviews.empty())
-            return 0;
-
-        double sum = 0;
-        int count = 0;
-
-        reviews.findFirst();
-        while (reviews.retrieve() != null) {
-            sum += reviews.retrieve().rating;
-            count++;
-            if (reviews.last()) break;
-            reviews.findNext();
+        int count = reviews.size();
+        return (count == 0) ? 0 : ratingSum / count;
+    }
+
+    /**
+     * Move this product from oldRating to its current average in productTreeByRating - O(log n)
+     */
+    private void reindexRating(double oldRating) {
+        // A product no longer in productTree (removed, or replaced under its ID) is not in the rating tree
+        if (productTree.search(productId) != this) return;
+        double newRating = getAverageRating();
+        if (newRating == oldRating) return;
+        unindexRating(this, oldRating);
+        indexRating(this, newRating);
+    }
+
+    /**
+     * Rebuild productTreeByRating from the products in productTree - O(n log n)
+     */
+    static void rebuildRatingIndex() {
+        productTreeByRating = new AVLTree<Double, IntAVLTree<Product>>();
+        for (Product p : productTree.snapshot()) {
+            indexRating(p, p.getAverageRating());
         }
+    }
 
-        return (count == 0) ? 0 : sum / count;
+    private static void indexRating(Product p, double rating) {
+        IntAVLTree<Product> productsWithRating = productTreeByRating.search(rating);
+        if (productsWithRating == null) {
+            productsWithRating = new IntAVLTree<Product>();
+            productTreeByRating.insert(rating, productsWithRating);
+        }
+        productsWithRating.insert(p.productId, p);
+    }
+
+    private static void unindexRating(Product p, double rating) {
+        IntAVLTree<Product> productsWithRating = productTreeByRating.search(rating);
+        if (productsWithRating != null) {
+            productsWithRating.delete(p.productId);
+            if (productsWithRating.isEmpty()) {
+                productTreeByRating.delete(rating);
+            }
+        }
     }
 
     public String toString() {
         return "[" + productId + "] " + name + " - $" + price + " | Stock: " + stock;
     }
 
+    /**
+     * Change stock by delta and refresh the stock aggregate of this product's price - O(log n)
+     */
+    public void adjustStock(int delta) {
+        EntityLock.lock();
+        try {
+            stock += delta;
+            productTreeByPrice.refresh(price);
+        } finally {
+            EntityLock.unlock();
+        }
+    }
+
+    /**
+     * Units in stock across a list of products (lift function for STOCK_BY_PRICE)
+     */
+    private static double totalStock(LinkedList<Product> list) {
+        double total = 0;
+        for (Product p : list) {
+            total += p.stock;
+        }
+        return total;
+    }
+
 
     /**
      * Phase II: Add product using AVL Tree - O(log n) time complexity
      */
     public static boolean addProduct(Product p) {
-        // Check for duplicate product ID using AVL search - O(log n)
-        if (searchById(p.productId) != null) {
-            System.out.println("Error: Product ID " + p.productId + " already exists. Cannot add duplicate product.");
-            return false;
+        EntityLock.lock();
+        try {
+            // Checked before logging, so a rejected add never becomes a log record - O(1) expected
+            if (productTree.contains(p.productId)) {
+                System.out.println("Error: Product ID " + p.productId + " already exists. Cannot add duplicate product.");
+                return false;
+            }
+            WriteAheadLog.logAddProduct(p);
+            productTree.insert(p.productId, p);
+            indexProduct(p);
+            return true;
+        } finally {
+            EntityLock.unlock();
         }
-        
-        // Insert into AVL Tree - O(log n)
-        productTree.insert(p.productId, p);
-        
+    }
+
+    /**
+     * Phase II: Add a batch of products read from a file, in file order.
+     * When the ID tree is empty it is built in O(n) with buildFromSorted: an ID-sorted batch is used
+     * as is, anything else is stable-sorted by ID first. A non-empty tree falls back to addProduct per row.
+     * Returns the products skipped because their ID was already taken (the first occurrence wins).
+     */
+    public static LinkedList<Product> addProducts(Product[] batch, int count) {
+        EntityLock.lock();
+        try {
+            LinkedList<Product> skipped = new LinkedList<Product>();
+            if (!productTree.isEmpty()) {
+                for (int i = 0; i < count; i++) {
+                    if (!addProduct(batch[i])) skipped.append(batch[i]);
+                }
+                return skipped;
+            }
+
+            Product[] byId = Arrays.copyOf(batch, count);
+            boolean sorted = true;
+            for (int i = 1; i < count && sorted; i++) {
+                sorted = byId[i - 1].productId <= byId[i].productId;
+            }
+            if (!sorted) {
+                Arrays.sort(byId, Comparator.comparingInt((Product p) -> p.productId));
+            }
+
+            // Equal IDs are now adjacent, first occurrence first
+            int[] ids = new int[count];
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique > 0 && ids[unique - 1] == byId[i].productId) continue;
+                ids[unique] = byId[i].productId;
+                byId[unique++] = byId[i];
+            }
+            productTree.buildFromSorted(ids, byId, unique);
+
+            for (int i = 0; i < count; i++) {
+                Product p = batch[i];
+                if (productTree.search(p.productId) != p) {
+                    System.out.println("Error: Product ID " + p.productId + " already exists. Cannot add duplicate product.");
+                    skipped.append(p);
+                    continue;
+                }
+                indexProduct(p);
+            }
+            return skipped;
+        } finally {
+            EntityLock.unlock();
+        }
+    }
+
+    /**
+     * Add a product that is already in productTree to the price and review count trees and the list
+     */
+    private static void indexProduct(Product p) {
         // Insert into secondary AVL Tree keyed by price - O(log n)
         LinkedList<Product> productsAtPrice = productTreeByPrice.search(p.price);
         if (productsAtPrice == null) {
@@ -89,16 +242,9 @@ public class Product {
             productsAtPrice.insert(p);
             productTreeByPrice.insert(p.price, productsAtPrice);
         } else {
-            // Add to existing list at this price
-            if (productsAtPrice.empty()) {
-                productsAtPrice.insert(p);
-            } else {
-                productsAtPrice.findFirst();
-                while (!productsAtPrice.last()) {
-                    productsAtPrice.findNext();
-                }
-                productsAtPrice.insert(p);
-            }
+            // Add to existing list at this price and refresh that price's aggregates
+            productsAtPrice.append(p);
+            productTreeByPrice.refresh(p.price);
         }
         
         // Insert into secondary AVL Tree keyed by review count - O(log n)
@@ -110,35 +256,21 @@ public class Product {
             productTreeByReviewCount.insert(reviewCount, productsWithCount);
         } else {
             // Add to existing list at this count
-            if (productsWithCount.empty()) {
-                productsWithCount.insert(p);
-            } else {
-                productsWithCount.findFirst();
-                while (!productsWithCount.last()) {
-                    productsWithCount.findNext();
-                }
-                productsWithCount.insert(p);
-            }
+            productsWithCount.append(p);
         }
         
+        // Insert into secondary AVL Tree keyed by average rating - O(log n)
+        indexRating(p, p.getAverageRating());
+        
         // Also maintain LinkedList for backward compatibility
-        if (products.empty()) {
-            products.insert(p);
-        } else {
-            products.findFirst();
-            while (!products.last()) {
-                products.findNext();
-            }
-            products.insert(p);
-        }
-        return true;
+        products.append(p);
     }
 
     /**
-     * Phase II: Search product by ID using AVL Tree - O(log n) time complexity
+     * Phase II: Search product by ID using the hash ID index - O(1) expected time complexity
      */
     public static Product searchById(int id) {
-        // Use AVL Tree for O(log n) search
+        // Answered by the IntHashIndex kept beside the ID tree, not by a tree descent
         return productTree.search(id);
     }
     
@@ -161,77 +293,78 @@ public class Product {
         return null;
     }
 
+    /**
+     * Search by name (case-insensitive) - O(P) scan, split across cores with a parallel stream.
+     * findFirst() keeps the result identical to a sequential scan.
+     */
     public static Product searchByName(String name) {
         if (products.empty())
             return null;
 
-        products.findFirst();
-        while (products.retrieve() != null) {
-            Product p = products.retrieve();
-            if (p.name.equalsIgnoreCase(name))
-                return p;
-            if (products.last()) break;
-            products.findNext();
-        }
-        return null;
+        return products.parallelStream()
+                .filter(p -> p.name.equalsIgnoreCase(name))
+                .findFirst()
+                .orElse(null);
     }
 
     /**
      * Phase II: Update product using AVL Tree - O(log n) time complexity
      */
     public static void updateProduct(int id, double newPrice, int newStock) {
-        Product p = searchById(id); // O(log n)
-        if (p != null) {
-            double oldPrice = p.price;
-            
-            // If price changed, update the productTreeByPrice
-            if (oldPrice != newPrice) {
-                // Remove from old price list
-                LinkedList<Product> oldPriceList = productTreeByPrice.search(oldPrice);
-                if (oldPriceList != null && !oldPriceList.empty()) {
-                    oldPriceList.findFirst();
-                    while (oldPriceList.retrieve() != null) {
-                        if (oldPriceList.retrieve().productId == id) {
-                            oldPriceList.remove();
-                            break;
+        EntityLock.lock();
+        try {
+            Product p = searchById(id); // O(1)
+            if (p != null) {
+                WriteAheadLog.logUpdateProduct(id, newPrice, newStock);
+                double oldPrice = p.price;
+                
+                // If price changed, update the productTreeByPrice
+                if (oldPrice != newPrice) {
+                    // Remove from old price list
+                    LinkedList<Product> oldPriceList = productTreeByPrice.search(oldPrice);
+                    if (oldPriceList != null && !oldPriceList.empty()) {
+                        oldPriceList.findFirst();
+                        while (oldPriceList.retrieve() != null) {
+                            if (oldPriceList.retrieve().productId == id) {
+                                oldPriceList.remove();
+                                break;
+                            }
+                            if (oldPriceList.last()) break;
+                            oldPriceList.findNext();
+                        }
+                        // If list is now empty, remove the price entry from tree
+                        if (oldPriceList.empty()) {
+                            productTreeByPrice.delete(oldPrice);
+                        } else {
+                            productTreeByPrice.refresh(oldPrice);
                         }
-                        if (oldPriceList.last()) break;
-                        oldPriceList.findNext();
-                    }
-                    // If list is now empty, remove the price entry from tree
-                    if (oldPriceList.empty()) {
-                        productTreeByPrice.delete(oldPrice);
                     }
-                }
-                
-                // Update the product's price
-                p.price = newPrice;
-                
-                // Add to new price list
-                LinkedList<Product> newPriceList = productTreeByPrice.search(newPrice);
-                if (newPriceList == null) {
-                    newPriceList = new LinkedList<Product>();
-                    newPriceList.insert(p);
-                    productTreeByPrice.insert(newPrice, newPriceList);
-                } else {
-                    if (newPriceList.empty()) {
+                    
+                    // Update the product's price
+                    p.price = newPrice;
+                    
+                    // Add to new price list
+                    LinkedList<Product> newPriceList = productTreeByPrice.search(newPrice);
+                    if (newPriceList == null) {
+                        newPriceList = new LinkedList<Product>();
                         newPriceList.insert(p);
+                        productTreeByPrice.insert(newPrice, newPriceList);
                     } else {
-                        newPriceList.findFirst();
-                        while (!newPriceList.last()) {
-                            newPriceList.findNext();
-                        }
-                        newPriceList.insert(p);
+                        newPriceList.append(p);
                     }
+                } else {
+                    p.price = newPrice;
                 }
+                
+                p.stock = newStock;
+                // Stock (and possibly the price list) changed - refresh the aggregates for this price
+                productTreeByPrice.refresh(p.price);
+                System.out.println("Product updated successfully.");
             } else {
-                p.price = newPrice;
+                System.out.println("Product not found.");
             }
-            
-            p.stock = newStock;
-            System.out.println("Product updated successfully.");
-        } else {
-            System.out.println("Product not found.");
+        } finally {
+            EntityLock.unlock();
         }
     }
 
@@ -239,71 +372,82 @@ public class Product {
      * Phase II: Remove product using AVL Tree - O(log n) time complexity
      */
     public static void removeProduct(int id) {
-        if (productTree.isEmpty()) {
-            System.out.println("No products available.");
-            return;
-        }
+        EntityLock.lock();
+        try {
+            if (productTree.isEmpty()) {
+                System.out.println("No products available.");
+                return;
+            }
 
-        Product p = searchById(id);
-        if (p != null) {
-            double price = p.price;
-            
-            // Remove from AVL Tree
-            productTree.delete(id);
-            
-            // Remove from productTreeByPrice
-            LinkedList<Product> priceList = productTreeByPrice.search(price);
-            if (priceList != null && !priceList.empty()) {
-                priceList.findFirst();
-                while (priceList.retrieve() != null) {
-                    if (priceList.retrieve().productId == id) {
-                        priceList.remove();
-                        break;
+            Product p = searchById(id);
+            if (p != null) {
+                WriteAheadLog.logRemoveProduct(id);
+                double price = p.price;
+                
+                // Remove from AVL Tree
+                productTree.delete(id);
+                
+                // Remove from productTreeByPrice
+                LinkedList<Product> priceList = productTreeByPrice.search(price);
+                if (priceList != null && !priceList.empty()) {
+                    priceList.findFirst();
+                    while (priceList.retrieve() != null) {
+                        if (priceList.retrieve().productId == id) {
+                            priceList.remove();
+                            break;
+                        }
+                        if (priceList.last()) break;
+                        priceList.findNext();
                     }
-                    if (priceList.last()) break;
-                    priceList.findNext();
-                }
-                // If list is now empty, remove the price entry from tree
-                if (priceList.empty()) {
-                    productTreeByPrice.delete(price);
-                }
-            }
-            
-            // Remove from productTreeByReviewCount
-            int reviewCount = p.getReviewCount();
-            LinkedList<Product> countList = productTreeByReviewCount.search(reviewCount);
-            if (countList != null && !countList.empty()) {
-                countList.findFirst();
-                Product currentProduct = countList.retrieve();
-                while (currentProduct != null) {
-                    if (currentProduct.productId == id) {
-                        countList.remove();
-                        break;
+                    // If list is now empty, remove the price entry from tree
+                    if (priceList.empty()) {
+                        productTreeByPrice.delete(price);
+                    } else {
+                        productTreeByPrice.refresh(price);
                     }
-                    if (countList.last()) break;
-                    countList.findNext();
-                    currentProduct = countList.retrieve();
                 }
-                if (countList.empty()) {
-                    productTreeByReviewCount.delete(reviewCount);
+                
+                // Remove from productTreeByReviewCount
+                int reviewCount = p.getReviewCount();
+                LinkedList<Product> countList = productTreeByReviewCount.search(reviewCount);
+                if (countList != null && !countList.empty()) {
+                    countList.findFirst();
+                    Product currentProduct = countList.retrieve();
+                    while (currentProduct != null) {
+                        if (currentProduct.productId == id) {
+                            countList.remove();
+                            break;
+                        }
+                        if (countList.last()) break;
+                        countList.findNext();
+                        currentProduct = countList.retrieve();
+                    }
+                    if (countList.empty()) {
+                        productTreeByReviewCount.delete(reviewCount);
+                    }
                 }
-            }
-            
-            // Also remove from LinkedList
-            if (!products.empty()) {
-                products.findFirst();
-                while (products.retrieve() != null) {
-                    if (products.retrieve().productId == id) {
-                        products.remove();
-                        break;
+                
+                // Remove from productTreeByRating
+                unindexRating(p, p.getAverageRating());
+                
+                // Also remove from LinkedList
+                if (!products.empty()) {
+                    products.findFirst();
+                    while (products.retrieve() != null) {
+                        if (products.retrieve().productId == id) {
+                            products.remove();
+                            break;
+                        }
+                        if (products.last()) break;
+                        products.findNext();
                     }
-                    if (products.last()) break;
-                    products.findNext();
                 }
+                System.out.println("Product removed successfully.");
+            } else {
+                System.out.println("Product not found.");
             }
-            System.out.println("Product removed successfully.");
-        } else {
-            System.out.println("Product not found.");
+        } finally {
+            EntityLock.unlock();
         }
     }
 
@@ -311,13 +455,15 @@ public class Product {
      * Phase II: Print all products using in-order traversal (sorted by ID)
      */
     public static void printAll() {
-        if (productTree.isEmpty()) {
+        // Report on an O(1) snapshot: consistent output, and writers are never blocked
+        PersistentIntAVLTree<Product> snapshot = productTree.snapshot();
+        if (snapshot.isEmpty()) {
             System.out.println("No products available.");
             return;
         }
 
         // Use in-order traversal for sorted output
-        LinkedList<Product> sortedProducts = productTree.inOrderTraversal();
+        LinkedList<Product> sortedProducts = snapshot.inOrderTraversal();
         sortedProducts.findFirst();
         while (sortedProducts.retrieve() != null) {
             System.out.println(sortedProducts.retrieve());
@@ -331,24 +477,23 @@ public class Product {
      */
     public static void printOutOfStock() {
         System.out.println("Out of Stock Products:");
-        if (productTree.isEmpty()) {
+        // Report on an O(1) snapshot: consistent output, and writers are never blocked
+        PersistentIntAVLTree<Product> snapshot = productTree.snapshot();
+        if (snapshot.isEmpty()) {
             System.out.println("No products available.");
             return;
         }
         
-        LinkedList<Product> allProducts = productTree.inOrderTraversal();
-        allProducts.findFirst();
-        while (allProducts.retrieve() != null) {
-            Product p = allProducts.retrieve();
+        // Walk the tree directly with an in-order iterator - no intermediate list
+        for (Product p : snapshot) {
             if (p.stock <= 0)
                 System.out.println(p.name);
-            if (allProducts.last()) break;
-            allProducts.findNext();
         }
     }
 
     /**
-     * Phase II: Top 3 products by rating using AVL traversal
+     * Phase II: Top 3 products by rating using reverse in-order traversal of productTreeByRating
+     * Time Complexity: O(log n + 3) instead of rating every product and bubble sorting them in O(n²)
      */
     public static void topThreeProducts() {
         if (productTree.isEmpty()) {
@@ -356,122 +501,85 @@ public class Product {
             return;
         }
 
-        // Get all products using in-order traversal
-        LinkedList<Product> allProducts = productTree.inOrderTraversal();
-        
-        // Count products to determine array size
-        int count = 0;
-        allProducts.findFirst();
-        while (allProducts.retrieve() != null) {
-            count++;
-            if (allProducts.last()) break;
-            allProducts.findNext();
-        }
-
-        // Create arrays to store products and their ratings
-        Product[] productArray = new Product[count];
-        double[] ratingArray = new double[count];
-
-        // Collect all products and their ratings
-        int i = 0;
-        allProducts.findFirst();
-        while (allProducts.retrieve() != null) {
-            Product p = allProducts.retrieve();
-            productArray[i] = p;
-            ratingArray[i] = p.getAverageRating();
-            i++;
-            if (allProducts.last()) break;
-            allProducts.findNext();
-        }
-
-        // Bubble sort by rating (descending)
-        for (int k = 0; k < count - 1; k++) {
-            for (int j = 0; j < count - 1 - k; j++) {
-                if (ratingArray[j] < ratingArray[j + 1]) {
-                    // Swap ratings
-                    double tempRating = ratingArray[j];
-                    ratingArray[j] = ratingArray[j + 1];
-                    ratingArray[j + 1] = tempRating;
-                    // Swap products
-                    Product tempProduct = productArray[j];
-                    productArray[j] = productArray[j + 1];
-                    productArray[j + 1] = tempProduct;
-                }
-            }
-        }
-
-        // Display top 3 products
+        // Display top 3 products (equal ratings in ID order)
         System.out.println("Top 3 Products by Rating:");
-        for (int l = 0; l < 3 && l < count; l++) {
-            System.out.println((l + 1) + ". " + productArray[l].name + " - Rating: " + ratingArray[l]);
+        int rank = 1;
+        for (Product p : getTopRatedProducts(3)) {
+            System.out.println(rank + ". " + p.name + " - Rating: " + p.getAverageRating());
+            rank++;
         }
     }
 
+    /**
+     * Phase II: The n highest rated products, best first and equal averages by ID - O(log n + N)
+     */
+    public static LinkedList<Product> getTopRatedProducts(int n) {
+        return TopK.topProducts(TopK.Metric.RATING, n);
+    }
+
     /**
      * Phase II: Range query by price - returns products within [minPrice, maxPrice]
      * Uses secondary AVL tree keyed by price for O(log n + k) time complexity,
      * where k is the number of products in the price range.
      */
     public static LinkedList<Product> getProductsInPriceRange(double minPrice, double maxPrice) {
+        return getProductsInPriceRange(minPrice, maxPrice, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Phase II: First page of a price range query - at most limit products, cheapest first.
+     * Stops the range cursor as soon as the page is full - O(log n + limit).
+     */
+    public static LinkedList<Product> getProductsInPriceRange(double minPrice, double maxPrice, int limit) {
         LinkedList<Product> result = new LinkedList<Product>();
-        
-        if (productTreeByPrice.isEmpty()) {
-            return result;
-        }
 
-        // Use range query on the secondary AVL tree keyed by price - O(log n + k)
-        LinkedList<LinkedList<Product>> priceLists = productTreeByPrice.rangeQuery(minPrice, maxPrice);
-        
-        if (priceLists.empty()) {
-            return result;
+        Iterator<Product> it = iterateProductsInPriceRange(minPrice, maxPrice, false);
+        while (result.size() < limit && it.hasNext()) {
+            result.append(it.next());
         }
-        
-        // Flatten the lists of products at each price point into a single result list
-        priceLists.findFirst();
-        while (priceLists.retrieve() != null) {
-            LinkedList<Product> productsAtPrice = priceLists.retrieve();
-            if (!productsAtPrice.empty()) {
-                productsAtPrice.findFirst();
-                while (productsAtPrice.retrieve() != null) {
-                    Product p = productsAtPrice.retrieve();
-                    if (result.empty()) {
-                        result.insert(p);
-                    } else {
-                        result.findFirst();
-                        while (!result.last()) {
-                            result.findNext();
-                        }
-                        result.insert(p);
-                    }
-                    if (productsAtPrice.last()) break;
-                    productsAtPrice.findNext();
-                }
-            }
-            if (priceLists.last()) break;
-            priceLists.findNext();
-        }
-        
         return result;
     }
 
+    /**
+     * Phase II: Lazy price range cursor over the secondary AVL tree keyed by price.
+     * Products are produced on demand (most expensive first when descending) using
+     * O(log n) memory, so callers can stream or stop early without materializing the range.
+     */
+    public static Iterator<Product> iterateProductsInPriceRange(double minPrice, double maxPrice, boolean descending) {
+        return LinkedList.concat(productTreeByPrice.rangeIterator(minPrice, maxPrice, descending));
+    }
+
+    /**
+     * Phase II: Total units in stock for products priced in [minPrice, maxPrice] - O(log n)
+     * Read from the per-subtree stock aggregate, without visiting the products
+     */
+    public static int getStockInPriceRange(double minPrice, double maxPrice) {
+        return (int) productTreeByPrice.rangeAggregate(STOCK_BY_PRICE, minPrice, maxPrice);
+    }
+
+    /**
+     * Phase II: Number of products priced in [minPrice, maxPrice] - O(log n)
+     */
+    public static int countProductsInPriceRange(double minPrice, double maxPrice) {
+        return (int) productTreeByPrice.rangeAggregate(COUNT_BY_PRICE, minPrice, maxPrice);
+    }
+
     /**
      * Phase II: Print products in a price range
+     * Streams from the lazy range cursor instead of building a result list first
      */
     public static void printProductsInPriceRange(double minPrice, double maxPrice) {
-        LinkedList<Product> productsInRange = getProductsInPriceRange(minPrice, maxPrice);
+        Iterator<Product> productsInRange = iterateProductsInPriceRange(minPrice, maxPrice, false);
         
         System.out.println("Products with price between $" + minPrice + " and $" + maxPrice + ":");
         
-        if (productsInRange.empty()) {
+        if (!productsInRange.hasNext()) {
             System.out.println("No products found in this price range.");
             return;
         }
 
-        productsInRange.findFirst();
-        while (productsInRange.retrieve() != null) {
-            System.out.println(productsInRange.retrieve());
-            if (productsInRange.last()) break;
-            productsInRange.findNext();
+        while (productsInRange.hasNext()) {
+            System.out.println(productsInRange.next());
         }
     }
 
@@ -482,6 +590,14 @@ public class Product {
         return productTree.inOrderTraversal();
     }
 
+    /**
+     * Phase II: One page of products sorted by ID (pageIndex is 0-based)
+     * select() jumps straight to the first product of the page - O(log n + pageSize)
+     */
+    public static LinkedList<Product> getProductsPage(int pageIndex, int pageSize) {
+        return productTree.selectRange(pageIndex * pageSize, pageSize);
+    }
+
     /**
      * Phase II: Get the number of products - O(1)
      */
@@ -493,16 +609,8 @@ public class Product {
      * Get review count for this product
      */
     public int getReviewCount() {
-        if (reviews.empty()) return 0;
-        
-        int count = 0;
-        reviews.findFirst();
-        while (reviews.retrieve() != null) {
-            count++;
-            if (reviews.last()) break;
-            reviews.findNext();
-        }
-        return count;
+        // O(1) - LinkedList tracks its own size
+        return reviews.size();
     }
 
     /**
@@ -510,47 +618,54 @@ public class Product {
      * Called by Customer.addReviewToProduct() - O(log n)
      */
     public static void updateProductReviewCount(int productId, int oldCount, int newCount) {
-        Product p = searchById(productId);
-        if (p == null) return;
-        
-        // Remove from old count list
-        LinkedList<Product> oldCountList = productTreeByReviewCount.search(oldCount);
-        if (oldCountList != null && !oldCountList.empty()) {
-            oldCountList.findFirst();
-            Product currentProduct = oldCountList.retrieve();
-            while (currentProduct != null) {
-                if (currentProduct.productId == productId) {
-                    oldCountList.remove();
-                    break;
+        EntityLock.lock();
+        try {
+            Product p = searchById(productId);
+            if (p == null) return;
+            
+            // Remove from old count list
+            LinkedList<Product> oldCountList = productTreeByReviewCount.search(oldCount);
+            if (oldCountList != null && !oldCountList.empty()) {
+                oldCountList.findFirst();
+                Product currentProduct = oldCountList.retrieve();
+                while (currentProduct != null) {
+                    if (currentProduct.productId == productId) {
+                        oldCountList.remove();
+                        break;
+                    }
+                    if (oldCountList.last()) break;
+                    oldCountList.findNext();
+                    currentProduct = oldCountList.retrieve();
+                }
+                if (oldCountList.empty()) {
+                    productTreeByReviewCount.delete(oldCount);
                 }
-                if (oldCountList.last()) break;
-                oldCountList.findNext();
-                currentProduct = oldCountList.retrieve();
-            }
-            if (oldCountList.empty()) {
-                productTreeByReviewCount.delete(oldCount);
             }
-        }
-        
-        // Add to new count list
-        LinkedList<Product> newCountList = productTreeByReviewCount.search(newCount);
-        if (newCountList == null) {
-            newCountList = new LinkedList<Product>();
-            newCountList.insert(p);
-            productTreeByReviewCount.insert(newCount, newCountList);
-        } else {
-            if (newCountList.empty()) {
+            
+            // Add to new count list
+            LinkedList<Product> newCountList = productTreeByReviewCount.search(newCount);
+            if (newCountList == null) {
+                newCountList = new LinkedList<Product>();
                 newCountList.insert(p);
+                productTreeByReviewCount.insert(newCount, newCountList);
             } else {
-                newCountList.findFirst();
-                while (!newCountList.last()) {
-                    newCountList.findNext();
-                }
-                newCountList.insert(p);
+                newCountList.append(p);
             }
+        } finally {
+            EntityLock.unlock();
         }
     }
 
+    /**
+     * Replace the review count tree with saved buckets: counts strictly increasing, each bucket
+     * holding its products in their saved order - O(n) (used by DataSnapshot)
+     */
+    static void restoreReviewCountIndex(Integer[] counts, LinkedList<Product>[] buckets, int n) {
+        AVLTree<Integer, LinkedList<Product>> restored = new AVLTree<Integer, LinkedList<Product>>();
+        restored.buildFromSorted(counts, buckets, n);
+        productTreeByReviewCount = restored;
+    }
+
     /**
      * Phase II: Top 3 most reviewed products using AVL tree with reverse in-order traversal
      * Time Complexity: O(log n + 3) ≈ O(log n) - much better than O(n²) bubble sort!
@@ -561,27 +676,12 @@ public class Product {
             return;
         }
 
-        // Use reverse in-order traversal to get products in descending order of review count
-        LinkedList<LinkedList<Product>> sortedByCount = productTreeByReviewCount.reverseInOrderTraversal();
-        
+        // Walks productTreeByReviewCount from the highest count down and stops after 3 products
         System.out.println("Top 3 Most Reviewed Products:");
         int rank = 1;
-        
-        sortedByCount.findFirst();
-        while (sortedByCount.retrieve() != null && rank <= 3) {
-            LinkedList<Product> productsWithSameCount = sortedByCount.retrieve();
-            if (!productsWithSameCount.empty()) {
-                productsWithSameCount.findFirst();
-                while (productsWithSameCount.retrieve() != null && rank <= 3) {
-                    Product p = productsWithSameCount.retrieve();
-                    System.out.println(rank + ". " + p.name + " - Reviews: " + p.getReviewCount());
-                    rank++;
-                    if (productsWithSameCount.last()) break;
-                    productsWithSameCount.findNext();
-                }
-            }
-            if (sortedByCount.last()) break;
-            sortedByCount.findNext();
+        for (Product p : TopK.topProducts(TopK.Metric.REVIEW_COUNT, 3)) {
+            System.out.println(rank + ". " + p.name + " - Reviews: " + p.getReviewCount());
+            rank++;
         }
         
         if (rank == 1) {
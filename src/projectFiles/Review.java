@@ -1,5 +1,8 @@
 package projectFiles;
 
+import java.util.Arrays;
+import java.util.Comparator;
+
 /**
  * Review class - Phase II implementation with AVL Tree storage
  * Reviews are stored in AVL Tree keyed by reviewId for O(log n) operations.
@@ -12,12 +15,17 @@ public class Review {
     double rating;
 
     // Phase II: AVL Tree keyed by reviewId for O(log n) operations
-    static AVLTree<Integer, Review> reviewTree = new AVLTree<Integer, Review>();
+    static ConcurrentIntAVLTree<Review> reviewTree = new ConcurrentIntAVLTree<Review>();
     
     // Phase II: Secondary AVL Tree keyed by productId for O(log n) lookup of reviews by product
     // Since multiple reviews can exist for the same product, we store a LinkedList of reviews per productId
     static AVLTree<Integer, LinkedList<Review>> reviewTreeByProductId = new AVLTree<Integer, LinkedList<Review>>();
     
+    // Phase II: Each customer's current reviews keyed by reviewId (customerId -> reviewId -> review)
+    // Holds exactly the reviews in reviewTree, so per-customer queries need no scan of all reviews
+    // One array-backed tree over all customers, each entry a small object-backed IntAVLTree
+    static ArrayIntAVLTree<IntAVLTree<Review>> reviewTreeByCustomerId = new ArrayIntAVLTree<IntAVLTree<Review>>();
+    
     // Phase I: LinkedList maintained for compatibility
     static LinkedList<Review> allReviews = new LinkedList<Review>();
     
@@ -50,14 +58,81 @@ public class Review {
      * Phase II: Add review using AVL Tree - O(log n) time complexity
      */
     public static void addReview(Review r) {
+        EntityLock.lock();
+        try {
+            // A review with the same ID is replaced in reviewTree, so it leaves its customer's index too
+            Review replaced = reviewTree.search(r.reviewId);
+            // Insert into AVL Tree - O(log n)
+            reviewTree.insert(r.reviewId, r);
+            if (replaced != null) {
+                unindexCustomerReview(replaced);
+            }
+            indexCustomerReview(r);
+            indexReview(r);
+        } finally {
+            EntityLock.unlock();
+        }
+    }
+
+    /**
+     * Phase II: Add a batch of reviews, in batch order.
+     * When the ID tree is empty it is built in O(n) with buildFromSorted: an ID-sorted batch is used
+     * as is, anything else is stable-sorted by ID first. A non-empty tree falls back to addReview per row.
+     * As with addReview, a repeated ID keeps the last review in the ID tree.
+     * Like addReview, this does not touch Product.reviews or the review count tree.
+     */
+    public static void addReviews(Review[] batch, int count) {
+        EntityLock.lock();
+        try {
+            if (!reviewTree.isEmpty()) {
+                for (int i = 0; i < count; i++) {
+                    addReview(batch[i]);
+                }
+                return;
+            }
+
+            Review[] byId = Arrays.copyOf(batch, count);
+            boolean sorted = true;
+            for (int i = 1; i < count && sorted; i++) {
+                sorted = byId[i - 1].reviewId <= byId[i].reviewId;
+            }
+            if (!sorted) {
+                Arrays.sort(byId, Comparator.comparingInt((Review r) -> r.reviewId));
+            }
+
+            // Equal IDs are now adjacent in batch order; the later one replaces the earlier
+            int[] ids = new int[count];
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique > 0 && ids[unique - 1] == byId[i].reviewId) {
+                    byId[unique - 1] = byId[i];
+                    continue;
+                }
+                ids[unique] = byId[i].reviewId;
+                byId[unique++] = byId[i];
+            }
+            reviewTree.buildFromSorted(ids, byId, unique);
+            for (int i = 0; i < unique; i++) {
+                indexCustomerReview(byId[i]);
+            }
+
+            for (int i = 0; i < count; i++) {
+                indexReview(batch[i]);
+            }
+        } finally {
+            EntityLock.unlock();
+        }
+    }
+
+    /**
+     * Add a review that is already in reviewTree to the product ID tree and the list, and track maxReviewId
+     */
+    private static void indexReview(Review r) {
         // Update maxReviewId if necessary
         if (r.reviewId > maxReviewId) {
             maxReviewId = r.reviewId;
         }
         
-        // Insert into AVL Tree - O(log n)
-        reviewTree.insert(r.reviewId, r);
-        
         // Insert into secondary AVL Tree keyed by productId - O(log n)
         int productId = r.product.productId;
         LinkedList<Review> reviewsForProduct = reviewTreeByProductId.search(productId);
@@ -67,217 +142,193 @@ public class Review {
             reviewTreeByProductId.insert(productId, reviewsForProduct);
         } else {
             // Add to existing list for this product
-            if (reviewsForProduct.empty()) {
-                reviewsForProduct.insert(r);
-            } else {
-                reviewsForProduct.findFirst();
-                while (!reviewsForProduct.last()) {
-                    reviewsForProduct.findNext();
-                }
-                reviewsForProduct.insert(r);
-            }
+            reviewsForProduct.append(r);
         }
         
         // Also maintain LinkedList for backward compatibility
-        if (allReviews.empty()) {
-            allReviews.insert(r);
-        } else {
-            allReviews.findFirst();
-            while (!allReviews.last()) {
-                allReviews.findNext();
+        allReviews.append(r);
+    }
+
+    /**
+     * Add a review to its customer's index (replacing a same-ID review of that customer) - O(log C + log k)
+     */
+    private static void indexCustomerReview(Review r) {
+        IntAVLTree<Review> customerReviews = reviewTreeByCustomerId.search(r.customer.customerId);
+        if (customerReviews == null) {
+            customerReviews = new IntAVLTree<Review>();
+            reviewTreeByCustomerId.insert(r.customer.customerId, customerReviews);
+        }
+        customerReviews.insert(r.reviewId, r);
+    }
+
+    private static void unindexCustomerReview(Review r) {
+        IntAVLTree<Review> customerReviews = reviewTreeByCustomerId.search(r.customer.customerId);
+        if (customerReviews != null) {
+            customerReviews.delete(r.reviewId);
+            if (customerReviews.isEmpty()) {
+                reviewTreeByCustomerId.delete(r.customer.customerId);
             }
-            allReviews.insert(r);
         }
     }
 
     /**
-     * Phase II: Search review by ID using AVL Tree - O(log n)
+     * Phase II: Search review by ID using the hash ID index - O(1) expected
      */
     public static Review searchById(int id) {
         return reviewTree.search(id);
     }
 
     /**
-     * Phase II: Edit review using AVL Tree - O(log n) search
+     * Phase II: Edit review - O(1) expected lookup through the hash ID index
      */
     public static void editReview(int reviewId, double newRating, String newComment) {
-        Review r = searchById(reviewId); // O(log n)
-        if (r != null) {
-            r.rating = newRating;
-            r.comment = newComment;
-            System.out.println("Review updated successfully.");
-        } else {
-            System.out.println("Review not found.");
+        EntityLock.lock();
+        try {
+            Review r = searchById(reviewId); // O(1)
+            if (r != null) {
+                WriteAheadLog.logEditReview(reviewId, newRating, newComment);
+                // Keep the product's running rating sum and its place in the rating tree current - O(log n)
+                r.product.changeRating(r.rating, newRating);
+                r.rating = newRating;
+                r.comment = newComment;
+                System.out.println("Review updated successfully.");
+            } else {
+                System.out.println("Review not found.");
+            }
+        } finally {
+            EntityLock.unlock();
         }
     }
 
 
+    /**
+     * Phase II: Get all reviews by a customer, sorted by ID - O(log C + k)
+     * Read from the per-customer index instead of filtering every review
+     */
     public static LinkedList<Review> getReviewsByCustomer(int customerId) {
-        LinkedList<Review> customerReviews = new LinkedList<Review>();
-        
-        if (reviewTree.isEmpty()) {
-            return customerReviews;
+        IntAVLTree<Review> customerReviews = reviewTreeByCustomerId.search(customerId);
+        if (customerReviews == null) {
+            return new LinkedList<Review>();
         }
+        return customerReviews.inOrderTraversal();
+    }
 
-        // Traverse all reviews using in-order traversal
-        LinkedList<Review> allReviewsSorted = reviewTree.inOrderTraversal();
-        allReviewsSorted.findFirst();
-        while (allReviewsSorted.retrieve() != null) {
-            Review r = allReviewsSorted.retrieve();
-            if (r.customer.customerId == customerId) {
-                if (customerReviews.empty()) {
-                    customerReviews.insert(r);
-                } else {
-                    customerReviews.findFirst();
-                    while (!customerReviews.last()) {
-                        customerReviews.findNext();
-                    }
-                    customerReviews.insert(r);
-                }
-            }
-            if (allReviewsSorted.last()) break;
-            allReviewsSorted.findNext();
-        }
-        
-        return customerReviews;
+    /**
+     * Phase II: Number of reviews by a customer - O(log C)
+     */
+    public static int countReviewsByCustomer(int customerId) {
+        IntAVLTree<Review> customerReviews = reviewTreeByCustomerId.search(customerId);
+        return customerReviews == null ? 0 : customerReviews.size();
     }
 
 
+    /**
+     * Phase II: Products both customers reviewed whose average rating is above 4.0, in the order of
+     * customer 1's reviews - O(log C + k log k) to build the two product ID sets, then a SortedIntSet
+     * intersection (merge, galloping or bitmap AND) instead of nested list scans
+     */
     public static LinkedList<Product> getCommonHighRatedProducts(int customerId1, int customerId2) {
         LinkedList<Product> result = new LinkedList<Product>();
+        int[] common = productsReviewedBy(customerId1).intersect(productsReviewedBy(customerId2)).toArray();
+        if (common.length == 0) {
+            return result;
+        }
 
-        // Get products reviewed by customer 1
-        LinkedList<Integer> products1 = new LinkedList<Integer>();
-        LinkedList<Review> allReviewsSorted = reviewTree.inOrderTraversal();
-        if (!allReviewsSorted.empty()) {
-            allReviewsSorted.findFirst();
-            while (allReviewsSorted.retrieve() != null) {
-                Review r = allReviewsSorted.retrieve();
-                if (r.customer.customerId == customerId1) {
-                    int productId = r.product.productId;
-                    // Check if product already in list
-                    boolean found = false;
-                    if (!products1.empty()) {
-                        products1.findFirst();
-                        while (products1.retrieve() != null) {
-                            if (products1.retrieve() == productId) {
-                                found = true;
-                                break;
-                            }
-                            if (products1.last()) break;
-                            products1.findNext();
-                        }
-                    }
-                    if (!found) {
-                        if (products1.empty()) {
-                            products1.insert(productId);
-                        } else {
-                            products1.findFirst();
-                            while (!products1.last()) {
-                                products1.findNext();
-                            }
-                            products1.insert(productId);
-                        }
-                    }
-                }
-                if (allReviewsSorted.last()) break;
-                allReviewsSorted.findNext();
+        // Walk customer 1's reviews to keep their order, adding each common product once
+        boolean[] added = new boolean[common.length];
+        for (Review r : reviewTreeByCustomerId.search(customerId1)) {
+            int index = Arrays.binarySearch(common, r.product.productId);
+            if (index < 0 || added[index]) continue;
+            added[index] = true;
+            Product p = Product.searchById(common[index]); // O(1)
+            if (p != null && p.getAverageRating() > 4.0) {
+                result.append(p);
             }
         }
+        return result;
+    }
 
-        // Get products reviewed by customer 2
-        LinkedList<Integer> products2 = new LinkedList<Integer>();
-        allReviewsSorted = reviewTree.inOrderTraversal();
-        if (!allReviewsSorted.empty()) {
-            allReviewsSorted.findFirst();
-            while (allReviewsSorted.retrieve() != null) {
-                Review r = allReviewsSorted.retrieve();
-                if (r.customer.customerId == customerId2) {
-                    int productId = r.product.productId;
-                    // Check if product already in list
-                    boolean found = false;
-                    if (!products2.empty()) {
-                        products2.findFirst();
-                        while (products2.retrieve() != null) {
-                            if (products2.retrieve() == productId) {
-                                found = true;
-                                break;
-                            }
-                            if (products2.last()) break;
-                            products2.findNext();
-                        }
-                    }
-                    if (!found) {
-                        if (products2.empty()) {
-                            products2.insert(productId);
-                        } else {
-                            products2.findFirst();
-                            while (!products2.last()) {
-                                products2.findNext();
-                            }
-                            products2.insert(productId);
-                        }
-                    }
-                }
-                if (allReviewsSorted.last()) break;
-                allReviewsSorted.findNext();
+    /**
+     * Phase II: Products every given customer reviewed whose average rating is above minRating, sorted by ID.
+     * Intersects the customers' product ID sets smallest first and stops early once nothing is left,
+     * so only the surviving products are rated
+     */
+    public static LinkedList<Product> getCommonHighRatedProducts(int[] customerIds, double minRating) {
+        SortedIntSet[] sets = new SortedIntSet[customerIds.length];
+        for (int i = 0; i < customerIds.length; i++) {
+            sets[i] = productsReviewedBy(customerIds[i]);
+        }
+        LinkedList<Product> result = new LinkedList<Product>();
+        if (sets.length == 0) {
+            return result;
+        }
+        for (int productId : SortedIntSet.intersectAll(sets).toArray()) {
+            Product p = Product.searchById(productId);
+            if (p != null && p.getAverageRating() > minRating) {
+                result.append(p);
             }
         }
+        return result;
+    }
 
-        // Find common products with rating > 4.0
-        if (!products1.empty()) {
-            products1.findFirst();
-            while (products1.retrieve() != null) {
-                int productId = products1.retrieve();
-                
-                // Check if this product is also in products2
-                boolean inProducts2 = false;
-                if (!products2.empty()) {
-                    products2.findFirst();
-                    while (products2.retrieve() != null) {
-                        if (products2.retrieve() == productId) {
-                            inProducts2 = true;
-                            break;
-                        }
-                        if (products2.last()) break;
-                        products2.findNext();
-                    }
-                }
-
-                // If common, check if average rating > 4.0 using AVL search
-                if (inProducts2) {
-                    Product p = Product.searchById(productId); // O(log n)
-                    if (p != null && p.getAverageRating() > 4.0) {
-                        if (result.empty()) {
-                            result.insert(p);
-                        } else {
-                            result.findFirst();
-                            while (!result.last()) {
-                                result.findNext();
-                            }
-                            result.insert(p);
-                        }
-                    }
-                }
+    /**
+     * Phase II: getCommonHighRatedProducts for many customer pairs at once, one result list per pair (sorted by ID).
+     * The set of products rated above minRating is built once - O(P + R) - and each customer's
+     * product set once, so every pair costs only the intersection of three sets
+     */
+    public static LinkedList<LinkedList<Product>> getCommonHighRatedProductsForPairs(int[][] customerPairs, double minRating) {
+        PersistentIntAVLTree<Product> products = Product.productTree.snapshot();
+        int[] highRated = new int[products.size()];
+        int count = 0;
+        for (Product p : products) {
+            if (p.getAverageRating() > minRating) {
+                highRated[count++] = p.productId;
+            }
+        }
+        SortedIntSet highRatedSet = SortedIntSet.fromSorted(highRated, count);
 
-                if (products1.last()) break;
-                products1.findNext();
+        java.util.HashMap<Integer, SortedIntSet> setByCustomer = new java.util.HashMap<>();
+        LinkedList<LinkedList<Product>> results = new LinkedList<LinkedList<Product>>();
+        for (int[] pair : customerPairs) {
+            SortedIntSet set1 = setByCustomer.computeIfAbsent(pair[0], Review::productsReviewedBy);
+            SortedIntSet set2 = setByCustomer.computeIfAbsent(pair[1], Review::productsReviewedBy);
+            LinkedList<Product> result = new LinkedList<Product>();
+            for (int productId : SortedIntSet.intersectAll(set1, set2, highRatedSet).toArray()) {
+                result.append(Product.searchById(productId));
             }
+            results.append(result);
         }
+        return results;
+    }
 
-        return result;
+    /**
+     * Phase II: IDs of the products a customer reviewed - O(log C + k log k)
+     */
+    static SortedIntSet productsReviewedBy(int customerId) {
+        IntAVLTree<Review> customerReviews = reviewTreeByCustomerId.search(customerId);
+        if (customerReviews == null) {
+            return SortedIntSet.of(new int[0], 0);
+        }
+        int[] productIds = new int[customerReviews.size()];
+        int count = 0;
+        for (Review r : customerReviews) {
+            productIds[count++] = r.product.productId;
+        }
+        return SortedIntSet.of(productIds, count);
     }
 
     /**
      * Phase II: Print all reviews using in-order traversal
      */
     public static void printAll() {
-        if (reviewTree.isEmpty()) {
+        // Report on an O(1) snapshot: consistent output, and writers are never blocked
+        PersistentIntAVLTree<Review> snapshot = reviewTree.snapshot();
+        if (snapshot.isEmpty()) {
             System.out.println("No reviews available.");
             return;
         }
 
-        LinkedList<Review> sortedReviews = reviewTree.inOrderTraversal();
+        LinkedList<Review> sortedReviews = snapshot.inOrderTraversal();
         sortedReviews.findFirst();
         while (sortedReviews.retrieve() != null) {
             System.out.println(sortedReviews.retrieve());
@@ -292,7 +343,7 @@ public class Review {
      * where n is the number of unique products reviewed.
      */
     public static void printCustomersWhoReviewedProduct(int productId) {
-        Product product = Product.searchById(productId); // O(log n)
+        Product product = Product.searchById(productId); // O(1)
         if (product == null) {
             System.out.println("Product not found.");
             return;
@@ -306,14 +357,8 @@ public class Review {
             return;
         }
 
-        // Count reviews and create arrays for sorting
-        int count = 0;
-        productReviews.findFirst();
-        while (productReviews.retrieve() != null) {
-            count++;
-            if (productReviews.last()) break;
-            productReviews.findNext();
-        }
+        // Create arrays for sorting, sized by the list's O(1) size counter
+        int count = productReviews.size();
 
         Review[] reviewArray = new Review[count];
         int i = 0;
@@ -6,7 +6,12 @@ import java.io.IOException;
 
 public class SimpleCSVReader {
 
+    /**
+     * Phase II: Rows are collected first and handed to Product.addProducts, which builds the ID tree
+     * in O(n) (sorting by ID first only if the file is not already in ID order)
+     */
     public static void loadProducts(String filePath) {
+        java.util.List<Product> batch = new java.util.ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
             String line;
             // Skip header line
@@ -21,9 +26,7 @@ public class SimpleCSVReader {
                     double price = Double.parseDouble(fields[2].trim());
                     int stock = Integer.parseInt(fields[3].trim());
 
-                    if (!Product.addProduct(new Product(id, name, price, stock))) {
-                        System.out.println("Warning: Skipping duplicate product ID " + id + " in CSV file.");
-                    }
+                    batch.add(new Product(id, name, price, stock));
                 } catch (NumberFormatException e) {
                     System.out.println("Error parsing product line: " + line);
                 }
@@ -31,6 +34,10 @@ public class SimpleCSVReader {
         } catch (IOException e) {
             System.out.println("Error loading products: " + e.getMessage());
         }
+
+        for (Product p : Product.addProducts(batch.toArray(new Product[0]), batch.size())) {
+            System.out.println("Warning: Skipping duplicate product ID " + p.productId + " in CSV file.");
+        }
     }
 
     public static void loadCustomers(String filePath) {
@@ -59,7 +66,20 @@ public class SimpleCSVReader {
         }
     }
 
+    /**
+     * Phase II: Orders are collected first and handed to Order.addOrders, which builds the ID tree
+     * in O(n) (sorting by ID first only if the file is not already in ID order)
+     */
     public static void loadOrders(String filePath) {
+        java.util.List<Order> batch = readOrders(filePath);
+        Order.addOrders(batch.toArray(new Order[0]), batch.size());
+    }
+
+    /**
+     * Parse orders.csv and resolve customers/products without adding anything
+     */
+    static java.util.List<Order> readOrders(String filePath) {
+        java.util.List<Order> batch = new java.util.ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
             String line;
             // Skip header line
@@ -106,15 +126,7 @@ public class SimpleCSVReader {
                             
                             if (p != null) {
                                 // Add product to list
-                                if (productList.empty()) {
-                                    productList.insert(p);
-                                } else {
-                                    productList.findFirst();
-                                    while (!productList.last()) {
-                                        productList.findNext();
-                                    }
-                                    productList.insert(p);
-                                }
+                                productList.append(p);
                             } else {
                                 System.out.println("Product not found for order: " + orderId + ", productId: " + productId);
                             }
@@ -125,8 +137,7 @@ public class SimpleCSVReader {
                     
                     // Create one order with all products
                     if (!productList.empty()) {
-                        Order newOrder = new Order(orderId, c, productList, totalPrice, orderDate, status);
-                        Order.addOrder(newOrder);
+                        batch.add(new Order(orderId, c, productList, totalPrice, orderDate, status));
                     }
                     
                 } catch (NumberFormatException e) {
@@ -136,6 +147,7 @@ public class SimpleCSVReader {
         } catch (IOException e) {
             System.out.println("Error loading orders: " + e.getMessage());
         }
+        return batch;
     }
 
     public static void loadReviews(String filePath) {
@@ -201,7 +213,7 @@ public class SimpleCSVReader {
     }
     
     // Helper method to parse CSV line handling quoted fields
-    private static String[] parseCSVLine(String line) {
+    static String[] parseCSVLine(String line) {
         java.util.List<String> fields = new java.util.ArrayList<>();
         boolean inQuotes = false;
         StringBuilder currentField = new StringBuilder();
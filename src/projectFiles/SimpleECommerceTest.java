@@ -6,16 +6,26 @@ import java.util.Scanner;
  * All data structures use AVL Trees for O(log n) operations.
  */
 public class SimpleECommerceTest {
+    static final String SNAPSHOT_FILE = "ecommerce.snapshot";
+    static final String WAL_FILE = "ecommerce.wal";
+    // Write-ahead log group commit: fsync after this many records, or once the oldest is this old (0 = at once)
+    static final int WAL_GROUP_SIZE = 64;
+    static final long WAL_GROUP_MILLIS = 0;
+    // Each change returns only once it is on disk
+    static final boolean WAL_WAIT_FOR_SYNC = true;
+    // Loaded in full: a copy newer than the snapshot makes it stale
+    static final String[] RELOADED_CSV_FILES = {"products.csv", "customers.csv"};
+    // Only appended to: the snapshot records how many bytes of each it holds, and a CSVFollower adds the rest
+    static final String[] FOLLOWED_CSV_FILES = {"orders.csv", "reviews.csv"};
+
     public static void main(String[] args) {
         Scanner scan = new Scanner(System.in);
         
         System.out.println("=== E-Commerce System Phase II ===");
         System.out.println("Using AVL Trees for O(log n) operations\n");
         
-        SimpleCSVReader.loadProducts("products.csv");
-        SimpleCSVReader.loadCustomers("customers.csv");
-        SimpleCSVReader.loadOrders("orders.csv");
-        SimpleCSVReader.loadReviews("reviews.csv");
+        long[] followed = new long[FOLLOWED_CSV_FILES.length];
+        WriteAheadLog wal = loadData(followed);
         
         System.out.println("\nData loaded successfully:");
         System.out.println("- Products: " + Product.getProductCount());
@@ -23,7 +33,18 @@ public class SimpleECommerceTest {
         System.out.println("- Orders: " + Order.getOrderCount());
         System.out.println("- Reviews: " + Review.getReviewCount());
 
+        // Phase II: pick up orders and reviews appended to the CSV files since the loaded data was read
+        CSVFollower orderFollower = CSVFollower.orders(FOLLOWED_CSV_FILES[0], followed[0]);
+        CSVFollower reviewFollower = CSVFollower.reviews(FOLLOWED_CSV_FILES[1], followed[1]);
+
         while (true) {
+            int newOrders = orderFollower.poll();
+            int newReviews = reviewFollower.poll();
+            if (newOrders + newReviews > 0) {
+                System.out.println("\nAdded " + newOrders + " orders and " + newReviews + " reviews appended to the CSV files.");
+                wal = checkpoint(wal, new long[] {orderFollower.offset(), reviewFollower.offset()});
+            }
+            
             System.out.println("\n============ MENU ============");
             System.out.println("--- View Data ---");
             System.out.println("1. View all products (sorted by ID)");
@@ -306,6 +327,13 @@ public class SimpleECommerceTest {
                     performanceComparison();
                     break;
                 case 29:
+                    if (wal != null) {
+                        try {
+                            wal.close();
+                        } catch (java.io.IOException e) {
+                            System.out.println("Could not close " + WAL_FILE + ": " + e.getMessage());
+                        }
+                    }
                     System.out.println("Exiting program.");
                     scan.close();
                     return;
@@ -316,7 +344,9 @@ public class SimpleECommerceTest {
     }
     
     /**
-     * Phase II: Performance comparison between Phase I (LinkedList) and Phase II (AVL Tree)
+     * Phase II: Performance comparison between Phase I (LinkedList) and Phase II (AVL Tree).
+     * The synthetic benchmarks run their workload once untimed before measuring it, so the timings are of
+     * JIT-compiled code rather than the interpreter. Correctness is checked by ECommerceChecks, not here.
      */
     private static void performanceComparison() {
         System.out.println("\n=== PERFORMANCE COMPARISON ===");
@@ -385,18 +415,44 @@ public class SimpleECommerceTest {
             System.out.println("AVL Tree is " + String.format("%.2f", (double)linearTime / avlTime) + "x faster");
         }
         
+        // Sorted traversal scaling on large synthetic trees
+        benchmarkTraversalScaling();
+        
+        // Point lookup throughput: iterative vs recursive search
+        benchmarkPointLookups();
+        
+        // Loading a sorted ID column: per-row insert vs buildFromSorted
+        benchmarkBulkLoad();
+        
+        // Purge and merge: split/union vs one delete/insert per key
+        benchmarkSplitAndUnion();
+        
+        // Range-heavy secondary index: AVLTree vs B+ tree
+        benchmarkRangeIndex();
+        
+        // Int-keyed secondary index: object nodes vs parallel arrays (memory and scans)
+        benchmarkNodeLayout();
+        benchmarkCsvIngestion();
+        benchmarkCsvTokenizer();
+        
+        // Durable changes: one fsync per record vs group commit
+        benchmarkWriteAheadLog();
+        
+        // Common products: set intersection by density vs a plain merge
+        benchmarkSetIntersection();
+        
         // Time Complexity Summary
         System.out.println("\n=== TIME COMPLEXITY SUMMARY ===");
         System.out.println("Operation                    | Phase I (LinkedList) | Phase II (AVL Tree)");
         System.out.println("---------------------------------------------------------------------");
         System.out.println("Insert Product               | O(n)                 | O(log n)");
-        System.out.println("Search Product by ID         | O(n)                 | O(log n)");
+        System.out.println("Search Product by ID         | O(n)                 | O(1)***");
         System.out.println("Update Product               | O(n)                 | O(log n)");
         System.out.println("Delete Product               | O(n)                 | O(log n)");
         System.out.println("Insert Customer              | O(n)                 | O(log n)");
-        System.out.println("Search Customer              | O(n)                 | O(log n)");
+        System.out.println("Search Customer              | O(n)                 | O(1)***");
         System.out.println("Insert Order                 | O(n)                 | O(log n)");
-        System.out.println("Search Order                 | O(n)                 | O(log n)");
+        System.out.println("Search Order                 | O(n)                 | O(1)***");
         System.out.println("Price Range Query            | O(n)                 | O(log n + k)*");
         System.out.println("Date Range Query             | O(n)                 | O(log n + k)*");
         System.out.println("Reviews by Product ID        | O(n)                 | O(log n + k)*");
@@ -404,10 +460,802 @@ public class SimpleECommerceTest {
         System.out.println("---------------------------------------------------------------------");
         System.out.println("* k = number of results in range");
         System.out.println("** In-order traversal of AVL tree gives sorted order naturally");
+        System.out.println("*** Expected, via the IntHashIndex kept beside each ID tree");
         
         System.out.println("\n=== SPACE COMPLEXITY ===");
         System.out.println("Phase I (LinkedList): O(n) - one node per element");
         System.out.println("Phase II (AVL Tree):  O(n) - one node per element with height info");
         System.out.println("                      + secondary trees for range queries");
     }
+    
+    /**
+     * Phase II: Times inOrderTraversal() on synthetic trees of 250,000, 500,000 and 1,000,000 nodes.
+     * Traversal is O(n), so quadrupling n should roughly quadruple the time;
+     * anything near 8x or more per doubling chain indicates quadratic appends.
+     */
+    private static void benchmarkTraversalScaling() {
+        System.out.println("\n--- Sorted Traversal Scaling (in-order, synthetic keys) ---");
+        
+        int[] sizes = {250000, 500000, 1000000};
+        long[] times = new long[sizes.length];
+        
+        for (int s = 0; s < sizes.length; s++) {
+            AVLTree<Integer, Integer> tree = new AVLTree<Integer, Integer>();
+            for (int i = 0; i < sizes[s]; i++) {
+                tree.insert(i, i);
+            }
+            
+            // One untimed traversal at this size
+            tree.inOrderTraversal();
+            
+            long start = System.nanoTime();
+            LinkedList<Integer> sorted = tree.inOrderTraversal();
+            long end = System.nanoTime();
+            times[s] = end - start;
+            
+            System.out.println(sizes[s] + " nodes: " + (times[s] / 1000000) + " ms ("
+                    + String.format("%.1f", (double) times[s] / sizes[s]) + " ns/node)"
+                    + (sorted.empty() ? " [empty result]" : ""));
+        }
+        
+        // 4x the nodes should cost about 4x the time; allow 2x slack for GC and timer noise
+        double growth = (double) times[sizes.length - 1] / times[0];
+        System.out.println("Growth from 250,000 to 1,000,000 nodes: " + String.format("%.2f", growth) + "x"
+                + (growth <= 8.0 ? " (within linear-time budget)" : " (exceeds linear-time budget)"));
+    }
+    
+    /**
+     * Phase II: Start from the binary snapshot when it is at least as new as products.csv and customers.csv,
+     * and replay the write-ahead log on top of it; otherwise parse the CSV files and write a fresh snapshot.
+     * Rows appended to orders.csv and reviews.csv after the snapshot are not a reason to reload: followed is
+     * filled with the bytes of each that the data holds, and the followers add the rest after the replay.
+     * A snapshot whose log still holds changes is used even if products.csv or customers.csv changed since:
+     * the logged changes exist nowhere else, so those CSV changes are the ones left out, with a warning.
+     * Replayed changes are folded into a new snapshot and their log is discarded, then a log is opened for this session.
+     * Returns the open log, or null if changes cannot be logged (no snapshot to log against, or an old log in the way).
+     */
+    private static WriteAheadLog loadData(long[] followed) {
+        // fromSnapshot: the data in memory is the snapshot with this checksum plus what the log holds
+        boolean fromSnapshot = false;
+        boolean checkpoint = true;
+        long checksum = 0;
+        boolean fresh = DataSnapshot.isFresh(SNAPSHOT_FILE, RELOADED_CSV_FILES);
+        boolean pending = false;
+        if (!fresh && new java.io.File(SNAPSHOT_FILE).isFile()) {
+            try {
+                pending = WriteAheadLog.hasRecords(WAL_FILE, DataSnapshot.checksum(SNAPSHOT_FILE));
+            } catch (java.io.IOException e) {
+                // Unreadable snapshot: no log can be replayed on it
+            }
+        }
+        if (fresh || pending) {
+            try {
+                long start = System.nanoTime();
+                checksum = DataSnapshot.load(SNAPSHOT_FILE, followed);
+                System.out.println("Loaded " + SNAPSHOT_FILE + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+                fromSnapshot = true;
+                checkpoint = false;
+            } catch (java.io.IOException e) {
+                System.out.println("Ignoring snapshot: " + e.getMessage());
+            }
+        }
+        
+        int replayed = 0;
+        if (fromSnapshot) {
+            try {
+                replayed = WriteAheadLog.replay(WAL_FILE, checksum);
+                if (replayed > 0) {
+                    System.out.println("Replayed " + replayed + " logged changes from " + WAL_FILE);
+                    checkpoint = true;
+                }
+            } catch (java.io.IOException e) {
+                System.out.println("Ignoring write-ahead log: " + e.getMessage());
+            }
+            if (!fresh) {
+                System.out.println("Warning: products.csv or customers.csv changed after " + SNAPSHOT_FILE + " was written, but "
+                        + WAL_FILE + " held changes made on top of it. Kept those changes; the CSV changes were not loaded.");
+            }
+        } else {
+            MappedCSVReader.loadProducts("products.csv");
+            MappedCSVReader.loadCustomers("customers.csv");
+            followed[0] = MappedCSVReader.loadOrders(FOLLOWED_CSV_FILES[0]);
+            followed[1] = MappedCSVReader.loadReviews(FOLLOWED_CSV_FILES[1]);
+        }
+        
+        if (checkpoint) {
+            long replayedOn = checksum;
+            try {
+                checksum = DataSnapshot.save(SNAPSHOT_FILE, followed);
+                fromSnapshot = true;
+            } catch (java.io.IOException e) {
+                // After a replay the old snapshot and log still hold the data, so keep appending to them
+                System.out.println("Could not write " + SNAPSHOT_FILE + ": " + e.getMessage());
+            }
+            if (replayed > 0 && checksum != replayedOn) {
+                discardLog(replayedOn);
+            }
+        }
+        if (!fromSnapshot) {
+            System.out.println("Changes will not be logged.");
+            return null;
+        }
+        try {
+            return WriteAheadLog.open(WAL_FILE, checksum, WAL_GROUP_SIZE, WAL_GROUP_MILLIS, WAL_WAIT_FOR_SYNC);
+        } catch (java.io.IOException e) {
+            System.out.println("Could not open " + WAL_FILE + ": " + e.getMessage() + ". Changes will not be logged.");
+            return null;
+        }
+    }
+    
+    /**
+     * Phase II: Save the data, now including rows followed from the CSV files up to the followed offsets, as
+     * a new snapshot and restart the write-ahead log on it, so the next start does not follow them again.
+     * Returns the new log, or null if changes can no longer be logged.
+     */
+    private static WriteAheadLog checkpoint(WriteAheadLog wal, long[] followed) {
+        if (wal != null) {
+            try {
+                wal.close();
+            } catch (java.io.IOException e) {
+                System.out.println("Could not close " + WAL_FILE + ": " + e.getMessage());
+            }
+        }
+        try {
+            long checksum = DataSnapshot.save(SNAPSHOT_FILE, followed);
+            if (wal != null) {
+                discardLog(wal.snapshotChecksum());
+            }
+            return WriteAheadLog.open(WAL_FILE, checksum, WAL_GROUP_SIZE, WAL_GROUP_MILLIS, WAL_WAIT_FOR_SYNC);
+        } catch (java.io.IOException e) {
+            System.out.println("Could not checkpoint: " + e.getMessage() + ". Changes will not be logged.");
+            return null;
+        }
+    }
+    
+    /**
+     * Phase II: Delete the log of the snapshot with this checksum, whose changes a newer snapshot now holds.
+     * If that fails the log stays, and opening a log for the newer snapshot will refuse to replace it.
+     */
+    private static void discardLog(long snapshotChecksum) {
+        try {
+            WriteAheadLog.discard(WAL_FILE, snapshotChecksum);
+        } catch (java.io.IOException e) {
+            System.out.println("Could not discard " + WAL_FILE + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Phase II: Lookup throughput on a 1,000,000-key tree, iterative search() vs searchRecursive(),
+     * then the same lookups against an IntAVLTree with primitive keys and an IntHashIndex.
+     * Keys are boxed once up front so the AVLTree loops measure only the tree descent.
+     */
+    private static void benchmarkPointLookups() {
+        System.out.println("\n--- Point Lookups (1,000,000 keys, 2,000,000 random searches) ---");
+        
+        int n = 1000000;
+        int lookups = 2000000;
+        AVLTree<Integer, Integer> tree = new AVLTree<Integer, Integer>();
+        IntAVLTree<Integer> intTree = new IntAVLTree<Integer>();
+        IntHashIndex<Integer> hashIndex = new IntHashIndex<Integer>(n);
+        for (int i = 0; i < n; i++) {
+            tree.insert(i, i);
+            intTree.insert(i, i);
+            hashIndex.put(i, i);
+        }
+        
+        java.util.Random random = new java.util.Random(42);
+        Integer[] keys = new Integer[lookups];
+        int[] intKeys = new int[lookups];
+        for (int i = 0; i < lookups; i++) {
+            intKeys[i] = random.nextInt(n);
+            keys[i] = intKeys[i];
+        }
+        
+        // Untimed pass over the same keys through all four lookup paths
+        long found = 0;
+        for (int i = 0; i < lookups; i++) {
+            if (tree.search(keys[i]) != null) found++;
+            if (tree.searchRecursive(keys[i]) != null) found++;
+            if (intTree.search(intKeys[i]) != null) found++;
+            if (hashIndex.get(intKeys[i]) != null) found++;
+        }
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            if (tree.searchRecursive(keys[i]) != null) found++;
+        }
+        long recursiveTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            if (tree.search(keys[i]) != null) found++;
+        }
+        long iterativeTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            if (intTree.search(intKeys[i]) != null) found++;
+        }
+        long primitiveTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            if (hashIndex.get(intKeys[i]) != null) found++;
+        }
+        long hashTime = System.nanoTime() - start;
+        
+        System.out.println("Recursive search: " + String.format("%.1f", lookups * 1000.0 / recursiveTime) + " M lookups/s");
+        System.out.println("Iterative search: " + String.format("%.1f", lookups * 1000.0 / iterativeTime) + " M lookups/s");
+        // Both do the same descent, so expect about 1x: the iterative search removes the stack depth, not time
+        System.out.println("Recursive / iterative time: " + String.format("%.2f", (double) recursiveTime / iterativeTime) + "x"
+                + (found == 0 ? " [no keys found]" : ""));
+        System.out.println("IntAVLTree search: " + String.format("%.1f", lookups * 1000.0 / primitiveTime) + " M lookups/s ("
+                + String.format("%.2f", (double) iterativeTime / primitiveTime) + "x vs boxed Integer keys)");
+        System.out.println("IntHashIndex get:  " + String.format("%.1f", lookups * 1000.0 / hashTime) + " M lookups/s ("
+                + String.format("%.2f", (double) primitiveTime / hashTime) + "x vs IntAVLTree)");
+    }
+    
+    /**
+     * Phase II: Building a 1,000,000-key ID index from sorted input,
+     * one insert() per row (O(n log n) with rotations) vs buildFromSorted() (O(n)).
+     */
+    private static void benchmarkBulkLoad() {
+        System.out.println("\n--- Sorted ID Load (1,000,000 keys) ---");
+        
+        int n = 1000000;
+        int[] ids = new int[n];
+        Integer[] values = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+            values[i] = i;
+        }
+        
+        // Two untimed rounds of both loads on throwaway trees
+        for (int round = 0; round < 2; round++) {
+            IntAVLTree<Integer> warm = new IntAVLTree<Integer>();
+            for (int i = 0; i < n; i++) {
+                warm.insert(ids[i], values[i]);
+            }
+            new IntAVLTree<Integer>().buildFromSorted(ids, values, n);
+        }
+        
+        long start = System.nanoTime();
+        IntAVLTree<Integer> inserted = new IntAVLTree<Integer>();
+        for (int i = 0; i < n; i++) {
+            inserted.insert(ids[i], values[i]);
+        }
+        long insertTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        IntAVLTree<Integer> built = new IntAVLTree<Integer>();
+        built.buildFromSorted(ids, values, n);
+        long buildTime = System.nanoTime() - start;
+        
+        System.out.println("insert() per row:  " + (insertTime / 1000000) + " ms");
+        System.out.println("buildFromSorted(): " + (buildTime / 1000000) + " ms ("
+                + String.format("%.2f", (double) insertTime / buildTime) + "x faster)"
+                + (inserted.size() != built.size() ? " [size mismatch]" : ""));
+    }
+    
+    /**
+     * Phase II: On a 1,000,000-key tree, purge the lowest 250,000 keys with split() vs 250,000 delete() calls,
+     * then merge a batch of about 220,000 new keys with union() vs one insert() per key.
+     */
+    private static void benchmarkSplitAndUnion() {
+        System.out.println("\n--- Purge and Merge (1,000,000 keys) ---");
+        
+        int n = 1000000;
+        int purged = n / 4;
+        int batch = 250000;
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i * 2;
+        }
+        AVLTree<Integer, Integer> byDelete = new AVLTree<Integer, Integer>();
+        AVLTree<Integer, Integer> bySplit = new AVLTree<Integer, Integer>();
+        byDelete.buildFromSorted(keys, keys, n);
+        bySplit.buildFromSorted(keys, keys, n);
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < purged; i++) {
+            byDelete.delete(keys[i]);
+        }
+        long deleteTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        AVLTree<Integer, Integer> remaining = bySplit.split(keys[purged]);
+        long splitTime = System.nanoTime() - start;
+        
+        System.out.println("Purge " + purged + " keys: delete() " + (deleteTime / 1000) + " us, split() " + (splitTime / 1000) + " us"
+                + (remaining.size() != byDelete.size() || bySplit.size() != purged ? " [size mismatch]" : ""));
+        
+        // Odd keys spread across the whole range, so every insert lands in a different place
+        java.util.Random random = new java.util.Random(13);
+        Integer[] extra = new Integer[batch];
+        for (int i = 0; i < batch; i++) {
+            extra[i] = random.nextInt(n) * 2 + 1;
+        }
+        java.util.Arrays.sort(extra);
+        int unique = 0;
+        for (int i = 0; i < batch; i++) {
+            if (unique == 0 || !extra[unique - 1].equals(extra[i])) extra[unique++] = extra[i];
+        }
+        AVLTree<Integer, Integer> incoming = new AVLTree<Integer, Integer>();
+        incoming.buildFromSorted(extra, extra, unique);
+        
+        // Three untimed rounds of both merge paths on throwaway trees
+        for (int round = 0; round < 3; round++) {
+            AVLTree<Integer, Integer> warmTarget = new AVLTree<Integer, Integer>();
+            AVLTree<Integer, Integer> warmBatch = new AVLTree<Integer, Integer>();
+            warmTarget.buildFromSorted(keys, keys, n);
+            warmBatch.buildFromSorted(extra, extra, unique);
+            for (int i = 0; i < unique; i++) {
+                warmTarget.insert(extra[i], extra[i]);
+            }
+            warmTarget.union(warmBatch);
+        }
+        
+        start = System.nanoTime();
+        for (int i = 0; i < unique; i++) {
+            byDelete.insert(extra[i], extra[i]);
+        }
+        long insertTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        remaining.union(incoming);
+        long unionTime = System.nanoTime() - start;
+        
+        // The batch is over 1/8 of the tree, so union() runs the split/join merge
+        System.out.println("Merge " + unique + " keys: insert() " + (insertTime / 1000) + " us, union() " + (unionTime / 1000) + " us"
+                + (remaining.size() != byDelete.size() ? " [size mismatch]" : ""));
+        
+        // A batch as large as the tree (interleaved odd keys): here union() runs the split/join merge
+        int half = n - purged;
+        Integer[] evens = java.util.Arrays.copyOfRange(keys, purged, n);
+        Integer[] odds = new Integer[half];
+        for (int i = 0; i < half; i++) {
+            odds[i] = evens[i] + 1;
+        }
+        AVLTree<Integer, Integer> byInsert = new AVLTree<Integer, Integer>();
+        AVLTree<Integer, Integer> byUnion = new AVLTree<Integer, Integer>();
+        AVLTree<Integer, Integer> equalBatch = new AVLTree<Integer, Integer>();
+        byInsert.buildFromSorted(evens, evens, half);
+        byUnion.buildFromSorted(evens, evens, half);
+        equalBatch.buildFromSorted(odds, odds, half);
+        
+        start = System.nanoTime();
+        for (int i = 0; i < half; i++) {
+            byInsert.insert(odds[i], odds[i]);
+        }
+        insertTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        byUnion.union(equalBatch);
+        unionTime = System.nanoTime() - start;
+        
+        System.out.println("Merge " + half + " keys into " + half + ": insert() " + (insertTime / 1000) + " us, union() "
+                + (unionTime / 1000) + " us (" + String.format("%.2f", (double) insertTime / unionTime) + "x)"
+                + (byUnion.size() != byInsert.size() ? " [size mismatch]" : ""));
+    }
+    
+    /**
+     * Phase II: 1,000,000 price-like Double keys in an AVLTree and in a BPlusTree (order 64).
+     * Compares heap used by each index and the throughput of 2,000 range scans of about 1,000 entries each.
+     * Heap figures come from Runtime after System.gc(), so they are estimates.
+     */
+    private static void benchmarkRangeIndex() {
+        System.out.println("\n--- Range Index: AVLTree vs BPlusTree (1,000,000 keys) ---");
+        
+        int n = 1000000;
+        int scans = 2000;
+        int width = 1000;
+        Double[] keys = new Double[n];
+        java.util.Random random = new java.util.Random(14);
+        for (int i = 0; i < n; i++) {
+            keys[i] = i * 0.01;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Double tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+        
+        long baseline = usedHeap();
+        AVLTree<Double, Double> avl = new AVLTree<Double, Double>();
+        for (int i = 0; i < n; i++) {
+            avl.insert(keys[i], keys[i]);
+        }
+        long avlBytes = usedHeap() - baseline;
+        
+        baseline = usedHeap();
+        BPlusTree<Double, Double> bplus = new BPlusTree<Double, Double>();
+        for (int i = 0; i < n; i++) {
+            bplus.insert(keys[i], keys[i]);
+        }
+        long bplusBytes = usedHeap() - baseline;
+        
+        double[] starts = new double[scans];
+        for (int i = 0; i < scans; i++) {
+            starts[i] = random.nextInt(n - width) * 0.01;
+        }
+        
+        // Untimed pass over the same scan ranges on both indexes
+        long checksum = countEntries(avl.rangeIterator(0.0, 10.0)) + countEntries(bplus.rangeIterator(0.0, 10.0));
+        for (int i = 0; i < scans; i++) {
+            checksum += countEntries(avl.rangeIterator(starts[i], starts[i] + width * 0.01));
+            checksum += countEntries(bplus.rangeIterator(starts[i], starts[i] + width * 0.01));
+        }
+        
+        long visited = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < scans; i++) {
+            visited += countEntries(avl.rangeIterator(starts[i], starts[i] + width * 0.01));
+        }
+        long avlTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for (int i = 0; i < scans; i++) {
+            checksum += countEntries(bplus.rangeIterator(starts[i], starts[i] + width * 0.01));
+        }
+        long bplusTime = System.nanoTime() - start;
+        
+        System.out.println("AVLTree:   ~" + (avlBytes / (1024 * 1024)) + " MB, range scan "
+                + String.format("%.1f", (double) avlTime / visited) + " ns/entry");
+        System.out.println("BPlusTree: ~" + (bplusBytes / (1024 * 1024)) + " MB, range scan "
+                + String.format("%.1f", (double) bplusTime / visited) + " ns/entry ("
+                + String.format("%.2f", (double) avlTime / bplusTime) + "x, height " + bplus.height() + ")"
+                + (checksum == 0 ? " [empty scans]" : ""));
+    }
+    
+    /**
+     * Phase II: IntAVLTree (one object per node) vs ArrayIntAVLTree (nodes in parallel arrays) on 1,000,000 keys:
+     * heap used and full-scan time after shuffled inserts and after buildFromSorted. Every entry holds the same
+     * value object, so only the nodes are measured. Then half the keys are deleted and reinserted to show that
+     * the free list keeps the array tree at the same capacity.
+     */
+    private static void benchmarkNodeLayout() {
+        System.out.println("\n--- Node Layout: IntAVLTree vs ArrayIntAVLTree (1,000,000 keys) ---");
+        
+        int n = 1000000;
+        Integer value = 1;
+        int[] keys = new int[n];
+        Integer[] values = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+            values[i] = value;
+        }
+        int[] shuffled = keys.clone();
+        java.util.Random random = new java.util.Random(9);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = tmp;
+        }
+        
+        long baseline = usedHeap();
+        IntAVLTree<Integer> objects = new IntAVLTree<Integer>();
+        for (int i = 0; i < n; i++) {
+            objects.insert(shuffled[i], value);
+        }
+        long objectBytes = usedHeap() - baseline;
+        
+        baseline = usedHeap();
+        ArrayIntAVLTree<Integer> arrays = new ArrayIntAVLTree<Integer>();
+        for (int i = 0; i < n; i++) {
+            arrays.insert(shuffled[i], value);
+        }
+        long arrayBytes = usedHeap() - baseline;
+        
+        IntAVLTree<Integer> builtObjects = new IntAVLTree<Integer>();
+        builtObjects.buildFromSorted(keys, values, n);
+        baseline = usedHeap();
+        ArrayIntAVLTree<Integer> builtArrays = new ArrayIntAVLTree<Integer>();
+        builtArrays.buildFromSorted(keys, values, n);
+        long builtArrayBytes = usedHeap() - baseline;
+        
+        // Two untimed scans of each tree
+        long checksum = 0;
+        for (int round = 0; round < 2; round++) {
+            checksum += scanAll(objects) + scanAll(arrays) + scanAll(builtObjects) + scanAll(builtArrays);
+        }
+        
+        long start = System.nanoTime();
+        checksum += scanAll(objects);
+        long objectTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        checksum += scanAll(arrays);
+        long arrayTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        checksum += scanAll(builtObjects);
+        long builtObjectTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        checksum += scanAll(builtArrays);
+        long builtArrayTime = System.nanoTime() - start;
+        
+        System.out.println("Heap after shuffled inserts: IntAVLTree " + (objectBytes / n) + " bytes/node, ArrayIntAVLTree "
+                + (arrayBytes / n) + " bytes/node (capacity " + arrays.capacity() + "); buildFromSorted: "
+                + (builtArrayBytes / n) + " bytes/node");
+        System.out.println("Scan after shuffled inserts: IntAVLTree " + String.format("%.1f", (double) objectTime / n)
+                + " ns/node, ArrayIntAVLTree " + String.format("%.1f", (double) arrayTime / n) + " ns/node ("
+                + String.format("%.2f", (double) objectTime / arrayTime) + "x)");
+        System.out.println("Scan after buildFromSorted:  IntAVLTree " + String.format("%.1f", (double) builtObjectTime / n)
+                + " ns/node, ArrayIntAVLTree " + String.format("%.1f", (double) builtArrayTime / n) + " ns/node ("
+                + String.format("%.2f", (double) builtObjectTime / builtArrayTime) + "x)"
+                + (checksum != 12L * n ? " [wrong scan count]" : ""));
+        
+        // Delete every other key and put them back: freed slots are reused, so the columns do not grow
+        int capacity = arrays.capacity();
+        for (int i = 0; i < n; i += 2) {
+            arrays.delete(shuffled[i]);
+        }
+        for (int i = 0; i < n; i += 2) {
+            arrays.insert(shuffled[i], value);
+        }
+        System.out.println("After deleting and reinserting " + (n / 2) + " keys: capacity " + capacity + " -> " + arrays.capacity());
+    }
+    
+    private static long scanAll(Iterable<Integer> tree) {
+        long sum = 0;
+        for (Integer v : tree) {
+            sum += v;
+        }
+        return sum;
+    }
+    
+    /**
+     * Phase II: Parsing a generated 1,000,000-line orders CSV (IDs taken from the loaded customers and products),
+     * SimpleCSVReader (BufferedReader + parseCSVLine) vs MappedCSVReader (memory-mapped chunks on the fork-join pool).
+     * Both only parse and resolve references; nothing is added to the trees. Each reader gets one untimed warm-up pass.
+     */
+    private static void benchmarkCsvIngestion() {
+        int lines = 1000000;
+        int threads = java.util.concurrent.ForkJoinPool.getCommonPoolParallelism();
+        System.out.println("\n--- CSV Ingestion (" + lines + " order lines, " + threads + " pool threads) ---");
+        
+        PersistentIntAVLTree<Customer> customers = Customer.customerTreeById.snapshot();
+        PersistentIntAVLTree<Product> products = Product.productTree.snapshot();
+        if (customers.isEmpty() || products.isEmpty()) {
+            System.out.println("Skipped: needs loaded customers and products");
+            return;
+        }
+        
+        java.io.File file;
+        try {
+            file = java.io.File.createTempFile("orders-bench", ".csv");
+            file.deleteOnExit();
+            java.util.Random random = new java.util.Random(42);
+            try (java.io.BufferedWriter out = new java.io.BufferedWriter(new java.io.FileWriter(file))) {
+                out.write("orderId,customerId,productIds,totalPrice,orderDate,status\n");
+                for (int i = 0; i < lines; i++) {
+                    out.write((1000000 + i) + "," + customers.select(random.nextInt(customers.size())).customerId
+                            + ",\"" + products.select(random.nextInt(products.size())).productId
+                            + ";" + products.select(random.nextInt(products.size())).productId + "\","
+                            + (random.nextInt(500000) / 100.0) + ",2025-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10)
+                            + "," + (i % 3 == 0 ? "Delivered" : "Pending") + "\n");
+                }
+            }
+        } catch (java.io.IOException e) {
+            System.out.println("Skipped: " + e.getMessage());
+            return;
+        }
+        double megabytes = file.length() / (1024.0 * 1024.0);
+        
+        SimpleCSVReader.readOrders(file.getPath());
+        MappedCSVReader.readOrders(file.getPath());
+        
+        long start = System.nanoTime();
+        java.util.List<Order> simple = SimpleCSVReader.readOrders(file.getPath());
+        long simpleTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        java.util.List<Order> mapped = MappedCSVReader.readOrders(file.getPath());
+        long mappedTime = System.nanoTime() - start;
+        
+        boolean same = simple.size() == mapped.size();
+        for (int i = 0; same && i < simple.size(); i++) {
+            Order a = simple.get(i);
+            Order b = mapped.get(i);
+            same = a.orderId == b.orderId && a.customer == b.customer && a.totalPrice == b.totalPrice
+                    && a.orderDate.equals(b.orderDate) && a.status.equals(b.status) && a.products.size() == b.products.size();
+        }
+        
+        System.out.println("SimpleCSVReader: " + (simpleTime / 1000000) + " ms ("
+                + String.format("%.1f", megabytes * 1e9 / simpleTime) + " MB/s)");
+        System.out.println("MappedCSVReader: " + (mappedTime / 1000000) + " ms ("
+                + String.format("%.1f", megabytes * 1e9 / mappedTime) + " MB/s, "
+                + String.format("%.2f", (double) simpleTime / mappedTime) + "x)"
+                + (same ? "" : " [results differ]"));
+    }
+    
+    /**
+     * Phase II: Tokenizing 1,000,000 in-memory review records (quoted comments with commas and "" escapes)
+     * and parsing their numeric fields, SimpleCSVReader.parseCSVLine on ready-made line Strings vs
+     * CSVTokenizer on the raw bytes. Throughput is reported over the same byte count for both.
+     */
+    private static void benchmarkCsvTokenizer() {
+        int records = 1000000;
+        System.out.println("\n--- CSV Tokenizer (" + records + " review records) ---");
+        
+        java.util.Random random = new java.util.Random(42);
+        String[] lines = new String[records];
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < records; i++) {
+            lines[i] = i + "," + (100 + random.nextInt(50)) + "," + (200 + random.nextInt(30)) + "," + (1 + random.nextInt(5))
+                    + ",\"Review " + i + ", rated " + random.nextInt(100) + "/100 - \"\"solid\"\" value\"";
+            text.append(lines[i]).append('\n');
+        }
+        byte[] bytes = text.toString().getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+        double megabytes = bytes.length / (1024.0 * 1024.0);
+        
+        long checksum = 0;
+        long start = 0;
+        long lineTime = 0;
+        long tokenizerTime = 0;
+        // Both rounds run the same work; only round 1's times are kept
+        for (int round = 0; round < 2; round++) {
+            start = System.nanoTime();
+            for (int i = 0; i < records; i++) {
+                String[] fields = SimpleCSVReader.parseCSVLine(lines[i]);
+                checksum += Integer.parseInt(fields[0].trim()) + Integer.parseInt(fields[1].trim())
+                        + (long) Double.parseDouble(fields[3].trim()) + fields.length;
+            }
+            lineTime = System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            CSVTokenizer tokenizer = new CSVTokenizer(java.nio.ByteBuffer.wrap(bytes), true);
+            int pos = 0;
+            while (pos < bytes.length) {
+                pos = tokenizer.next(pos, bytes.length);
+                checksum -= tokenizer.intField(0) + tokenizer.intField(1)
+                        + (long) tokenizer.doubleField(3) + tokenizer.fieldCount();
+            }
+            tokenizerTime = System.nanoTime() - start;
+        }
+        
+        System.out.println("parseCSVLine: " + String.format("%.1f", megabytes * 1e9 / lineTime) + " MB/s");
+        System.out.println("CSVTokenizer: " + String.format("%.1f", megabytes * 1e9 / tokenizerTime) + " MB/s ("
+                + String.format("%.2f", (double) lineTime / tokenizerTime) + "x)"
+                + (checksum != 0 ? " [results differ]" : ""));
+    }
+    
+    private static long countEntries(java.util.Iterator<Double> it) {
+        long count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Phase II: Appending 4,000 editReview records to a temporary write-ahead log under three fsync policies:
+     * one fsync per record, group commit shared by 8 writer threads that each wait for their fsync, and
+     * groups synced at 256 records or 10 ms without waiting. Reports records/s and records per fsync.
+     */
+    private static void benchmarkWriteAheadLog() {
+        int records = 4000;
+        System.out.println("\n--- Write-Ahead Log (" + records + " records) ---");
+        
+        String[] labels = {"fsync per record", "group commit, 8 writers", "async groups (256 records / 10 ms)"};
+        int[] groupSizes = {1, 64, 256};
+        long[] groupMillis = {0, 0, 10};
+        boolean[] waitForSync = {true, true, false};
+        int[] writers = {1, 8, 1};
+        for (int mode = 0; mode < labels.length; mode++) {
+            try {
+                java.io.File file = java.io.File.createTempFile("wal-bench", ".wal");
+                file.deleteOnExit();
+                WriteAheadLog log = WriteAheadLog.create(file.getPath(), 0, groupSizes[mode], groupMillis[mode], waitForSync[mode]);
+                int perWriter = records / writers[mode];
+                Thread[] threads = new Thread[writers[mode]];
+                long start = System.nanoTime();
+                for (int t = 0; t < threads.length; t++) {
+                    int first = t * perWriter;
+                    threads[t] = new Thread(() -> {
+                        for (int i = first; i < first + perWriter; i++) {
+                            log.write(new WriteAheadLog.Record(WriteAheadLog.EDIT_REVIEW)
+                                    .writeInt(i).writeDouble(4.5).writeString("Updated after a second order"));
+                        }
+                    });
+                    threads[t].start();
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                log.close();
+                long time = System.nanoTime() - start;
+                System.out.println(labels[mode] + ": " + String.format("%.0f", log.records() * 1e9 / time) + " records/s, "
+                        + String.format("%.1f", (double) log.records() / Math.max(1, log.syncs())) + " records per fsync");
+                file.delete();
+            } catch (java.io.IOException | InterruptedException e) {
+                System.out.println("Skipped: " + e.getMessage());
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Phase II: Intersects pairs of synthetic product ID sets shaped to hit each SortedIntSet strategy -
+     * similar sparse sizes (merge), 1,000 vs 1,000,000 (galloping) and two dense sets (bitmap AND) -
+     * against a plain linear merge of the sorted arrays. Each pair is intersected 20 times after a warm-up.
+     */
+    private static void benchmarkSetIntersection() {
+        System.out.println("\n--- Set Intersection (SortedIntSet vs linear merge) ---");
+        
+        String[] labels = {"similar sizes (100,000 each, sparse)", "skewed (1,000 vs 1,000,000)", "dense (500,000 each in 1,000,000)"};
+        int[][] sizes = {{100000, 100000}, {1000, 1000000}, {500000, 500000}};
+        int[] spans = {100000000, 100000000, 1000000};
+        int rounds = 20;
+        java.util.Random random = new java.util.Random(15);
+        for (int shape = 0; shape < labels.length; shape++) {
+            int[] a = randomSortedSet(random, sizes[shape][0], spans[shape]);
+            int[] b = randomSortedSet(random, sizes[shape][1], spans[shape]);
+            SortedIntSet setA = SortedIntSet.fromSorted(a, a.length);
+            SortedIntSet setB = SortedIntSet.fromSorted(b, b.length);
+            
+            // Three untimed intersections of this pair with both methods
+            long checksum = 0;
+            for (int i = 0; i < 3; i++) {
+                checksum += mergeCount(a, b) + setA.intersect(setB).size();
+            }
+            
+            long start = System.nanoTime();
+            int merged = 0;
+            for (int i = 0; i < rounds; i++) {
+                merged = mergeCount(a, b);
+            }
+            long mergeTime = System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            int common = 0;
+            for (int i = 0; i < rounds; i++) {
+                common = setA.intersect(setB).size();
+            }
+            long setTime = System.nanoTime() - start;
+            
+            System.out.println(labels[shape] + ": merge " + (mergeTime / rounds / 1000) + " us, SortedIntSet "
+                    + (setTime / rounds / 1000) + " us (" + String.format("%.2f", (double) mergeTime / setTime) + "x, "
+                    + (setA.isBitmap() && setB.isBitmap() ? "bitmaps" : "arrays") + ", " + common + " common)"
+                    + (common != merged || checksum == 0 ? " [result mismatch]" : ""));
+        }
+    }
+    
+    private static int[] randomSortedSet(java.util.Random random, int size, int span) {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(span);
+        }
+        java.util.Arrays.sort(values);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || values[unique - 1] != values[i]) values[unique++] = values[i];
+        }
+        return java.util.Arrays.copyOf(values, unique);
+    }
+    
+    private static int mergeCount(int[] a, int[] b) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,222 @@
+package projectFiles;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of ints for set algebra on ID sets (e.g. the products a customer reviewed).
+ * A set is stored either as a sorted array of distinct values or, when the values are dense
+ * (at least one per 32 of their span), as a bitmap of 64-bit words starting at a multiple of 64.
+ * intersect picks the algorithm from the two representations and sizes:
+ *   bitmap & bitmap  - AND of the overlapping words, O(span / 64)
+ *   array & bitmap   - one bit test per array value, O(array size)
+ *   array & array    - linear merge, O(n + m), or galloping (exponential then binary search in the
+ *                      larger array) when one side is GALLOP_RATIO times larger, O(n log(m / n))
+ * Results are stored in whichever representation fits them.
+ */
+public class SortedIntSet {
+
+    // Bitmap when the span is at most this many times the size, i.e. 4 bytes per value or less
+    private static final int BITMAP_DENSITY = 32;
+    // Gallop through the larger array once it is this many times the smaller one
+    private static final int GALLOP_RATIO = 16;
+
+    private static final SortedIntSet EMPTY = new SortedIntSet(new int[0], 0);
+
+    // Array form: values[0..size) sorted and distinct; words == null
+    private final int[] values;
+    // Bitmap form: bit i of words[w] is value base + 64*w + i; values == null
+    private final long[] words;
+    private final int base;
+    private final int size;
+
+    private SortedIntSet(int[] values, int size) {
+        this.values = values;
+        this.words = null;
+        this.base = 0;
+        this.size = size;
+    }
+
+    private SortedIntSet(long[] words, int base, int size) {
+        this.values = null;
+        this.words = words;
+        this.base = base;
+        this.size = size;
+    }
+
+    /**
+     * Set of values[0..count) in any order, duplicates allowed - O(count log count)
+     */
+    public static SortedIntSet of(int[] values, int count) {
+        int[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || sorted[unique - 1] != sorted[i]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return fromSorted(sorted, unique);
+    }
+
+    /**
+     * Set of strictly increasing sortedValues[0..count) - O(count); the array is used as is, not copied
+     */
+    public static SortedIntSet fromSorted(int[] sortedValues, int count) {
+        if (count == 0) return EMPTY;
+        long span = (long) sortedValues[count - 1] - sortedValues[0] + 1;
+        if (count < 64 || span > (long) count * BITMAP_DENSITY) {
+            return new SortedIntSet(sortedValues, count);
+        }
+        // Base rounded down to a multiple of 64, so bitmaps of different sets line up word for word
+        int base = Math.floorDiv(sortedValues[0], 64) * 64;
+        long[] words = new long[(int) (((long) sortedValues[count - 1] - base) / 64 + 1)];
+        for (int i = 0; i < count; i++) {
+            long offset = (long) sortedValues[i] - base;
+            words[(int) (offset >>> 6)] |= 1L << offset;
+        }
+        return new SortedIntSet(words, base, count);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * True if the set is stored as a bitmap
+     */
+    public boolean isBitmap() {
+        return words != null;
+    }
+
+    /**
+     * Membership test - O(1) for a bitmap, O(log n) for an array
+     */
+    public boolean contains(int value) {
+        if (words == null) return Arrays.binarySearch(values, 0, size, value) >= 0;
+        long offset = (long) value - base;
+        if (offset < 0 || offset >= (long) words.length * 64) return false;
+        return (words[(int) (offset >>> 6)] & (1L << offset)) != 0;
+    }
+
+    /**
+     * The values in increasing order - O(size), or O(span / 64 + size) for a bitmap
+     */
+    public int[] toArray() {
+        if (words == null) return Arrays.copyOf(values, size);
+        int[] result = new int[size];
+        int n = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                result[n++] = base + w * 64 + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Values in both sets (see the class comment for the algorithm chosen)
+     */
+    public SortedIntSet intersect(SortedIntSet other) {
+        if (size == 0 || other.size == 0) return EMPTY;
+        if (words != null && other.words != null) return andBitmaps(this, other);
+        if (words != null) return probe(other, this);
+        if (other.words != null) return probe(this, other);
+
+        SortedIntSet small = size <= other.size ? this : other;
+        SortedIntSet large = small == this ? other : this;
+        if (large.size / small.size >= GALLOP_RATIO) return gallop(small, large);
+        return merge(small, large);
+    }
+
+    /**
+     * Values in every set - smallest sets first, stopping as soon as the result is empty
+     */
+    public static SortedIntSet intersectAll(SortedIntSet... sets) {
+        if (sets.length == 0) throw new IllegalArgumentException("intersectAll needs at least one set");
+        SortedIntSet[] bySize = sets.clone();
+        Arrays.sort(bySize, (a, b) -> Integer.compare(a.size, b.size));
+        SortedIntSet result = bySize[0];
+        for (int i = 1; i < bySize.length && !result.isEmpty(); i++) {
+            result = result.intersect(bySize[i]);
+        }
+        return result;
+    }
+
+    private static SortedIntSet merge(SortedIntSet a, SortedIntSet b) {
+        int[] out = new int[Math.min(a.size, b.size)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            int x = a.values[i];
+            int y = b.values[j];
+            if (x < y) {
+                i++;
+            } else if (x > y) {
+                j++;
+            } else {
+                out[n++] = x;
+                i++;
+                j++;
+            }
+        }
+        return fromSorted(out, n);
+    }
+
+    private static SortedIntSet gallop(SortedIntSet small, SortedIntSet large) {
+        int[] out = new int[small.size];
+        int n = 0;
+        int from = 0;
+        for (int i = 0; i < small.size && from < large.size; i++) {
+            int target = small.values[i];
+            // Double the step until large.values[from + step] >= target, then binary search that range
+            int step = 1;
+            while (from + step < large.size && large.values[from + step] < target) {
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(large.values, from + (step >>> 1), Math.min(from + step + 1, large.size), target);
+            if (found >= 0) {
+                out[n++] = target;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+        }
+        return fromSorted(out, n);
+    }
+
+    private static SortedIntSet probe(SortedIntSet array, SortedIntSet bitmap) {
+        int[] out = new int[array.size];
+        int n = 0;
+        for (int i = 0; i < array.size; i++) {
+            if (bitmap.contains(array.values[i])) {
+                out[n++] = array.values[i];
+            }
+        }
+        return fromSorted(out, n);
+    }
+
+    private static SortedIntSet andBitmaps(SortedIntSet a, SortedIntSet b) {
+        // Both bases are multiples of 64, so word w of a lines up with word w + shift of b
+        int shift = (a.base - b.base) / 64;
+        int from = Math.max(0, -shift);
+        int to = Math.min(a.words.length, b.words.length - shift);
+        if (from >= to) return EMPTY;
+        long[] out = new long[to - from];
+        int count = 0;
+        for (int w = from; w < to; w++) {
+            out[w - from] = a.words[w] & b.words[w + shift];
+            count += Long.bitCount(out[w - from]);
+        }
+        if (count == 0) return EMPTY;
+        SortedIntSet result = new SortedIntSet(out, a.base + from * 64, count);
+        // A sparse result goes back to array form
+        return (long) out.length * 64 > (long) count * BITMAP_DENSITY ? fromSorted(result.toArray(), count) : result;
+    }
+}
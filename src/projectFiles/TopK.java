@@ -0,0 +1,166 @@
+package projectFiles;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Phase II: Top-K queries - the K best products or orders by a metric, returned as a list, best first.
+ * A metric with a secondary index is answered by walking that index backwards and stopping after K
+ * matches, O(log n + K) without a filter:
+ *   products by RATING (productTreeByRating), REVIEW_COUNT (productTreeByReviewCount), PRICE (productTreeByPrice)
+ * A metric without one is computed for every candidate and kept in a bounded min-heap of size K,
+ * O(n log K) instead of sorting everything:
+ *   products by REVENUE, orders by REVENUE and PRICE
+ * The optional filter restricts the candidates (for example one price band or in-stock products);
+ * an index walk then skips the products it rejects.
+ * Equal values come out in index order for index walks and in ID order for the heap.
+ * Reads the secondary indexes, so queries must come from the thread that makes the changes.
+ */
+public class TopK {
+
+    public enum Metric {
+        // Average review rating (products)
+        RATING,
+        // Number of reviews (products)
+        REVIEW_COUNT,
+        // Product price, or an order's total price whatever its status
+        PRICE,
+        // Total price of the orders that are not canceled: per order, or per product its share of those totals
+        REVENUE
+    }
+
+    /**
+     * The k best products by metric - see the class comment for the cost of each metric
+     */
+    public static LinkedList<Product> topProducts(Metric metric, int k) {
+        return topProducts(metric, k, p -> true);
+    }
+
+    /**
+     * The k best products by metric among those the filter accepts
+     */
+    public static LinkedList<Product> topProducts(Metric metric, int k, Predicate<? super Product> filter) {
+        switch (metric) {
+            case RATING:
+                return reverseScan(Product.productTreeByRating, k, filter);
+            case REVIEW_COUNT:
+                return reverseScan(Product.productTreeByReviewCount, k, filter);
+            case PRICE:
+                return reverseScan(Product.productTreeByPrice, k, filter);
+            case REVENUE:
+                IntHashIndex<double[]> revenue = productRevenue();
+                return boundedHeap(Product.productTree.snapshot(), k, filter, p -> p.productId, p -> {
+                    double[] total = revenue.get(p.productId);
+                    return total == null ? 0 : total[0];
+                });
+            default:
+                throw new IllegalArgumentException("Unsupported product metric: " + metric);
+        }
+    }
+
+    /**
+     * The k best orders by REVENUE (canceled orders excluded) or PRICE - O(M log k)
+     */
+    public static LinkedList<Order> topOrders(Metric metric, int k) {
+        return topOrders(metric, k, o -> true);
+    }
+
+    /**
+     * The k best orders by REVENUE or PRICE among those the filter accepts - O(M log k)
+     */
+    public static LinkedList<Order> topOrders(Metric metric, int k, Predicate<? super Order> filter) {
+        switch (metric) {
+            case REVENUE:
+                return boundedHeap(Order.orderTree.snapshot(), k, o -> !o.status.equals("canceled") && filter.test(o),
+                        o -> o.orderId, o -> o.totalPrice);
+            case PRICE:
+                return boundedHeap(Order.orderTree.snapshot(), k, filter, o -> o.orderId, o -> o.totalPrice);
+            default:
+                throw new IllegalArgumentException("Unsupported order metric: " + metric);
+        }
+    }
+
+    /**
+     * Walk an index from its largest key down, taking up to k accepted entries - O(log n + scanned)
+     */
+    private static <T, B extends Iterable<T>> LinkedList<T> reverseScan(AVLTree<?, B> index, int k, Predicate<? super T> filter) {
+        LinkedList<T> result = new LinkedList<T>();
+        int remaining = k;
+        Iterator<B> buckets = index.descendingIterator();
+        while (remaining > 0 && buckets.hasNext()) {
+            Iterator<T> bucket = buckets.next().iterator();
+            while (remaining > 0 && bucket.hasNext()) {
+                T item = bucket.next();
+                if (filter.test(item)) {
+                    result.append(item);
+                    remaining--;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keep the k best accepted items in a min-heap whose head is the worst kept - O(n log k)
+     */
+    private static <T> LinkedList<T> boundedHeap(Iterable<T> items, int k, Predicate<? super T> filter,
+                                                 ToIntFunction<T> id, ToDoubleFunction<T> value) {
+        LinkedList<T> result = new LinkedList<T>();
+        if (k <= 0) return result;
+
+        // Worse = smaller value, or the same value and a larger ID
+        Comparator<T> worstFirst = Comparator.comparingDouble(value).thenComparing(Comparator.comparingInt(id).reversed());
+        PriorityQueue<T> heap = new PriorityQueue<T>(Math.min(k, 1024), worstFirst);
+        for (T item : items) {
+            if (!filter.test(item)) continue;
+            if (heap.size() < k) {
+                heap.add(item);
+            } else if (worstFirst.compare(item, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(item);
+            }
+        }
+
+        // Drain worst first, filling the array from the back
+        @SuppressWarnings("unchecked")
+        T[] best = (T[]) new Object[heap.size()];
+        for (int i = best.length - 1; i >= 0; i--) {
+            best[i] = heap.poll();
+        }
+        for (T item : best) {
+            result.append(item);
+        }
+        return result;
+    }
+
+    /**
+     * Revenue per product ID, taken from the order totals so it agrees with topOrders(REVENUE) - O(M * L).
+     * Each order that is not canceled splits its totalPrice over its units in proportion to their current
+     * prices (equally if they are all 0). The products' revenues therefore add up to the orders' revenue,
+     * and a later price change only moves revenue between the products of an order, never changes its total.
+     */
+    private static IntHashIndex<double[]> productRevenue() {
+        IntHashIndex<double[]> revenue = new IntHashIndex<double[]>(Product.productTree.size());
+        for (Order o : Order.orderTree.snapshot()) {
+            if (o.status.equals("canceled") || o.products.empty()) continue;
+            double priceSum = 0;
+            for (Product p : o.products) {
+                priceSum += p.price;
+            }
+            int units = o.products.size();
+            for (Product p : o.products) {
+                double[] total = revenue.get(p.productId);
+                if (total == null) {
+                    total = new double[1];
+                    revenue.put(p.productId, total);
+                }
+                total[0] += priceSum > 0 ? o.totalPrice * (p.price / priceSum) : o.totalPrice / units;
+            }
+        }
+        return revenue;
+    }
+}
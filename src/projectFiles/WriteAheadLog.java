@@ -0,0 +1,556 @@
+package projectFiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Phase II: Append-only write-ahead log of the data-changing operations, replayed on top of a DataSnapshot.
+ * Each public mutation (addProduct, updateProduct, removeProduct, addCustomer, updateCustomer, placeOrder,
+ * cancelOrder, updateOrderStatus, addReviewToProduct, editReview) records its arguments here once its
+ * checks have passed, just before it changes anything, while a log is open. A rejected call (duplicate ID,
+ * unknown customer or product, insufficient stock, invalid status, ...) is not logged. Replaying calls the same methods with the same arguments in the
+ * same order; they are deterministic (new IDs come from maxOrderId/maxReviewId), so the trees end up as they were.
+ *
+ * Layout (big-endian): long magic, int version, long snapshot checksum, then records of
+ * (int length, int CRC32 of the payload, payload = byte operation + arguments). Reading stops at the first
+ * short or corrupt record: that is where a crash cut the last write, and open() truncates it away.
+ * A log that still holds records for another snapshot is never replaced: it has to be replayed on top of
+ * its snapshot, or discarded once a newer snapshot contains its changes.
+ *
+ * Group commit: records are appended to an in-memory group, and one flusher thread writes and fsyncs
+ * the whole group at once. A group is synced once it holds groupSize records or its oldest record is
+ * groupMillis old (0 = as soon as the flusher is free, so writers arriving during an fsync share the next one).
+ * With waitForSync a mutation returns only after its record is on disk; without it, it returns at once and a
+ * crash loses at most the last group. Mutations append their records while holding EntityLock, so the log
+ * order is the order the changes were applied in. A mutation waits for its fsync only after releasing the
+ * lock, so writers from other threads can apply their changes and join the same group meanwhile.
+ */
+public class WriteAheadLog {
+
+    private static final long MAGIC = 0x435343323132574CL; // "CSC212WL"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8 + 4 + 8;
+
+    static final byte ADD_PRODUCT = 1;
+    static final byte UPDATE_PRODUCT = 2;
+    static final byte REMOVE_PRODUCT = 3;
+    static final byte ADD_CUSTOMER = 4;
+    static final byte UPDATE_CUSTOMER = 5;
+    static final byte PLACE_ORDER = 6;
+    static final byte CANCEL_ORDER = 7;
+    static final byte UPDATE_ORDER_STATUS = 8;
+    static final byte ADD_REVIEW = 9;
+    static final byte EDIT_REVIEW = 10;
+
+    // The log the mutations write to; null while none is open (e.g. during CSV loading and replay)
+    private static volatile WriteAheadLog active;
+    // The last record this thread appended while holding EntityLock, synced once it lets go (see awaitPending)
+    private static final ThreadLocal<Pending> PENDING = new ThreadLocal<Pending>();
+
+    private final FileChannel channel;
+    private final long snapshotChecksum;
+    private final int groupSize;
+    private final long groupMillis;
+    private final boolean waitForSync;
+    private final Thread flusher;
+
+    // Guarded by this
+    private ByteArrayOutputStream group = new ByteArrayOutputStream();
+    private int groupRecords;
+    private long groupStarted;
+    private long appended, synced, syncs;
+    private boolean closed;
+    private IOException failure;
+
+    private WriteAheadLog(FileChannel channel, long snapshotChecksum, int groupSize, long groupMillis, boolean waitForSync) {
+        this.channel = channel;
+        this.snapshotChecksum = snapshotChecksum;
+        this.groupSize = Math.max(1, groupSize);
+        this.groupMillis = Math.max(0, groupMillis);
+        this.waitForSync = waitForSync;
+        flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Open the log at path for changes on top of the snapshot with the given checksum, and make it the one
+     * the mutations write to - O(existing log size)
+     * A log for the same snapshot is continued after its last intact record. A log for another snapshot is
+     * replaced only if it holds no records; otherwise IOException is thrown and the file is left as it is.
+     */
+    public static WriteAheadLog open(String path, long snapshotChecksum, int groupSize, long groupMillis, boolean waitForSync) throws IOException {
+        if (active != null) throw new IllegalStateException("a write-ahead log is already open");
+        WriteAheadLog log = create(path, snapshotChecksum, groupSize, groupMillis, waitForSync);
+        active = log;
+        return log;
+    }
+
+    /**
+     * Open a log file without routing the mutations to it (used by open and the benchmark)
+     */
+    static WriteAheadLog create(String path, long snapshotChecksum, int groupSize, long groupMillis, boolean waitForSync) throws IOException {
+        long end = -1;
+        try {
+            end = scan(path, snapshotChecksum, null);
+        } catch (IOException e) {
+            // Missing, unreadable or for another snapshot: start a new log, unless that would lose changes
+            if (holdsRecords(path)) {
+                throw new IOException(path + " holds changes for another snapshot; not replacing it", e);
+            }
+        }
+        if (end < 0) {
+            File temp = new File(path + ".tmp");
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putLong(MAGIC).putInt(VERSION).putLong(snapshotChecksum).flip();
+                while (header.hasRemaining()) out.write(header);
+                out.force(true);
+            }
+            Files.move(temp.toPath(), new File(path).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            end = HEADER_BYTES;
+        }
+        FileChannel channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.WRITE);
+        channel.truncate(end);
+        channel.position(end);
+        return new WriteAheadLog(channel, snapshotChecksum, groupSize, groupMillis, waitForSync);
+    }
+
+    /**
+     * True if path is a log for the snapshot with the given checksum holding at least one intact record - O(file size)
+     */
+    public static boolean hasRecords(String path, long snapshotChecksum) {
+        try {
+            return scan(path, snapshotChecksum, null) > HEADER_BYTES;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * True if path is a log holding at least one intact record, whichever snapshot it belongs to
+     */
+    private static boolean holdsRecords(String path) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(path))) {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION) return false;
+            return hasRecords(path, in.readLong());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Delete the log at path once a newer snapshot contains its changes; a log for any other snapshot
+     * (or no log) is left alone, so open() keeps refusing to replace it
+     */
+    public static void discard(String path, long snapshotChecksum) throws IOException {
+        if (active != null) throw new IllegalStateException("discard needs the write-ahead log closed");
+        try {
+            scan(path, snapshotChecksum, null);
+        } catch (IOException e) {
+            return;
+        }
+        Files.delete(new File(path).toPath());
+    }
+
+    /**
+     * Apply every intact record of the log at path to the trees, which must hold the snapshot with
+     * the given checksum - O(records * cost of each operation)
+     * Returns the number of records applied (0 if there is no log). The mutations' console output is muted.
+     * Throws IOException, without applying anything, if the log belongs to another snapshot.
+     */
+    public static int replay(String path, long snapshotChecksum) throws IOException {
+        if (active != null) throw new IllegalStateException("replay needs the write-ahead log closed");
+        if (!new File(path).isFile()) return 0;
+
+        java.util.List<byte[]> records = new java.util.ArrayList<>();
+        scan(path, snapshotChecksum, records);
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        try {
+            for (byte[] record : records) {
+                apply(record);
+            }
+        } finally {
+            System.setOut(console);
+        }
+        return records.size();
+    }
+
+    /**
+     * Check the header and collect the intact records (if records is not null) - O(file size)
+     * Returns the offset just past the last intact record.
+     */
+    private static long scan(String path, long snapshotChecksum, java.util.List<byte[]> records) throws IOException {
+        try (DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(new FileInputStream(path), 1 << 16))) {
+            long length = new File(path).length();
+            try {
+                if (in.readLong() != MAGIC) throw new IOException(path + " is not a write-ahead log");
+                int version = in.readInt();
+                if (version != VERSION) throw new IOException(path + " has log version " + version + ", expected " + VERSION);
+                if (in.readLong() != snapshotChecksum) throw new IOException(path + " was written against another snapshot");
+            } catch (EOFException e) {
+                throw new IOException(path + " is truncated", e);
+            }
+
+            long end = HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            while (true) {
+                int size;
+                int expected;
+                byte[] payload;
+                try {
+                    size = in.readInt();
+                    expected = in.readInt();
+                    if (size <= 0 || size > length - end - 8) break;
+                    payload = new byte[size];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, size);
+                if ((int) crc.getValue() != expected) break;
+                if (payload[0] < ADD_PRODUCT || payload[0] > EDIT_REVIEW) break;
+                if (records != null) records.add(payload);
+                end += 8 + size;
+            }
+            return end;
+        }
+    }
+
+    private static void apply(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(record));
+        byte operation = in.readByte();
+        switch (operation) {
+            case ADD_PRODUCT:
+                Product.addProduct(new Product(in.readInt(), readString(in), in.readDouble(), in.readInt()));
+                break;
+            case UPDATE_PRODUCT:
+                Product.updateProduct(in.readInt(), in.readDouble(), in.readInt());
+                break;
+            case REMOVE_PRODUCT:
+                Product.removeProduct(in.readInt());
+                break;
+            case ADD_CUSTOMER:
+                Customer.addCustomer(new Customer(in.readInt(), readString(in), readString(in)));
+                break;
+            case UPDATE_CUSTOMER:
+                Customer.updateCustomer(in.readInt(), readString(in), readString(in));
+                break;
+            case PLACE_ORDER:
+                Customer.placeOrder(in.readInt(), in.readInt(), in.readInt(), readString(in));
+                break;
+            case CANCEL_ORDER:
+                Order.cancelOrder(in.readInt());
+                break;
+            case UPDATE_ORDER_STATUS:
+                Order.updateOrderStatus(in.readInt(), readString(in));
+                break;
+            case ADD_REVIEW:
+                Customer.addReviewToProduct(in.readInt(), in.readInt(), in.readDouble(), readString(in));
+                break;
+            case EDIT_REVIEW:
+                Review.editReview(in.readInt(), in.readDouble(), readString(in));
+                break;
+            default:
+                throw new IOException("unknown operation " + operation + " in write-ahead log");
+        }
+    }
+
+    // Called by the mutations after their checks pass, before they change anything; no-ops while no log is open
+
+    static void logAddProduct(Product p) {
+        WriteAheadLog log = active;
+        if (log == null) return;
+        log.write(new Record(ADD_PRODUCT).writeInt(p.productId).writeString(p.name).writeDouble(p.price).writeInt(p.stock));
+    }
+
+    static void logUpdateProduct(int id, double newPrice, int newStock) {
+        WriteAheadLog log = active;
+        if (log == null) return;
+        log.write(new Record(UPDATE_PRODUCT).writeInt(id).writeDouble(newPrice).writeInt(newStock));
+    }
+
+    static void logRemoveProduct(int id) {
+        WriteAheadLog log = active;
+        if (log == null) return;
+        log.write(new Record(REMOVE_PRODUCT).writeInt(id));
+    }
+
+    static void logAddCustomer(Customer c) {
+        WriteAheadLog log = active;
+        if (log == null) return;
+        log.write(new Record(ADD_CUSTOMER).writeInt(c.customerId).writeString(c.name).writeString(c.email));
+    }
+
+    static void logUpdateCustomer(int id, String newName, String newEmail) {
+        WriteAheadLog log = active;
+        if (log == null) return;
+        log.write(new Record(UPDATE_CUSTOMER).writeInt(id).writeString(newName).writeString(newEmail));
+    }
+
+    static void logPlaceOrder(int customerId, int productId, int quantity, String orderDate) {
+        WriteAheadLog log = active;
+        if (log == null) return;
+        log.write(new Record(PLACE_ORDER).writeInt(customerId).writeInt(productId).writeInt(quantity).writeString(orderDate));
+    }
+
+    static void logCancelOrder(int id) {
+        WriteAheadLog log = active;
+        if (log == null) return;
+        log.write(new Record(CANCEL_ORDER).writeInt(id));
+    }
+
+    static void logUpdateOrderStatus(int id, String newStatus) {
+        WriteAheadLog log = active;
+        if (log == null) return;
+        log.write(new Record(UPDATE_ORDER_STATUS).writeInt(id).writeString(newStatus));
+    }
+
+    static void logAddReview(int customerId, int productId, double rating, String comment) {
+        WriteAheadLog log = active;
+        if (log == null) return;
+        log.write(new Record(ADD_REVIEW).writeInt(customerId).writeInt(productId).writeDouble(rating).writeString(comment));
+    }
+
+    static void logEditReview(int reviewId, double newRating, String newComment) {
+        WriteAheadLog log = active;
+        if (log == null) return;
+        log.write(new Record(EDIT_REVIEW).writeInt(reviewId).writeDouble(newRating).writeString(newComment));
+    }
+
+    /**
+     * Append one record to the current group, then wait for its fsync if waitForSync is set - O(record size)
+     * Throws UncheckedIOException if an earlier write or fsync failed; the log then accepts nothing more.
+     */
+    void write(Record record) {
+        long sequence = append(record.framed());
+        if (!waitForSync) return;
+        if (EntityLock.isHeldByCurrentThread()) {
+            PENDING.set(new Pending(this, sequence));
+        } else {
+            awaitSync(sequence);
+        }
+    }
+
+    /**
+     * Wait for the fsync of the last record this thread appended while holding EntityLock, which covers
+     * every earlier one; called by EntityLock.unlock once the outermost hold is released.
+     * Throws UncheckedIOException if the write or fsync failed (the change itself has been applied).
+     */
+    static void awaitPending() {
+        Pending pending = PENDING.get();
+        if (pending == null) return;
+        PENDING.remove();
+        pending.log.awaitSync(pending.sequence);
+    }
+
+    private static final class Pending {
+        final WriteAheadLog log;
+        final long sequence;
+
+        Pending(WriteAheadLog log, long sequence) {
+            this.log = log;
+            this.sequence = sequence;
+        }
+    }
+
+    private synchronized long append(byte[] framed) {
+        if (failure != null) throw new UncheckedIOException("write-ahead log failed", failure);
+        if (closed) throw new IllegalStateException("write-ahead log is closed");
+        if (groupRecords == 0) groupStarted = System.nanoTime();
+        group.write(framed, 0, framed.length);
+        groupRecords++;
+        appended++;
+        if (groupRecords >= groupSize || groupMillis == 0) notifyAll();
+        return appended;
+    }
+
+    private synchronized void awaitSync(long sequence) {
+        boolean interrupted = false;
+        while (synced < sequence && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (synced < sequence) throw new UncheckedIOException("write-ahead log failed", failure);
+    }
+
+    /**
+     * Flusher thread: take the group once it is due, write and fsync it outside the lock
+     * (so writers can fill the next group meanwhile), then wake the writers waiting on it
+     */
+    private void flushLoop() {
+        while (true) {
+            byte[] bytes;
+            long upTo;
+            synchronized (this) {
+                while (!groupDue()) {
+                    try {
+                        if (groupRecords == 0) {
+                            wait();
+                        } else {
+                            long waited = (System.nanoTime() - groupStarted) / 1000000;
+                            wait(Math.max(1, groupMillis - waited));
+                        }
+                    } catch (InterruptedException e) {
+                        // Only close() ends the loop
+                    }
+                }
+                if (groupRecords == 0) return; // closed and drained
+                bytes = group.toByteArray();
+                group.reset();
+                groupRecords = 0;
+                upTo = appended;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                synced = upTo;
+                syncs++;
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean groupDue() {
+        if (closed) return true;
+        if (groupRecords == 0) return false;
+        return groupRecords >= groupSize || groupMillis == 0
+                || System.nanoTime() - groupStarted >= groupMillis * 1000000;
+    }
+
+    /**
+     * Sync what is left and close the file; mutations stop being logged
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (active == this) active = null;
+        channel.close();
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Checksum of the snapshot this log's changes apply to
+     */
+    public long snapshotChecksum() {
+        return snapshotChecksum;
+    }
+
+    /**
+     * Number of records appended and of fsyncs done so far (records per fsync = group size achieved)
+     */
+    public synchronized long records() {
+        return appended;
+    }
+
+    public synchronized long syncs() {
+        return syncs;
+    }
+
+    /**
+     * One log record being built: operation byte, then the arguments
+     */
+    static final class Record {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Record(byte operation) {
+            bytes.write(operation);
+        }
+
+        Record writeInt(int v) {
+            try {
+                out.writeInt(v);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        Record writeDouble(double v) {
+            try {
+                out.writeDouble(v);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        /**
+         * int byte length + UTF-8, -1 for null (as in DataSnapshot)
+         */
+        Record writeString(String s) {
+            if (s == null) return writeInt(-1);
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            writeInt(utf8.length);
+            bytes.write(utf8, 0, utf8.length);
+            return this;
+        }
+
+        /**
+         * length, CRC32, payload
+         */
+        byte[] framed() {
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            return ByteBuffer.allocate(8 + payload.length).putInt(payload.length).putInt((int) crc.getValue()).put(payload).array();
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        if (length > in.available()) throw new IOException("bad string length " + length + " in write-ahead log");
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
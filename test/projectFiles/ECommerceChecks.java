@@ -0,0 +1,1270 @@
+package projectFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Phase II: Behavior checks for the data structures and indexes, kept out of the interactive menu.
+ * Each check compares a structure with a plain reference (a java.util collection, a full sort or a
+ * linear filter) and throws AssertionError at the first difference. main runs every check and exits
+ * with status 1 if any failed, so it can gate a build:
+ *   javac -d out src/projectFiles/*.java test/projectFiles/*.java
+ *   java -cp out projectFiles.ECommerceChecks
+ * The entity checks load the CSV files from the working directory, so run it from the project root.
+ * The write-ahead log check works in a temporary directory and replays logs in child JVMs
+ * (main with --replay), since a snapshot can only be loaded into empty trees.
+ * The timings stay in the menu's performance comparison (option 28); nothing here is timed.
+ */
+public class ECommerceChecks {
+
+    private interface Check {
+        void run() throws Exception;
+    }
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 4 && args[0].equals("--replay")) {
+            replayInto(args[1], args[2], args[3]);
+            return;
+        }
+        run("LinkedList append, insert, remove and size", ECommerceChecks::checkLinkedList);
+        run("AVLTree rank, select and countInRange", ECommerceChecks::checkRankSelect);
+        run("AVLTree range cursors and streams", ECommerceChecks::checkRangeCursors);
+        run("AVLTree subtree aggregates", ECommerceChecks::checkAggregates);
+        run("AVLTree split, join and set operations", ECommerceChecks::checkSplitJoin);
+        run("IntAVLTree against TreeMap", ECommerceChecks::checkIntAVLTree);
+        run("ArrayIntAVLTree against TreeMap, with slot reuse", ECommerceChecks::checkArrayIntAVLTree);
+        run("BPlusTree against TreeMap", ECommerceChecks::checkBPlusTree);
+        run("ConcurrentIntAVLTree under concurrent readers and writers", ECommerceChecks::checkConcurrentIndex);
+        run("CSVTokenizer records and numeric fields", ECommerceChecks::checkCsvTokenizer);
+        run("SortedIntSet against TreeSet", ECommerceChecks::checkSortedIntSet);
+
+        run("Load the CSV files", ECommerceChecks::loadData);
+        run("Per-customer order index", ECommerceChecks::checkOrdersByCustomer);
+        run("Per-customer review index", ECommerceChecks::checkReviewsByCustomer);
+        run("Date and price aggregates", ECommerceChecks::checkEntityAggregates);
+        run("Rating sums and rating index", ECommerceChecks::checkRatingIndex);
+        run("Top-K ordering", ECommerceChecks::checkTopK);
+        run("Indexes after edits", ECommerceChecks::checkAfterEdits);
+        run("Write-ahead log records, replay and torn tails", ECommerceChecks::checkWriteAheadLog);
+        run("placeOrder and updateProduct from concurrent threads", ECommerceChecks::checkConcurrentMutations);
+
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    private static void run(String name, Check check) {
+        try {
+            check.run();
+            System.out.println("PASS " + name);
+        } catch (Exception | AssertionError e) {
+            failures++;
+            System.out.println("FAIL " + name + ": " + e);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+
+    private static void checkClose(double actual, double expected, String message) {
+        check(Math.abs(actual - expected) <= 1e-6 * Math.max(1, Math.abs(expected)), message + ": " + actual + " != " + expected);
+    }
+
+    private static <T> java.util.List<T> toList(Iterator<T> it) {
+        java.util.List<T> result = new ArrayList<T>();
+        while (it.hasNext()) result.add(it.next());
+        return result;
+    }
+
+    private static <T> java.util.List<T> toList(Iterable<T> items) {
+        return toList(items.iterator());
+    }
+
+    /**
+     * Run action with System.out discarded (the entity methods print their results)
+     */
+    private static void quietly(Runnable action) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        try {
+            action.run();
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    // ---------------------------------------------------------------- data structures
+
+    private static void checkLinkedList() {
+        LinkedList<Integer> list = new LinkedList<Integer>();
+        java.util.List<Integer> reference = new ArrayList<Integer>();
+        check(list.empty() && list.size() == 0, "new list not empty");
+        for (int i = 0; i < 1000; i++) {
+            list.append(i);
+            reference.add(i);
+        }
+        // insert() goes after current, which append() leaves on the head
+        list.insert(-1);
+        reference.add(1, -1);
+        check(list.retrieve() == -1, "insert did not move current to the new element");
+
+        // Remove the tail, then append: the tail reference must have moved back
+        list.findFirst();
+        while (!list.last()) list.findNext();
+        list.remove();
+        reference.remove(reference.size() - 1);
+        list.append(5000);
+        reference.add(5000);
+
+        // Remove the head and one element in the middle
+        list.findFirst();
+        list.remove();
+        reference.remove(0);
+        for (int i = 0; i < 300; i++) list.findNext();
+        reference.remove((int) list.retrieve());
+        list.remove();
+
+        check(list.size() == reference.size(), "size " + list.size() + ", expected " + reference.size());
+        check(toList(list).equals(reference), "contents differ from the reference");
+        check(list.stream().count() == reference.size(), "stream count differs from size");
+        check(list.parallelStream().mapToLong(Integer::longValue).sum()
+                == reference.stream().mapToLong(Integer::longValue).sum(), "parallel stream sum differs");
+    }
+
+    private static AVLTree<Integer, Integer> randomTree(TreeMap<Integer, Integer> reference, int operations, int keySpace, long seed) {
+        AVLTree<Integer, Integer> tree = new AVLTree<Integer, Integer>();
+        Random random = new Random(seed);
+        for (int i = 0; i < operations; i++) {
+            int key = random.nextInt(keySpace);
+            if (random.nextInt(3) == 0) {
+                tree.delete(key);
+                reference.remove(key);
+            } else {
+                tree.insert(key, key * 10);
+                reference.put(key, key * 10);
+            }
+        }
+        return tree;
+    }
+
+    private static void checkRankSelect() {
+        TreeMap<Integer, Integer> reference = new TreeMap<Integer, Integer>();
+        AVLTree<Integer, Integer> tree = randomTree(reference, 50000, 20000, 5);
+        tree.checkInvariants();
+        check(tree.size() == reference.size(), "size " + tree.size() + ", expected " + reference.size());
+
+        java.util.List<Integer> keys = new ArrayList<Integer>(reference.keySet());
+        for (int i = 0; i < keys.size(); i++) {
+            int key = keys.get(i);
+            check(tree.selectKey(i) == key, "selectKey(" + i + ")");
+            check(tree.select(i) == key * 10, "select(" + i + ")");
+            check(tree.rank(key) == i, "rank(" + key + ")");
+        }
+        check(tree.select(-1) == null && tree.select(keys.size()) == null, "select out of range is not null");
+
+        Random random = new Random(6);
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(22000) - 1000;
+            check(tree.rank(key) == reference.headMap(key).size(), "rank(" + key + ") of an absent key");
+            int min = random.nextInt(22000) - 1000;
+            int max = min + random.nextInt(3000) - 500;
+            int expected = min > max ? 0 : reference.subMap(min, true, max, true).size();
+            check(tree.countInRange(min, max) == expected, "countInRange(" + min + ", " + max + ")");
+        }
+    }
+
+    private static void checkRangeCursors() {
+        TreeMap<Integer, Integer> reference = new TreeMap<Integer, Integer>();
+        AVLTree<Integer, Integer> tree = randomTree(reference, 30000, 10000, 7);
+
+        Random random = new Random(8);
+        for (int i = 0; i < 500; i++) {
+            int min = random.nextInt(11000) - 500;
+            int max = min + random.nextInt(2000);
+            java.util.List<Integer> ascending = new ArrayList<Integer>(reference.subMap(min, true, max, true).values());
+            java.util.List<Integer> descending = new ArrayList<Integer>(reference.subMap(min, true, max, true).descendingMap().values());
+            check(toList(tree.rangeIterator(min, max)).equals(ascending), "rangeIterator(" + min + ", " + max + ")");
+            check(toList(tree.rangeIterator(min, max, true)).equals(descending), "descending rangeIterator(" + min + ", " + max + ")");
+            check(tree.rangeStream(min, max).collect(Collectors.toList()).equals(ascending), "rangeStream(" + min + ", " + max + ")");
+            check(tree.rangeStream(min, max).parallel().collect(Collectors.toList()).equals(ascending), "parallel rangeStream(" + min + ", " + max + ")");
+            check(toList(tree.rangeQuery(min, max)).equals(ascending), "rangeQuery(" + min + ", " + max + ")");
+        }
+
+        // Null bounds are open ends; a cursor that stops early has seen a prefix of the range
+        check(toList(tree.rangeIterator(null, null)).equals(new ArrayList<Integer>(reference.values())), "unbounded cursor");
+        for (int i = 0; i < 100; i++) {
+            int bound = random.nextInt(11000) - 500;
+            java.util.List<Integer> below = new ArrayList<Integer>(reference.headMap(bound, true).values());
+            java.util.List<Integer> above = new ArrayList<Integer>(reference.tailMap(bound, true).values());
+            check(toList(tree.rangeIterator(null, bound)).equals(below), "rangeIterator(null, " + bound + ")");
+            check(toList(tree.rangeIterator(bound, null)).equals(above), "rangeIterator(" + bound + ", null)");
+            check(tree.rangeStream(null, bound).collect(Collectors.toList()).equals(below), "rangeStream(null, " + bound + ")");
+            check(tree.rangeStream(bound, null).parallel().collect(Collectors.toList()).equals(above), "parallel rangeStream(" + bound + ", null)");
+            check(tree.rangeStream(null, bound).count() == below.size(), "count of rangeStream(null, " + bound + ")");
+        }
+        check(tree.rangeStream(null, null).count() == reference.size(), "unbounded rangeStream");
+        check(toList(tree.descendingIterator()).equals(new ArrayList<Integer>(reference.descendingMap().values())), "descendingIterator");
+        int start = tree.selectKey(tree.size() / 2);
+        Iterator<Integer> page = tree.rangeIterator(start, null);
+        Iterator<Integer> expected = reference.tailMap(start, true).values().iterator();
+        for (int i = 0; i < 25; i++) {
+            check(page.next().equals(expected.next()), "page from selectKey at " + i);
+        }
+
+        // Iterators fail fast once the tree changes under them
+        Iterator<Integer> stale = tree.iterator();
+        stale.next();
+        tree.insert(-5, -50);
+        try {
+            stale.next();
+            throw new AssertionError("iterator did not detect a concurrent modification");
+        } catch (ConcurrentModificationException expectedFailure) {
+            // as intended
+        }
+    }
+
+    private static void checkAggregates() {
+        Aggregator<double[]> sum = Aggregator.sum(v -> v[0]);
+        Aggregator<double[]> min = Aggregator.min(v -> v[0]);
+        Aggregator<double[]> max = Aggregator.max(v -> v[0]);
+        Aggregator<double[]> count = Aggregator.count();
+        AVLTree<Integer, double[]> tree = new AVLTree<Integer, double[]>(sum, min, max, count);
+        TreeMap<Integer, double[]> reference = new TreeMap<Integer, double[]>();
+
+        Random random = new Random(9);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000);
+            int action = random.nextInt(4);
+            if (action == 0) {
+                tree.delete(key);
+                reference.remove(key);
+            } else if (action == 1 && reference.containsKey(key)) {
+                // Changed in place: refresh() has to bring the aggregates up to date
+                reference.get(key)[0] = random.nextInt(1000);
+                tree.refresh(key);
+            } else {
+                double[] value = {random.nextInt(1000)};
+                tree.insert(key, value);
+                reference.put(key, value);
+            }
+        }
+        tree.checkInvariants();
+
+        checkClose(tree.aggregate(sum), total(reference.values(), v -> v[0]), "aggregate(sum)");
+        checkClose(tree.aggregate(count), reference.size(), "aggregate(count)");
+        for (int i = 0; i < 1000; i++) {
+            int low = random.nextInt(5200) - 100;
+            int high = low + random.nextInt(1500);
+            java.util.Collection<double[]> range = reference.subMap(low, true, high, true).values();
+            String bounds = "[" + low + ", " + high + "]";
+            checkClose(tree.rangeAggregate(sum, low, high), total(range, v -> v[0]), "sum over " + bounds);
+            checkClose(tree.rangeAggregate(count, low, high), range.size(), "count over " + bounds);
+            double expectedMin = range.stream().mapToDouble(v -> v[0]).min().orElse(min.identity());
+            double expectedMax = range.stream().mapToDouble(v -> v[0]).max().orElse(max.identity());
+            check(tree.rangeAggregate(min, low, high) == expectedMin, "min over " + bounds);
+            check(tree.rangeAggregate(max, low, high) == expectedMax, "max over " + bounds);
+        }
+    }
+
+    private static <T> double total(java.util.Collection<T> values, ToDoubleFunction<T> f) {
+        double total = 0;
+        for (T value : values) total += f.applyAsDouble(value);
+        return total;
+    }
+
+    private static void checkSplitJoin() {
+        Aggregator<Integer> sum = Aggregator.sum(v -> v);
+        Random random = new Random(10);
+        for (int round = 0; round < 50; round++) {
+            TreeMap<Integer, Integer> reference = new TreeMap<Integer, Integer>();
+            AVLTree<Integer, Integer> tree = new AVLTree<Integer, Integer>(sum);
+            int n = 1 + random.nextInt(3000);
+            for (int i = 0; i < n; i++) {
+                int key = random.nextInt(10000);
+                tree.insert(key, key);
+                reference.put(key, key);
+            }
+
+            // split keeps key < splitKey here and moves the rest, aggregates included
+            int splitKey = random.nextInt(10200) - 100;
+            AVLTree<Integer, Integer> greater = tree.split(splitKey);
+            tree.checkInvariants();
+            greater.checkInvariants();
+            check(toList(tree).equals(new ArrayList<Integer>(reference.headMap(splitKey).values())), "lower part of split(" + splitKey + ")");
+            check(toList(greater).equals(new ArrayList<Integer>(reference.tailMap(splitKey, true).values())), "upper part of split(" + splitKey + ")");
+            checkClose(greater.aggregate(sum), total(reference.tailMap(splitKey, true).values(), v -> v), "aggregate after split");
+
+            // join puts them back together
+            tree.join(greater);
+            tree.checkInvariants();
+            check(greater.isEmpty(), "join left the other tree non-empty");
+            check(toList(tree).equals(new ArrayList<Integer>(reference.values())), "join after split");
+
+            // Set operations against the same TreeMap, with batches both much smaller and about as large
+            int batchSize = random.nextBoolean() ? 1 + random.nextInt(50) : n;
+            TreeMap<Integer, Integer> batch = new TreeMap<Integer, Integer>();
+            for (int i = 0; i < batchSize; i++) {
+                int key = random.nextInt(10000);
+                batch.put(key, -key);
+            }
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                tree.union(treeOf(batch, sum));
+                reference.putAll(batch);
+            } else if (operation == 1) {
+                tree.intersection(treeOf(batch, sum));
+                reference.keySet().retainAll(batch.keySet());
+            } else {
+                tree.difference(treeOf(batch, sum));
+                reference.keySet().removeAll(batch.keySet());
+            }
+            tree.checkInvariants();
+            check(toList(tree).equals(new ArrayList<Integer>(reference.values())), "set operation " + operation + " with a batch of " + batchSize);
+        }
+
+        // Overlapping key ranges cannot be joined
+        AVLTree<Integer, Integer> low = new AVLTree<Integer, Integer>(sum);
+        AVLTree<Integer, Integer> high = new AVLTree<Integer, Integer>(sum);
+        low.insert(5, 5);
+        high.insert(5, 5);
+        try {
+            low.join(high);
+            throw new AssertionError("join of overlapping trees did not throw");
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+    }
+
+    private static AVLTree<Integer, Integer> treeOf(TreeMap<Integer, Integer> entries, Aggregator<Integer> sum) {
+        AVLTree<Integer, Integer> tree = new AVLTree<Integer, Integer>(sum);
+        for (Map.Entry<Integer, Integer> e : entries.entrySet()) {
+            tree.insert(e.getKey(), e.getValue());
+        }
+        return tree;
+    }
+
+    private static void checkIntAVLTree() {
+        IntAVLTree<Integer> tree = new IntAVLTree<Integer>();
+        TreeMap<Integer, Integer> reference = new TreeMap<Integer, Integer>();
+        Random random = new Random(11);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(20000) - 10000;
+            if (random.nextInt(3) == 0) {
+                tree.delete(key);
+                reference.remove(key);
+            } else {
+                tree.insert(key, key);
+                reference.put(key, key);
+            }
+            if (i % 20000 == 0) tree.checkInvariants();
+        }
+        tree.checkInvariants();
+        check(tree.size() == reference.size(), "size " + tree.size() + ", expected " + reference.size());
+        check(toList(tree).equals(new ArrayList<Integer>(reference.values())), "in-order contents");
+        check(toList(tree.descendingIterator()).equals(new ArrayList<Integer>(reference.descendingMap().values())), "descending contents");
+
+        java.util.List<Integer> keys = new ArrayList<Integer>(reference.keySet());
+        for (int i = 0; i < keys.size(); i += 7) {
+            check(tree.selectKey(i) == keys.get(i), "selectKey(" + i + ")");
+            check(tree.rank(keys.get(i)) == i, "rank(" + keys.get(i) + ")");
+        }
+        for (int i = 0; i < 1000; i++) {
+            int min = random.nextInt(21000) - 10500;
+            int max = min + random.nextInt(2000);
+            java.util.List<Integer> expected = new ArrayList<Integer>(reference.subMap(min, true, max, true).values());
+            check(tree.countInRange(min, max) == expected.size(), "countInRange(" + min + ", " + max + ")");
+            check(toList(tree.rangeIterator(min, max)).equals(expected), "rangeIterator(" + min + ", " + max + ")");
+            check(toList(tree.selectRange(tree.rank(min), expected.size())).equals(expected), "selectRange at rank(" + min + ")");
+        }
+        check(tree.stream().count() == reference.size() && tree.parallelStream().count() == reference.size(), "stream counts");
+
+        // buildFromSorted gives a balanced tree with the same contents, and rejects unsorted keys
+        int[] sortedKeys = new int[keys.size()];
+        Integer[] sortedValues = new Integer[keys.size()];
+        for (int i = 0; i < sortedKeys.length; i++) {
+            sortedKeys[i] = keys.get(i);
+            sortedValues[i] = keys.get(i);
+        }
+        IntAVLTree<Integer> built = new IntAVLTree<Integer>();
+        built.buildFromSorted(sortedKeys, sortedValues, sortedKeys.length);
+        built.checkInvariants();
+        check(toList(built).equals(toList(tree)), "buildFromSorted contents");
+        try {
+            built.buildFromSorted(new int[] {2, 1}, new Integer[] {2, 1}, 2);
+            throw new AssertionError("buildFromSorted accepted unsorted keys");
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+    }
+
+    /**
+     * Same mix as checkIntAVLTree on the array-backed tree. The key space is bounded, so once the free list
+     * is in use the columns must stop growing; checkInvariants also accounts for every slot handed out.
+     */
+    private static void checkArrayIntAVLTree() {
+        ArrayIntAVLTree<Integer> tree = new ArrayIntAVLTree<Integer>();
+        TreeMap<Integer, Integer> reference = new TreeMap<Integer, Integer>();
+        Random random = new Random(12);
+        int peak = 0;
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(20000) - 10000;
+            if (random.nextInt(3) == 0) {
+                tree.delete(key);
+                reference.remove(key);
+            } else {
+                tree.insert(key, key);
+                reference.put(key, key);
+            }
+            peak = Math.max(peak, reference.size());
+            if (i % 20000 == 0) tree.checkInvariants();
+            check(java.util.Objects.equals(tree.search(key), reference.get(key)), "search(" + key + ") after operation " + i);
+        }
+        tree.checkInvariants();
+        check(tree.capacity() < 2 * peak, "capacity " + tree.capacity() + " for at most " + peak + " keys; deleted slots not reused");
+        check(tree.size() == reference.size(), "size " + tree.size() + ", expected " + reference.size());
+        check(toList(tree).equals(new ArrayList<Integer>(reference.values())), "in-order contents");
+        check(toList(tree.descendingIterator()).equals(new ArrayList<Integer>(reference.descendingMap().values())), "descending contents");
+
+        java.util.List<Integer> keys = new ArrayList<Integer>(reference.keySet());
+        for (int i = 0; i < keys.size(); i += 7) {
+            check(tree.selectKey(i) == keys.get(i), "selectKey(" + i + ")");
+            check(tree.rank(keys.get(i)) == i, "rank(" + keys.get(i) + ")");
+        }
+        for (int i = 0; i < 1000; i++) {
+            int min = random.nextInt(21000) - 10500;
+            int max = min + random.nextInt(2000);
+            java.util.List<Integer> expected = new ArrayList<Integer>(reference.subMap(min, true, max, true).values());
+            check(tree.countInRange(min, max) == expected.size(), "countInRange(" + min + ", " + max + ")");
+            check(toList(tree.rangeQuery(min, max)).equals(expected), "rangeQuery(" + min + ", " + max + ")");
+            java.util.List<Integer> descending = new ArrayList<Integer>(reference.subMap(min, true, max, true).descendingMap().values());
+            check(toList(tree.rangeIterator(min, max, true)).equals(descending), "descending rangeIterator(" + min + ", " + max + ")");
+            check(toList(tree.selectRange(tree.rank(min), expected.size())).equals(expected), "selectRange at rank(" + min + ")");
+        }
+        // Open at one end only, so the iterator must still compare keys
+        for (int bound = -10500; bound <= 10500; bound += 3500) {
+            check(toList(tree.rangeIterator(Integer.MIN_VALUE, bound)).equals(new ArrayList<Integer>(reference.headMap(bound, true).values())),
+                    "rangeIterator(MIN_VALUE, " + bound + ")");
+            check(toList(tree.rangeIterator(bound, Integer.MAX_VALUE, true)).equals(new ArrayList<Integer>(reference.tailMap(bound, true).descendingMap().values())),
+                    "descending rangeIterator(" + bound + ", MAX_VALUE)");
+        }
+        check(tree.stream().count() == reference.size() && tree.parallelStream().count() == reference.size(), "stream counts");
+
+        // buildFromSorted replaces the contents (free list included), and the rebuilt tree keeps working
+        int[] sortedKeys = new int[keys.size()];
+        Integer[] sortedValues = new Integer[keys.size()];
+        for (int i = 0; i < sortedKeys.length; i++) {
+            sortedKeys[i] = keys.get(i);
+            sortedValues[i] = keys.get(i);
+        }
+        tree.buildFromSorted(sortedKeys, sortedValues, sortedKeys.length);
+        tree.checkInvariants();
+        check(toList(tree).equals(new ArrayList<Integer>(reference.values())), "buildFromSorted contents");
+        for (int i = 0; i < sortedKeys.length; i += 2) {
+            tree.delete(sortedKeys[i]);
+        }
+        for (int i = 0; i < sortedKeys.length; i += 2) {
+            tree.insert(sortedKeys[i], sortedValues[i]);
+        }
+        tree.checkInvariants();
+        check(tree.capacity() == sortedKeys.length, "capacity " + tree.capacity() + " after refilling a built tree of " + sortedKeys.length);
+        check(toList(tree).equals(new ArrayList<Integer>(reference.values())), "contents after refilling a built tree");
+        try {
+            tree.buildFromSorted(new int[] {2, 1}, new Integer[] {2, 1}, 2);
+            throw new AssertionError("buildFromSorted accepted unsorted keys");
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+    }
+
+    /**
+     * Mixed inserts, updates and deletes at small orders, so leaves and internal nodes split, borrow and merge often
+     */
+    private static void checkBPlusTree() {
+        for (int order = 4; order <= 5; order++) {
+            BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+            TreeMap<Integer, Integer> reference = new TreeMap<Integer, Integer>();
+            Random random = new Random(20 + order);
+            for (int i = 0; i < 60000; i++) {
+                // Grow for the first half, then shrink, so the tree also collapses level by level
+                int key = random.nextInt(3000);
+                int action = random.nextInt(10);
+                boolean shrinking = i >= 30000;
+                if (action < (shrinking ? 6 : 3)) {
+                    tree.delete(key);
+                    reference.remove(key);
+                } else if (action == 9) {
+                    check(tree.update(key, -key) == reference.containsKey(key), "update(" + key + ")");
+                    if (reference.containsKey(key)) reference.put(key, -key);
+                } else {
+                    tree.insert(key, key);
+                    reference.put(key, key);
+                }
+                if (i % 500 == 0) tree.checkInvariants();
+                check(tree.size() == reference.size(), "order " + order + ": size " + tree.size() + ", expected " + reference.size());
+            }
+            tree.checkInvariants();
+            String label = "order " + order + ": ";
+            check(toList(tree).equals(new ArrayList<Integer>(reference.values())), label + "in-order contents");
+            check(toList(tree.inOrderTraversal()).equals(new ArrayList<Integer>(reference.values())), label + "inOrderTraversal");
+            for (int key = -5; key < 3005; key++) {
+                check(tree.contains(key) == reference.containsKey(key), label + "contains(" + key + ")");
+                Integer value = tree.search(key);
+                check(value == null ? !reference.containsKey(key) : value.equals(reference.get(key)), label + "search(" + key + ")");
+            }
+            for (int i = 0; i < 500; i++) {
+                int min = random.nextInt(3200) - 100;
+                int max = min + random.nextInt(400);
+                java.util.List<Integer> expected = new ArrayList<Integer>(reference.subMap(min, true, max, true).values());
+                check(toList(tree.rangeIterator(min, max)).equals(expected), label + "rangeIterator(" + min + ", " + max + ")");
+                check(toList(tree.rangeQuery(min, max)).equals(expected), label + "rangeQuery(" + min + ", " + max + ")");
+                check(toList(tree.rangeIterator(null, max)).equals(new ArrayList<Integer>(reference.headMap(max, true).values())),
+                        label + "rangeIterator(null, " + max + ")");
+                check(toList(tree.rangeIterator(min, null)).equals(new ArrayList<Integer>(reference.tailMap(min, true).values())),
+                        label + "rangeIterator(" + min + ", null)");
+            }
+
+            // Empty it completely: the root has to fall back to a single empty leaf
+            for (Integer key : new ArrayList<Integer>(reference.keySet())) {
+                tree.delete(key);
+            }
+            tree.checkInvariants();
+            check(tree.isEmpty() && tree.height() == 1 && tree.getMin() == null, label + "not empty after deleting every key");
+        }
+    }
+
+    /**
+     * Four reader threads run searches, counts, page reads and full snapshot scans while two writer threads
+     * insert and delete, 2,800,000 operations in total. Each writer owns the keys with key % 2 == its number and
+     * records which of them are present, so afterwards the tree must hold exactly those keys and pass its invariant check.
+     */
+    private static void checkConcurrentIndex() throws InterruptedException {
+        final int keySpace = 200000;
+        final int writers = 2;
+        final int readers = 4;
+        final int writerOps = 400000;
+        final int readerOps = 500000;
+
+        // Start with every even key present
+        final ConcurrentIntAVLTree<Integer> tree = new ConcurrentIntAVLTree<Integer>();
+        final boolean[] present = new boolean[keySpace];
+        int[] keys = new int[keySpace / 2];
+        Integer[] values = new Integer[keySpace / 2];
+        for (int i = 0; i < keySpace / 2; i++) {
+            keys[i] = i * 2;
+            values[i] = i * 2;
+            present[i * 2] = true;
+        }
+        tree.buildFromSorted(keys, values, keySpace / 2);
+
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread[] threads = new Thread[writers + readers];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(1000 + id);
+                try {
+                    if (id < writers) {
+                        // Writer: toggle its own keys, tracking the expected state in present[]
+                        for (int i = 0; i < writerOps; i++) {
+                            int key = random.nextInt(keySpace / writers) * writers + id;
+                            if (present[key]) {
+                                tree.delete(key);
+                            } else {
+                                tree.insert(key, key);
+                            }
+                            present[key] = !present[key];
+                        }
+                    } else {
+                        // Reader: any value found must belong to its key
+                        for (int i = 0; i < readerOps; i++) {
+                            int key = random.nextInt(keySpace);
+                            if ((i & 1023) == 0) {
+                                if (tree.countInRange(key, key + 1000) > 1001) failure.compareAndSet(null, "count out of bounds");
+                                if (tree.selectRange(key / 4, 10).size() > 10) failure.compareAndSet(null, "page too long");
+                            }
+                            if ((i & 65535) == 0) {
+                                // A snapshot must stay sorted and match its own size while writers continue
+                                PersistentIntAVLTree<Integer> snapshot = tree.snapshot();
+                                int seen = 0;
+                                int previous = -1;
+                                for (Integer v : snapshot) {
+                                    if (v <= previous) failure.compareAndSet(null, "snapshot out of order at " + v);
+                                    previous = v;
+                                    seen++;
+                                }
+                                if (seen != snapshot.size()) failure.compareAndSet(null, "snapshot size " + snapshot.size() + " but iterated " + seen);
+                            }
+                            Integer value = tree.search(key);
+                            if (value != null && value != key) failure.compareAndSet(null, "search(" + key + ") returned " + value);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e.toString());
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        check(failure.get() == null, String.valueOf(failure.get()));
+
+        // join() makes the writers' present[] updates visible here
+        int expected = 0;
+        for (int key = 0; key < keySpace; key++) {
+            if (present[key]) expected++;
+            check(tree.contains(key) == present[key], "key " + key + " should " + (present[key] ? "" : "not ") + "be present");
+        }
+        check(tree.size() == expected, "size " + tree.size() + ", expected " + expected);
+        tree.checkInvariants();
+    }
+
+    private static void checkCsvTokenizer() {
+        // Each input is tokenized record by record and compared with the expected fields per record
+        String[] inputs = {
+            "1,2,3\r\n4,5,6\n",
+            "a,\"b,c\",d\n",
+            "\"He said \"\"hi\"\"\",x\r\n",
+            "\"line1\r\nline2\",z\r\nnext,row\n",
+            ",,\n\"\",\"\"\"\"\n",
+            "p,q\rr,s",
+            " 7 , \"spaced, quoted\" ,tail\n",
+        };
+        String[][][] expected = {
+            {{"1", "2", "3"}, {"4", "5", "6"}},
+            {{"a", "b,c", "d"}},
+            {{"He said \"hi\"", "x"}},
+            {{"line1\r\nline2", "z"}, {"next", "row"}},
+            {{"", "", ""}, {"", "\""}},
+            {{"p", "q"}, {"r", "s"}},
+            {{" 7 ", " spaced, quoted ", "tail"}},
+        };
+        for (int c = 0; c < inputs.length; c++) {
+            checkRecords(inputs[c], true, expected[c]);
+        }
+        // The last record of "p,q\rr,s" runs into the limit, like a line still being written
+        CSVTokenizer partial = tokenizer("p,q\rr,s", true);
+        int next = partial.next(0, 7);
+        check(partial.isComplete() && next == 4, "CR ends a record");
+        check(partial.next(next, 7) == 7 && !partial.isComplete(), "record without a line break is incomplete");
+
+        // Blank records, and plain mode: split on every comma and drop trailing empty fields, like String.split(",")
+        CSVTokenizer blank = tokenizer("  \t \nx\n", true);
+        check(blank.next(0, 6) == 5 && blank.isBlank(), "blank record");
+        checkRecords("a,\"b,c\",,\n", false, new String[][] {"a,\"b,c\",,".split(",")});
+        checkRecords("x,y,z,,\r\n", false, new String[][] {"x,y,z,,".split(",")});
+
+        // In-place numbers must match Integer.parseInt / Double.parseDouble, exceptions included
+        java.util.List<String> numbers = new ArrayList<String>(java.util.Arrays.asList(
+                "0", "42", " 42 ", "-7", "+3", "2147483647", "-2147483648", "2147483648", "12345678901",
+                "0.1", "1.5", "-0.0", "123.456789", "1.5e3", "1e-7", ".5", "5.", "9007199254740993",
+                "0.30000000000000004", "abc", "1.2.3", "-", ""));
+        Random random = new Random(17);
+        for (int i = 0; i < 2000; i++) {
+            numbers.add(Integer.toString(random.nextInt()));
+            numbers.add(Double.toString(random.nextDouble() * 10000));
+            numbers.add(String.format(java.util.Locale.ROOT, "%." + random.nextInt(8) + "f", random.nextDouble() * 1000));
+        }
+        StringBuilder row = new StringBuilder();
+        for (String number : numbers) {
+            // Quoted, so a field never holds a comma or line break of its own
+            row.append(row.length() == 0 ? "" : ",").append('"').append(number).append('"');
+        }
+        row.append("\n");
+        CSVTokenizer tokenizer = tokenizer(row.toString(), true);
+        tokenizer.next(0, row.length());
+        check(tokenizer.fieldCount() == numbers.size(), "numeric row has " + tokenizer.fieldCount() + " fields");
+        for (int f = 0; f < numbers.size(); f++) {
+            String text = numbers.get(f);
+            int field = f;
+            check(same(() -> Integer.parseInt(text.trim()), () -> tokenizer.intField(field)), "intField of \"" + text + "\"");
+            check(same(() -> Double.parseDouble(text.trim()), () -> tokenizer.doubleField(field)), "doubleField of \"" + text + "\"");
+        }
+    }
+
+    private static CSVTokenizer tokenizer(String text, boolean quoting) {
+        return new CSVTokenizer(java.nio.ByteBuffer.wrap(text.getBytes(java.nio.charset.StandardCharsets.US_ASCII)), quoting);
+    }
+
+    private static void checkRecords(String text, boolean quoting, String[][] records) {
+        CSVTokenizer tokenizer = tokenizer(text, quoting);
+        int pos = 0;
+        for (String[] record : records) {
+            pos = tokenizer.next(pos, text.length());
+            String[] fields = new String[tokenizer.fieldCount()];
+            for (int f = 0; f < fields.length; f++) {
+                fields[f] = tokenizer.text(tokenizer.fieldStart(f), tokenizer.fieldEnd(f));
+            }
+            check(java.util.Arrays.equals(fields, record), "record of " + java.util.Arrays.toString(text.split("\n"))
+                    + ": got " + java.util.Arrays.toString(fields) + ", expected " + java.util.Arrays.toString(record));
+        }
+        check(pos == text.length(), "records of " + java.util.Arrays.toString(text.split("\n")) + " end at " + pos);
+    }
+
+    private interface Parse {
+        Object get();
+    }
+
+    /**
+     * Both parses return equal results (doubles compared bit for bit) or both throw the same exception type
+     */
+    private static boolean same(Parse reference, Parse actual) {
+        Object expected;
+        try {
+            expected = reference.get();
+        } catch (RuntimeException e) {
+            try {
+                actual.get();
+                return false;
+            } catch (RuntimeException thrown) {
+                return thrown.getClass() == e.getClass();
+            }
+        }
+        Object got = actual.get();
+        if (expected instanceof Double) {
+            return got instanceof Double && Double.doubleToLongBits((Double) got) == Double.doubleToLongBits((Double) expected);
+        }
+        return expected.equals(got);
+    }
+
+    /**
+     * Intersections for every pair of representations and size ratios, compared with TreeSet.retainAll
+     */
+    private static void checkSortedIntSet() {
+        Random random = new Random(23);
+        // {size, span}: sparse arrays of similar and very different sizes (merge and galloping), bitmaps
+        // whose intersections come out sparse or dense, and tiny sets
+        int[][] shapes = {{2000, 1000000}, {100, 1000000}, {40000, 1000000}, {400, 10000}, {9000, 10000}, {10, 64}, {0, 10}};
+        for (int round = 0; round < 5; round++) {
+            // The second family is shifted by up to a word, so bitmap bases differ
+            int offset = random.nextInt(2000) - 1000;
+            int shift = random.nextInt(129) - 64;
+            java.util.List<java.util.TreeSet<Integer>> first = new ArrayList<java.util.TreeSet<Integer>>();
+            java.util.List<java.util.TreeSet<Integer>> second = new ArrayList<java.util.TreeSet<Integer>>();
+            for (int[] shape : shapes) {
+                first.add(randomSet(random, shape[0], shape[1], offset));
+                second.add(randomSet(random, shape[0], shape[1], offset + shift));
+            }
+            java.util.List<SortedIntSet> secondSets = new ArrayList<SortedIntSet>();
+            for (java.util.TreeSet<Integer> b : second) {
+                secondSets.add(checkedSet(b));
+            }
+            for (java.util.TreeSet<Integer> a : first) {
+                SortedIntSet setA = checkedSet(a);
+                for (int j = 0; j < second.size(); j++) {
+                    java.util.TreeSet<Integer> b = second.get(j);
+                    SortedIntSet setB = secondSets.get(j);
+                    java.util.TreeSet<Integer> both = new java.util.TreeSet<Integer>(a);
+                    both.retainAll(b);
+                    String label = (setA.isBitmap() ? "bitmap " : "array ") + a.size() + " & "
+                            + (setB.isBitmap() ? "bitmap " : "array ") + b.size();
+                    checkSameSet(setA.intersect(setB), both, label);
+                    checkSameSet(setB.intersect(setA), both, label + " (swapped)");
+                    checkSameSet(SortedIntSet.intersectAll(setA, setB, setA), both, label + " via intersectAll");
+                }
+            }
+        }
+        try {
+            SortedIntSet.intersectAll();
+            throw new AssertionError("intersectAll of no sets did not throw");
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+    }
+
+    private static java.util.TreeSet<Integer> randomSet(Random random, int size, int span, int offset) {
+        java.util.TreeSet<Integer> set = new java.util.TreeSet<Integer>();
+        while (set.size() < Math.min(size, span)) {
+            set.add(offset + random.nextInt(span));
+        }
+        return set;
+    }
+
+    /**
+     * SortedIntSet.of the set's values, shuffled and with duplicates; checks its contents and chosen representation
+     */
+    private static SortedIntSet checkedSet(java.util.TreeSet<Integer> set) {
+        int[] values = new int[set.size() * 2];
+        int n = 0;
+        for (int v : set) {
+            values[n++] = v;
+            if (n % 3 == 0) values[n++] = v;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = (i * 7919) % (i + 1);
+            int t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+        SortedIntSet result = SortedIntSet.of(values, n);
+        checkSameSet(result, set, "SortedIntSet.of");
+        boolean dense = set.size() >= 64 && (long) set.last() - set.first() + 1 <= (long) set.size() * 32;
+        check(result.isBitmap() == dense, "a set of " + set.size() + " values is stored as " + (result.isBitmap() ? "a bitmap" : "an array"));
+        return result;
+    }
+
+    private static void checkSameSet(SortedIntSet actual, java.util.TreeSet<Integer> expected, String what) {
+        int[] values = actual.toArray();
+        check(actual.size() == expected.size() && values.length == expected.size() && actual.isEmpty() == expected.isEmpty(),
+                what + ": size " + actual.size() + ", expected " + expected.size());
+        int i = 0;
+        for (int v : expected) {
+            check(values[i++] == v, what + ": value " + (i - 1) + " is " + values[i - 1] + ", expected " + v);
+        }
+        // Membership on, between and around the values
+        for (int k = 0; k < Math.min(values.length, 50); k++) {
+            int v = values[k * values.length / Math.min(values.length, 50)];
+            check(actual.contains(v) && actual.contains(v + 1) == expected.contains(v + 1)
+                    && actual.contains(v - 1) == expected.contains(v - 1), what + ": contains near " + v);
+        }
+        check(!actual.contains(Integer.MIN_VALUE) && !actual.contains(Integer.MAX_VALUE), what + ": contains an extreme value");
+    }
+
+    // ---------------------------------------------------------------- entity indexes
+
+    private static void loadData() {
+        quietly(() -> {
+            MappedCSVReader.loadProducts("products.csv");
+            MappedCSVReader.loadCustomers("customers.csv");
+            MappedCSVReader.loadOrders("orders.csv");
+            MappedCSVReader.loadReviews("reviews.csv");
+        });
+        check(Product.getProductCount() > 0 && Order.getOrderCount() > 0 && Review.getReviewCount() > 0,
+                "no data loaded; run from the directory holding the CSV files");
+    }
+
+    private static void checkOrdersByCustomer() {
+        for (Customer c : Customer.customerTreeById.snapshot()) {
+            java.util.List<Order> expected = new ArrayList<Order>();
+            for (Order o : Order.orderTree.snapshot()) {
+                if (o.customer == c) expected.add(o);
+            }
+            check(toList(Order.getOrdersByCustomer(c.customerId)).equals(expected), "orders of customer " + c.customerId);
+            check(Order.countOrdersByCustomer(c.customerId) == expected.size(), "order count of customer " + c.customerId);
+            int pageSize = 2;
+            for (int page = 0; page * pageSize < expected.size(); page++) {
+                java.util.List<Order> slice = expected.subList(page * pageSize, Math.min(expected.size(), (page + 1) * pageSize));
+                check(toList(Order.getOrdersByCustomerPage(c.customerId, page, pageSize)).equals(slice),
+                        "page " + page + " of customer " + c.customerId);
+            }
+        }
+    }
+
+    private static void checkReviewsByCustomer() {
+        for (Customer c : Customer.customerTreeById.snapshot()) {
+            java.util.List<Review> expected = new ArrayList<Review>();
+            for (Review r : Review.reviewTree.snapshot()) {
+                if (r.customer == c) expected.add(r);
+            }
+            check(toList(Review.getReviewsByCustomer(c.customerId)).equals(expected), "reviews of customer " + c.customerId);
+            check(Review.countReviewsByCustomer(c.customerId) == expected.size(), "review count of customer " + c.customerId);
+        }
+    }
+
+    private static void checkEntityAggregates() {
+        java.util.List<Order> orders = toList(Order.orderTree.snapshot());
+        java.util.List<Product> products = toList(Product.productTree.snapshot());
+        String[][] dateRanges = {{"", "9999"}, {"2025-01-01", "2025-01-31"}, {"2025-02-01", "2025-03-15"}, {"2026", "2027"}};
+        for (String[] range : dateRanges) {
+            Predicate<Order> inRange = o -> o.orderDate.compareTo(range[0]) >= 0 && o.orderDate.compareTo(range[1]) <= 0;
+            double revenue = orders.stream().filter(inRange).filter(o -> !o.status.equals("canceled")).mapToDouble(o -> o.totalPrice).sum();
+            checkClose(Order.getRevenueBetweenDates(range[0], range[1]), revenue, "revenue between " + range[0] + " and " + range[1]);
+            check(Order.countOrdersBetweenDates(range[0], range[1]) == orders.stream().filter(inRange).count(),
+                    "order count between " + range[0] + " and " + range[1]);
+        }
+        double[][] priceRanges = {{0, 1e9}, {10, 50}, {50, 200}, {1000, 5000}, {-5, -1}};
+        for (double[] range : priceRanges) {
+            Predicate<Product> inRange = p -> p.price >= range[0] && p.price <= range[1];
+            check(Product.getStockInPriceRange(range[0], range[1]) == products.stream().filter(inRange).mapToInt(p -> p.stock).sum(),
+                    "stock priced " + range[0] + " to " + range[1]);
+            check(Product.countProductsInPriceRange(range[0], range[1]) == products.stream().filter(inRange).count(),
+                    "products priced " + range[0] + " to " + range[1]);
+        }
+    }
+
+    private static void checkRatingIndex() {
+        int indexed = 0;
+        for (Iterator<IntAVLTree<Product>> it = Product.productTreeByRating.iterator(); it.hasNext(); ) {
+            indexed += it.next().size();
+        }
+        check(indexed == Product.getProductCount(), indexed + " products in the rating index, " + Product.getProductCount() + " listed");
+        for (Product p : Product.productTree.snapshot()) {
+            double sum = 0;
+            for (Review r : p.reviews) sum += r.rating;
+            double average = p.reviews.empty() ? 0 : sum / p.reviews.size();
+            checkClose(p.getAverageRating(), average, "average rating of product " + p.productId);
+            IntAVLTree<Product> bucket = Product.productTreeByRating.search(p.getAverageRating());
+            check(bucket != null && bucket.search(p.productId) == p, "product " + p.productId + " not indexed under its rating");
+        }
+    }
+
+    private static void checkTopK() {
+        java.util.List<Product> products = toList(Product.productTree.snapshot());
+        java.util.List<Order> orders = toList(Order.orderTree.snapshot());
+        Predicate<Product> cheap = p -> p.price < 100;
+
+        for (int k : new int[] {0, 1, 3, 10, 1000000}) {
+            // Index walks: best value first, equal ratings in ID order
+            java.util.List<Product> byRating = new ArrayList<Product>(products);
+            byRating.sort((x, y) -> Double.compare(y.getAverageRating(), x.getAverageRating()));
+            checkPrefix("top " + k + " by rating", TopK.topProducts(TopK.Metric.RATING, k), byRating, k);
+            byRating.removeIf(cheap.negate());
+            checkPrefix("top " + k + " cheap products by rating", TopK.topProducts(TopK.Metric.RATING, k, cheap), byRating, k);
+            checkDescending("top " + k + " by review count", TopK.topProducts(TopK.Metric.REVIEW_COUNT, k), Product::getReviewCount, products.size(), k);
+            checkDescending("top " + k + " by price", TopK.topProducts(TopK.Metric.PRICE, k), p -> p.price, products.size(), k);
+
+            // Heap metrics: best value first, equal values in ID order
+            Map<Integer, Double> revenue = new TreeMap<Integer, Double>();
+            for (Order o : orders) {
+                if (o.status.equals("canceled")) continue;
+                double priceSum = 0;
+                for (Product p : o.products) priceSum += p.price;
+                for (Product p : o.products) {
+                    double share = priceSum > 0 ? o.totalPrice * (p.price / priceSum) : o.totalPrice / o.products.size();
+                    revenue.merge(p.productId, share, Double::sum);
+                }
+            }
+            java.util.List<Product> byRevenue = new ArrayList<Product>(products);
+            byRevenue.sort((x, y) -> {
+                int c = Double.compare(revenue.getOrDefault(y.productId, 0.0), revenue.getOrDefault(x.productId, 0.0));
+                return c != 0 ? c : Integer.compare(x.productId, y.productId);
+            });
+            checkPrefix("top " + k + " products by revenue", TopK.topProducts(TopK.Metric.REVENUE, k), byRevenue, k);
+
+            java.util.List<Order> byTotal = new ArrayList<Order>(orders);
+            byTotal.sort((x, y) -> {
+                int c = Double.compare(y.totalPrice, x.totalPrice);
+                return c != 0 ? c : Integer.compare(x.orderId, y.orderId);
+            });
+            checkPrefix("top " + k + " orders by price", TopK.topOrders(TopK.Metric.PRICE, k), byTotal, k);
+            byTotal.removeIf(o -> o.status.equals("canceled"));
+            checkPrefix("top " + k + " orders by revenue", TopK.topOrders(TopK.Metric.REVENUE, k), byTotal, k);
+        }
+        try {
+            TopK.topOrders(TopK.Metric.RATING, 3);
+            throw new AssertionError("topOrders accepted RATING");
+        } catch (IllegalArgumentException expected) {
+            // as intended
+        }
+    }
+
+    /**
+     * result must be the first min(k, size) entries of expected, in the same order
+     */
+    private static <T> void checkPrefix(String what, LinkedList<T> result, java.util.List<T> expected, int k) {
+        java.util.List<T> got = toList(result);
+        check(got.equals(expected.subList(0, Math.min(k, expected.size()))), what);
+    }
+
+    /**
+     * result must hold min(k, available) distinct entries with non-increasing values
+     * (ties come out in index order, which the entity lists do not record)
+     */
+    private static <T> void checkDescending(String what, LinkedList<T> result, ToDoubleFunction<T> value, int available, int k) {
+        java.util.List<T> got = toList(result);
+        check(got.size() == Math.min(k, available), what + ": " + got.size() + " entries");
+        check(new java.util.HashSet<T>(got).size() == got.size(), what + ": duplicate entries");
+        for (int i = 1; i < got.size(); i++) {
+            check(value.applyAsDouble(got.get(i)) <= value.applyAsDouble(got.get(i - 1)), what + ": out of order at " + i);
+        }
+    }
+
+    /**
+     * Edit a review, add reviews and orders, cancel an order and remove a product, then run the index checks again
+     */
+    private static void checkAfterEdits() {
+        Review first = Review.reviewTree.select(0);
+        Customer customer = Customer.customerTreeById.select(0);
+        Product product = Product.productTree.select(Product.getProductCount() / 2);
+        Product removed = Product.productTree.select(1);
+        quietly(() -> {
+            Review.editReview(first.reviewId, first.rating >= 3 ? 1.0 : 5.0, "edited by the checks");
+            Customer.addReviewToProduct(customer.customerId, product.productId, 4.5, "added by the checks");
+            Customer.addReviewToProduct(customer.customerId, product.productId, 2.0, "added again by the checks");
+            Customer.placeOrder(customer.customerId, product.productId, 1, "2025-06-01");
+            Order.cancelOrder(Order.orderTree.select(2).orderId);
+            Product.removeProduct(removed.productId);
+        });
+        check(Product.searchById(removed.productId) == null, "removed product still found");
+
+        checkOrdersByCustomer();
+        checkReviewsByCustomer();
+        checkEntityAggregates();
+        checkRatingIndex();
+        checkTopK();
+    }
+
+    /**
+     * Three threads place orders and two change prices and stock with updateProduct on the same eight products,
+     * while two more look orders and products up by ID. Four of the products are never updated, so their stock
+     * must drop by exactly the quantity of the orders placed for them. Afterwards every new order has its own ID,
+     * no stock is negative, and the per-customer, date and price indexes match their references again.
+     */
+    private static void checkConcurrentMutations() throws InterruptedException {
+        final int orderers = 3;
+        final int updaters = 2;
+        final int readers = 2;
+        final int orderOps = 12000;
+        final int updateOps = 12000;
+        final int readerOps = 100000;
+        final double[] prices = {15.0, 25.0, 45.0, 75.0};
+
+        // Even slots are order-only and get enough stock for every order; odd slots also get updateProduct
+        // with small stocks, so orders for them run out often
+        final Product[] products = new Product[8];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = Product.productTree.select(i * 3);
+        }
+        final int stockBefore = orderers * orderOps * 3;
+        quietly(() -> {
+            for (int i = 0; i < products.length; i += 2) {
+                Product.updateProduct(products[i].productId, products[i].price, stockBefore);
+            }
+        });
+        final int customers = Customer.customerTreeById.size();
+        final int firstNewId = Order.getNextOrderId();
+        int ordersBefore = Order.getOrderCount();
+
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread[] threads = new Thread[orderers + updaters + readers];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(2000 + id);
+                try {
+                    if (id < orderers) {
+                        for (int i = 0; i < orderOps; i++) {
+                            Customer customer = Customer.customerTreeById.select(random.nextInt(customers));
+                            Product product = products[random.nextInt(products.length)];
+                            Customer.placeOrder(customer.customerId, product.productId, 1 + random.nextInt(3), "2025-07-0" + (1 + random.nextInt(9)));
+                        }
+                    } else if (id < orderers + updaters) {
+                        for (int i = 0; i < updateOps; i++) {
+                            Product product = products[random.nextInt(products.length / 2) * 2 + 1];
+                            Product.updateProduct(product.productId, prices[random.nextInt(prices.length)], random.nextInt(20));
+                        }
+                    } else {
+                        for (int i = 0; i < readerOps; i++) {
+                            int orderId = firstNewId - 100 + random.nextInt(1000);
+                            Order order = Order.searchById(orderId);
+                            if (order != null && order.orderId != orderId) failure.compareAndSet(null, "searchById(" + orderId + ") returned order " + order.orderId);
+                            Product product = products[random.nextInt(products.length)];
+                            if (Product.searchById(product.productId) != product) failure.compareAndSet(null, "product " + product.productId + " not found");
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e.toString());
+                }
+            });
+            // A tree corrupted by overlapping writers can send a search into a cycle; don't keep the JVM alive for it
+            threads[t].setDaemon(true);
+        }
+        quietly(() -> {
+            for (Thread thread : threads) thread.start();
+            try {
+                for (Thread thread : threads) thread.join(60000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        for (Thread thread : threads) check(!thread.isAlive(), thread.getName() + " still running after 60 s");
+        check(failure.get() == null, String.valueOf(failure.get()));
+
+        // Quantities ordered per product; IDs must run on from firstNewId without a gap or a repeat
+        int[] ordered = new int[products.length];
+        int placed = 0;
+        for (Order o : Order.orderTree.snapshot()) {
+            if (o.orderId < firstNewId) continue;
+            check(o.orderId == firstNewId + placed, "order ID " + o.orderId + " after " + placed + " new orders");
+            placed++;
+            for (int i = 0; i < products.length; i++) {
+                if (o.products.retrieve() == products[i]) ordered[i] += o.products.size();
+            }
+        }
+        check(placed > orderers * orderOps / 4, "only " + placed + " orders placed");
+        check(Order.getOrderCount() == ordersBefore + placed && Order.orders.size() == Order.getOrderCount(),
+                Order.getOrderCount() + " orders indexed, " + Order.orders.size() + " listed, " + (ordersBefore + placed) + " expected");
+        for (int i = 0; i < products.length; i++) {
+            check(products[i].stock >= 0, "product " + products[i].productId + " has stock " + products[i].stock);
+            if (i % 2 == 0) {
+                check(products[i].stock == stockBefore - ordered[i], "product " + products[i].productId + " has stock "
+                        + products[i].stock + " after " + ordered[i] + " of " + stockBefore + " were ordered");
+            }
+        }
+        Product.productTreeByPrice.checkInvariants();
+        Order.orderTreeByDate.checkInvariants();
+        checkOrdersByCustomer();
+        checkEntityAggregates();
+        checkRatingIndex();
+    }
+
+    /**
+     * Log a mix of accepted and rejected mutations, then check that only the accepted ones were recorded,
+     * that replaying the log on the snapshot reproduces the same data, that a torn or padded tail is cut
+     * back to the last intact record, and that a log holding records is never replaced for another snapshot
+     */
+    private static void checkWriteAheadLog() throws Exception {
+        File dir = java.nio.file.Files.createTempDirectory("ecommerce-checks").toFile();
+        try {
+            String snapshot = new File(dir, "before.snapshot").getPath();
+            String log = new File(dir, "changes.wal").getPath();
+            String expected = new File(dir, "after.snapshot").getPath();
+            long[] followed = new long[2];
+            long checksum = DataSnapshot.save(snapshot, followed);
+
+            WriteAheadLog wal = WriteAheadLog.open(log, checksum, 64, 0, true);
+            try {
+                quietly(ECommerceChecks::logMutations);
+                check(wal.records() == 10, wal.records() + " records logged for 10 accepted changes");
+            } finally {
+                wal.close();
+            }
+            check(WriteAheadLog.hasRecords(log, checksum) && !WriteAheadLog.hasRecords(log, checksum + 1), "hasRecords");
+            long after = DataSnapshot.save(expected, followed);
+
+            // Replaying on the old snapshot gives the data the changes produced
+            check(replayInChild(snapshot, log, dir, "replayed") == 10, "replay did not apply 10 records");
+            check(DataSnapshot.checksum(new File(dir, "replayed").getPath()) == after, "replayed data differs from the logged run");
+
+            // A record cut short by a crash is dropped; open() truncates it and bytes appended after it
+            byte[] intact = java.nio.file.Files.readAllBytes(new File(log).toPath());
+            File torn = new File(dir, "torn.wal");
+            java.nio.file.Files.write(torn.toPath(), java.util.Arrays.copyOf(intact, intact.length - 3));
+            check(replayInChild(snapshot, torn.getPath(), dir, "replayed-torn") == 9, "replay of a torn log did not apply 9 records");
+            WriteAheadLog.create(torn.getPath(), checksum, 1, 0, true).close();
+            long cut = torn.length();
+            check(cut < intact.length - 3 && WriteAheadLog.hasRecords(torn.getPath(), checksum), "open() did not cut the torn record");
+            File padded = new File(dir, "padded.wal");
+            byte[] garbage = new byte[37];
+            new Random(19).nextBytes(garbage);
+            java.nio.file.Files.write(padded.toPath(), intact);
+            java.nio.file.Files.write(padded.toPath(), garbage, java.nio.file.StandardOpenOption.APPEND);
+            WriteAheadLog.create(padded.getPath(), checksum, 1, 0, true).close();
+            check(padded.length() == intact.length, "open() kept " + (padded.length() - intact.length) + " bytes of garbage");
+
+            // A log holding records for another snapshot is neither replaced nor discarded
+            try {
+                WriteAheadLog.open(log, checksum + 1, 64, 0, true).close();
+                throw new AssertionError("open() replaced a log holding records for another snapshot");
+            } catch (IOException expectedFailure) {
+                // as intended
+            }
+            WriteAheadLog.discard(log, checksum + 1);
+            check(java.util.Arrays.equals(java.nio.file.Files.readAllBytes(new File(log).toPath()), intact), "log changed after refusals");
+            try {
+                replayInChild(expected, log, dir, "wrong-snapshot");
+                throw new AssertionError("replay accepted a log for another snapshot");
+            } catch (IOException expectedFailure) {
+                // as intended
+            }
+            WriteAheadLog.discard(log, checksum);
+            check(!new File(log).exists(), "discard() left the log of its own snapshot");
+
+            // An empty log for another snapshot may be replaced
+            String empty = new File(dir, "empty.wal").getPath();
+            WriteAheadLog.create(empty, checksum, 1, 0, true).close();
+            WriteAheadLog.create(empty, checksum + 1, 1, 0, true).close();
+            WriteAheadLog.discard(empty, checksum + 1);
+            check(!new File(empty).exists(), "an empty log for another snapshot was not replaced");
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File f : files) f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Ten accepted mutations, each followed by calls that must be rejected without a log record
+     */
+    private static void logMutations() {
+        int productId = Product.productTree.getMax().productId + 1;
+        int customerId = Customer.customerTreeById.getMax().customerId + 1;
+        int existingProduct = Product.productTree.getMin().productId;
+
+        Product.addProduct(new Product(productId, "Logged product", 12.5, 7));
+        Product.addProduct(new Product(productId, "Duplicate", 1, 1));
+        Product.updateProduct(productId, 15.0, 9);
+        Product.updateProduct(-1, 15.0, 9);
+        Customer.addCustomer(new Customer(customerId, "Logged Customer", "logged@example.com"));
+        Customer.addCustomer(new Customer(customerId, "Duplicate", "duplicate@example.com"));
+        Customer.updateCustomer(customerId, "Renamed Customer", "renamed@example.com");
+        Customer.updateCustomer(-1, "Nobody", "nobody@example.com");
+
+        Customer.placeOrder(customerId, productId, 2, "2025-07-01");
+        Customer.placeOrder(-1, productId, 1, "2025-07-01");
+        Customer.placeOrder(customerId, -1, 1, "2025-07-01");
+        Customer.placeOrder(customerId, productId, 1000, "2025-07-01");
+        int orderId = Order.orderTree.getMax().orderId;
+        Order.updateOrderStatus(orderId, "shipped");
+        Order.updateOrderStatus(orderId, "lost");
+        Order.updateOrderStatus(-1, "shipped");
+        Order.cancelOrder(orderId);
+        Order.cancelOrder(orderId);
+        Order.cancelOrder(-1);
+
+        Customer.addReviewToProduct(customerId, productId, 4.0, "Logged review");
+        Customer.addReviewToProduct(customerId, productId, 7.0, "Out of range");
+        Customer.addReviewToProduct(customerId, -1, 4.0, "No product");
+        Review.editReview(Review.reviewTree.getMax().reviewId, 2.0, "Edited review");
+        Review.editReview(-1, 2.0, "No review");
+        Product.removeProduct(existingProduct);
+        Product.removeProduct(-1);
+    }
+
+    /**
+     * Replay log on snapshot in a fresh JVM and save the result as dir/name; returns the number of records applied.
+     * Throws IOException if the child fails (for example because the log belongs to another snapshot).
+     */
+    private static int replayInChild(String snapshot, String log, File dir, String name) throws IOException, InterruptedException {
+        String launcher = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        Process child = new ProcessBuilder(launcher, "-cp", System.getProperty("java.class.path"), ECommerceChecks.class.getName(),
+                "--replay", snapshot, log, new File(dir, name).getPath()).redirectErrorStream(true).start();
+        String output;
+        try (java.io.InputStream in = child.getInputStream()) {
+            output = new String(readAll(in), java.nio.charset.StandardCharsets.UTF_8).trim();
+        }
+        if (child.waitFor() != 0) throw new IOException("replay failed: " + output);
+        return Integer.parseInt(output);
+    }
+
+    private static byte[] readAll(java.io.InputStream in) throws IOException {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Child side of replayInChild: load the snapshot, replay the log, save the result and print the record count
+     */
+    private static void replayInto(String snapshot, String log, String out) throws IOException {
+        long[] followed = new long[2];
+        long checksum = DataSnapshot.load(snapshot, followed);
+        int replayed = WriteAheadLog.replay(log, checksum);
+        DataSnapshot.save(out, followed);
+        System.out.println(replayed);
+    }
+}